@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.shared.JulianDay;
+
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+/*
+    Checks the cached date labels against formatting them every time, and times the labels of a
+    scroll through a two week forecast both ways.  Timings are only logged, run with
+    adb logcat -s TestDateLabelCache
+    to see the results.
+ */
+public class TestDateLabelCache extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestDateLabelCache.class.getSimpleName();
+
+    static final int DAYS = 14;
+    static final int WARMUP_SCROLLS = 20;
+    static final int SCROLLS = 200;
+
+    private TimeZone mSavedZone;
+    private long[] mDates;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mSavedZone = JulianDay.getTimeZone();
+        DateLabelCache.clear();
+
+        int today = JulianDay.fromMillis(System.currentTimeMillis());
+        mDates = new long[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            mDates[i] = JulianDay.toMillis(today + i);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        JulianDay.setTimeZone(mSavedZone);
+        DateLabelCache.clear();
+        super.tearDown();
+    }
+
+    // The labels as Utility formatted them before the cache
+    static String getFriendlyDayString(Context context, long dateInMillis,
+                                       boolean displayLongToday) {
+        int julianDay = JulianDay.fromMillis(dateInMillis);
+        int currentJulianDay = JulianDay.fromMillis(System.currentTimeMillis());
+        if (displayLongToday && julianDay == currentJulianDay) {
+            return context.getString(R.string.format_full_friendly_date,
+                    context.getString(R.string.today), getFormattedMonthDay(dateInMillis));
+        } else if (julianDay < currentJulianDay + 7) {
+            return getDayName(context, dateInMillis);
+        } else {
+            return new SimpleDateFormat("EEE MMM dd").format(dateInMillis);
+        }
+    }
+
+    static String getDayName(Context context, long dateInMillis) {
+        int julianDay = JulianDay.fromMillis(dateInMillis);
+        int currentJulianDay = JulianDay.fromMillis(System.currentTimeMillis());
+        if (julianDay == currentJulianDay) {
+            return context.getString(R.string.today);
+        } else if (julianDay == currentJulianDay + 1) {
+            return context.getString(R.string.tomorrow);
+        } else {
+            return new SimpleDateFormat("EEEE").format(dateInMillis);
+        }
+    }
+
+    static String getFormattedMonthDay(long dateInMillis) {
+        return new SimpleDateFormat("MMMM dd").format(dateInMillis);
+    }
+
+    public void testMatchesFormatting() {
+        for (long date : mDates) {
+            // Twice, the second time from the cache
+            for (int pass = 0; pass < 2; pass++) {
+                assertEquals(getFriendlyDayString(mContext, date, true),
+                        Utility.getFriendlyDayString(mContext, date, true));
+                assertEquals(getFriendlyDayString(mContext, date, false),
+                        Utility.getFriendlyDayString(mContext, date, false));
+                assertEquals(getDayName(mContext, date), Utility.getDayName(mContext, date));
+                assertEquals(getFormattedMonthDay(date),
+                        Utility.getFormattedMonthDay(mContext, date));
+                assertEquals(mContext.getString(R.string.format_full_friendly_date,
+                                getDayName(mContext, date), getFormattedMonthDay(date)),
+                        Utility.getFullFriendlyDayString(mContext, date));
+            }
+        }
+        assertSame("Error: a label wasn't kept",
+                Utility.getDayName(mContext, mDates[3]), Utility.getDayName(mContext, mDates[3]));
+    }
+
+    public void testDroppedOnZoneChange() {
+        String before = Utility.getDayName(mContext, mDates[3]);
+        assertSame(before, Utility.getDayName(mContext, mDates[3]));
+
+        // An equal but new zone, as TimeZoneChangedReceiver sets it
+        JulianDay.setTimeZone(TimeZone.getTimeZone(mSavedZone.getID()));
+        String after = Utility.getDayName(mContext, mDates[3]);
+        assertEquals(before, after);
+        assertNotSame("Error: the labels were kept across a zone change", before, after);
+    }
+
+    private int scrollFormatting(int scrolls) {
+        int length = 0;
+        for (int scroll = 0; scroll < scrolls; scroll++) {
+            for (int i = 0; i < DAYS; i++) {
+                length += getFriendlyDayString(mContext, mDates[i], i == 0).length();
+            }
+        }
+        return length;
+    }
+
+    private int scrollCached(int scrolls) {
+        int length = 0;
+        for (int scroll = 0; scroll < scrolls; scroll++) {
+            for (int i = 0; i < DAYS; i++) {
+                length += Utility.getFriendlyDayString(mContext, mDates[i], i == 0).length();
+            }
+        }
+        return length;
+    }
+
+    public void testBenchmarkScroll() {
+        scrollFormatting(WARMUP_SCROLLS);
+        scrollCached(WARMUP_SCROLLS);
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        int formattedLength = scrollFormatting(SCROLLS);
+        long formattedNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        int cachedLength = scrollCached(SCROLLS);
+        long cachedNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(LOG_TAG, "Date labels formatted every time: "
+                + (formattedNanos / (SCROLLS * DAYS)) + " ns/row");
+        Log.i(LOG_TAG, "Date labels from the cache: "
+                + (cachedNanos / (SCROLLS * DAYS)) + " ns/row");
+        assertEquals("Error: the cache gave different labels", formattedLength, cachedLength);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.database.MatrixCursor;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.AbsListView;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.shared.JulianDay;
+import com.example.android.sunshine.testing.PerfBudgets;
+
+import java.io.File;
+
+/*
+    Counts the objects ForecastAdapter allocates to bind a row, which is what makes the list
+    stutter once the GC has to catch up, and checks it against adapter.bind.allocations in
+    perf-budgets.properties.  The report is written to the app's external files directory, run
+        adb pull /sdcard/Android/data/com.example.android.sunshine.app/files/perf-report.txt
+    to get it.
+ */
+public class TestForecastAdapterBind extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestForecastAdapterBind.class.getSimpleName();
+
+    static final String REPORT_NAME = "perf-report.txt";
+
+    static final int DAYS = 14;
+    static final int WARMUP_ROUNDS = 20;
+    static final int ROUNDS = 100;
+
+    // How long to wait for the settings snapshot, refreshed on the main thread
+    static final long REFRESH_TIMEOUT_MILLIS = 2000;
+
+    private SharedPreferences mPrefs;
+    private String mArtPackKey;
+    private String mSavedArtPack;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mArtPackKey = mContext.getString(R.string.pref_art_pack_key);
+        mSavedArtPack = mPrefs.getString(mArtPackKey, null);
+
+        // The app's own icons, as Glide would count its loads against the bind
+        mPrefs.edit().putString(mArtPackKey,
+                mContext.getString(R.string.pref_art_pack_sunshine)).commit();
+        long deadline = SystemClock.elapsedRealtime() + REFRESH_TIMEOUT_MILLIS;
+        while (!SettingsSnapshot.get(mContext).isUsingLocalGraphics()
+                && SystemClock.elapsedRealtime() < deadline) {
+            SystemClock.sleep(10);
+        }
+        assertTrue(SettingsSnapshot.get(mContext).isUsingLocalGraphics());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPrefs.edit().putString(mArtPackKey, mSavedArtPack).commit();
+        super.tearDown();
+    }
+
+    // The columns of ForecastFragment's query, in the order of its COL_ indices
+    private MatrixCursor createForecast() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                WeatherContract.WeatherEntry._ID,
+                WeatherContract.WeatherEntry.COLUMN_DATE,
+                WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+                WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+                WeatherContract.WeatherEntry.COLUMN_WEATHER_ID});
+        int today = JulianDay.fromMillis(System.currentTimeMillis());
+        int[] weatherIds = {800, 801, 500, 211, 601, 741, 803};
+        for (int i = 0; i < DAYS; i++) {
+            cursor.addRow(new Object[]{i + 1, JulianDay.toMillis(today + i), "Clear",
+                    20.5 + i, 10.5 - i, weatherIds[i % weatherIds.length]});
+        }
+        return cursor;
+    }
+
+    // Binds every row once, to the holder for its view type
+    private void bindAll(ForecastAdapter adapter,
+            ForecastAdapter.ForecastAdapterViewHolder[] holders) {
+        for (int position = 0; position < DAYS; position++) {
+            adapter.onBindViewHolder(holders[adapter.getItemViewType(position)], position);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testBindAllocations() throws Exception {
+        ContextThemeWrapper context = new ContextThemeWrapper(mContext, R.style.AppTheme_Main);
+        RecyclerView list = new RecyclerView(context);
+        ForecastAdapter adapter = new ForecastAdapter(context, null, new View(context),
+                AbsListView.CHOICE_MODE_NONE);
+        adapter.swapCursor(createForecast());
+        assertEquals(DAYS, adapter.getItemCount());
+
+        ForecastAdapter.ForecastAdapterViewHolder[] holders =
+                new ForecastAdapter.ForecastAdapterViewHolder[2];
+        for (int viewType = 0; viewType < holders.length; viewType++) {
+            holders[viewType] = adapter.onCreateViewHolder(list, viewType);
+        }
+
+        // Fills the date labels and the resources' caches, which a scrolling list has too
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            bindAll(adapter, holders);
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < ROUNDS; i++) {
+            bindAll(adapter, holders);
+        }
+        Debug.stopAllocCounting();
+        long perBind = Debug.getThreadAllocCount() / (ROUNDS * DAYS);
+
+        Log.i(LOG_TAG, "Allocations per bind: " + perBind);
+        File directory = mContext.getExternalFilesDir(null);
+        PerfBudgets.load(new File(null != directory ? directory : mContext.getFilesDir(),
+                REPORT_NAME)).check("adapter.bind.allocations", perBind);
+    }
+}
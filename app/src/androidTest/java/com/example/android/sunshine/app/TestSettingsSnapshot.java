@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Locale;
+
+/*
+    Checks the snapshot against the preferences, and times the settings a forecast row reads
+    when it is bound, through the snapshot and the way they were looked up before.  Timings are
+    only logged, run with
+    adb logcat -s TestSettingsSnapshot
+    to see the results.
+ */
+public class TestSettingsSnapshot extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestSettingsSnapshot.class.getSimpleName();
+
+    static final int WARMUP_ITERATIONS = 500;
+    static final int ITERATIONS = 5000;
+
+    // How long to wait for the listener, which runs on the main thread
+    static final long REFRESH_TIMEOUT_MILLIS = 2000;
+
+    private SharedPreferences mPrefs;
+    private String mUnitsKey;
+    private String mSavedUnits;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mUnitsKey = mContext.getString(R.string.pref_units_key);
+        mSavedUnits = mPrefs.getString(mUnitsKey, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPrefs.edit().putString(mUnitsKey, mSavedUnits).commit();
+        super.tearDown();
+    }
+
+    // The settings as Utility read them before the snapshot
+    static boolean isMetric(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return prefs.getString(context.getString(R.string.pref_units_key),
+                context.getString(R.string.pref_units_metric))
+                .equals(context.getString(R.string.pref_units_metric));
+    }
+
+    static boolean usingLocalGraphics(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        return prefs.getString(context.getString(R.string.pref_art_pack_key),
+                sunshineArtPack).equals(sunshineArtPack);
+    }
+
+    static String getArtUrl(Context context, String artSlug) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String formatArtUrl = prefs.getString(context.getString(R.string.pref_art_pack_key),
+                context.getString(R.string.pref_art_pack_sunshine));
+        return String.format(Locale.US, formatArtUrl, artSlug);
+    }
+
+    static String getPreferredLocation(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+    }
+
+    public void testMatchesPreferences() {
+        SettingsSnapshot settings = SettingsSnapshot.get(mContext);
+        assertEquals(getPreferredLocation(mContext), settings.getLocation());
+        assertEquals(isMetric(mContext), settings.isMetric());
+        assertEquals(usingLocalGraphics(mContext), settings.isUsingLocalGraphics());
+        assertEquals(getArtUrl(mContext, "clear"),
+                Utility.getArtUrlForWeatherCondition(settings, 800));
+    }
+
+    public void testRefreshedOnChange() {
+        boolean metric = SettingsSnapshot.get(mContext).isMetric();
+        mPrefs.edit().putString(mUnitsKey, mContext.getString(metric
+                ? R.string.pref_units_imperial : R.string.pref_units_metric)).commit();
+
+        long deadline = SystemClock.elapsedRealtime() + REFRESH_TIMEOUT_MILLIS;
+        while (SettingsSnapshot.get(mContext).isMetric() == metric
+                && SystemClock.elapsedRealtime() < deadline) {
+            SystemClock.sleep(10);
+        }
+        assertEquals("Error: the snapshot wasn't refreshed when the units changed",
+                !metric, SettingsSnapshot.get(mContext).isMetric());
+        assertEquals(!metric, Utility.isMetric(mContext));
+    }
+
+    // What ForecastAdapter.onBindViewHolder reads for one row, less the views
+    private int bindWithPreferences(int iterations) {
+        int length = 0;
+        for (int i = 0; i < iterations; i++) {
+            if (!usingLocalGraphics(mContext)) {
+                length += getArtUrl(mContext, "clear").length();
+            }
+            double high = isMetric(mContext) ? 21 : 21 * 1.8 + 32;
+            double low = isMetric(mContext) ? 12 : 12 * 1.8 + 32;
+            length += String.format(mContext.getString(R.string.format_temperature), high).length();
+            length += String.format(mContext.getString(R.string.format_temperature), low).length();
+        }
+        return length;
+    }
+
+    private int bindWithSnapshot(int iterations) {
+        int length = 0;
+        for (int i = 0; i < iterations; i++) {
+            SettingsSnapshot settings = SettingsSnapshot.get(mContext);
+            if (!settings.isUsingLocalGraphics()) {
+                length += Utility.getArtUrlForWeatherCondition(settings, 800).length();
+            }
+            length += Utility.formatTemperature(mContext, 21, settings).length();
+            length += Utility.formatTemperature(mContext, 12, settings).length();
+        }
+        return length;
+    }
+
+    public void testBenchmarkBindPath() {
+        bindWithPreferences(WARMUP_ITERATIONS);
+        bindWithSnapshot(WARMUP_ITERATIONS);
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        int preferencesLength = bindWithPreferences(ITERATIONS);
+        long preferencesNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        int snapshotLength = bindWithSnapshot(ITERATIONS);
+        long snapshotNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(LOG_TAG, "Row settings from the preferences: "
+                + (preferencesNanos / ITERATIONS) + " ns/row");
+        Log.i(LOG_TAG, "Row settings from the snapshot: "
+                + (snapshotNanos / ITERATIONS) + " ns/row");
+        assertEquals("Error: the snapshot formatted the row differently",
+                preferencesLength, snapshotLength);
+    }
+}
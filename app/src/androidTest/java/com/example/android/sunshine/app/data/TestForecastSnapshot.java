@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+public class TestForecastSnapshot extends AndroidTestCase {
+
+    static final long DAY_IN_MILLIS = 1000L*60*60*24;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteSnapshot();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteSnapshot();
+        super.tearDown();
+    }
+
+    private void deleteSnapshot() {
+        ForecastSnapshot.unmap();
+        new File(mContext.getFilesDir(), ForecastSnapshot.FILE_NAME).delete();
+    }
+
+    static ContentValues[] createDays(long today, int count) {
+        ContentValues[] days = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            days[i] = TestUtilities.createWeatherValues(1);
+            days[i].put(WeatherContract.WeatherEntry.COLUMN_DATE, today + i * DAY_IN_MILLIS);
+            days[i].put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 70 + i);
+            days[i].put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, 50 - i);
+        }
+        return days;
+    }
+
+    public void testWriteAndRead() {
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        ContentValues[] days = createDays(today, 16);
+        ForecastSnapshot.write(mContext, TestUtilities.TEST_LOCATION, days);
+
+        ForecastSnapshot snapshot = ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION);
+        assertNotNull("Error: the snapshot we just wrote could not be read", snapshot);
+        assertEquals(ForecastSnapshot.MAX_DAYS, snapshot.getDayCount());
+        for (int i = 0; i < snapshot.getDayCount(); i++) {
+            assertEquals(today + i * DAY_IN_MILLIS, snapshot.getDate(i));
+            assertEquals(70.0 + i, snapshot.getMaxTemp(i));
+            assertEquals(50.0 - i, snapshot.getMinTemp(i));
+            assertEquals(days[i].getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID),
+                    Integer.valueOf(snapshot.getWeatherId(i)));
+            assertEquals(days[i].getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC),
+                    snapshot.getShortDesc(i));
+        }
+        assertEquals(1, snapshot.findDay(today + DAY_IN_MILLIS + 1000));
+        assertEquals(-1, snapshot.findDay(today + 20 * DAY_IN_MILLIS));
+
+        Bundle bundle = ForecastSnapshot.getToday(mContext, TestUtilities.TEST_LOCATION);
+        assertEquals(today, bundle.getLong(WeatherContract.EXTRA_DATE));
+        assertEquals(70.0, bundle.getDouble(WeatherContract.EXTRA_MAX_TEMP));
+
+        // Another process maps the same file from scratch
+        ForecastSnapshot.unmap();
+        snapshot = ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION);
+        assertNotNull(snapshot);
+        assertEquals(ForecastSnapshot.MAX_DAYS, snapshot.getDayCount());
+
+        assertNull("Error: the snapshot is for another location",
+                ForecastSnapshot.read(mContext, "unknown"));
+    }
+
+    public void testLongStringsAreCut() {
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        ContentValues[] days = createDays(today, 1);
+        days[0].put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+                "Thunderstorm with heavy drizzle and ⛈⛈⛈");
+        ForecastSnapshot.write(mContext, TestUtilities.TEST_LOCATION, days);
+
+        ForecastSnapshot snapshot = ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION);
+        assertTrue(days[0].getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC)
+                .startsWith(snapshot.getShortDesc(0)));
+    }
+
+    public void testUnfinishedWriteIsIgnored() throws Exception {
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        ForecastSnapshot.write(mContext, TestUtilities.TEST_LOCATION, createDays(today, 3));
+
+        // Leave an odd sequence behind, as a writer that died half way would
+        RandomAccessFile raf = new RandomAccessFile(
+                new File(mContext.getFilesDir(), ForecastSnapshot.FILE_NAME), "rw");
+        raf.seek(8);
+        long sequence = raf.readLong();
+        raf.seek(8);
+        raf.writeLong(sequence + 1);
+        raf.close();
+
+        assertNull("Error: a snapshot in the middle of a write was read",
+                ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION));
+
+        // The next write recovers
+        ForecastSnapshot.write(mContext, TestUtilities.TEST_LOCATION, createDays(today, 3));
+        assertEquals(3, ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION)
+                .getDayCount());
+    }
+}
@@ -16,17 +16,23 @@
 package com.example.android.sunshine.app.data;
 
 import android.content.ComponentName;
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.pm.PackageManager;
 import android.content.pm.ProviderInfo;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
 import android.test.AndroidTestCase;
 import android.util.Log;
 
+import java.util.ArrayList;
+
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
@@ -61,6 +67,11 @@ public class TestProvider extends AndroidTestCase {
                 null,
                 null
         );
+        mContext.getContentResolver().delete(
+                WeatherContract.LocationHistoryEntry.CONTENT_URI,
+                null,
+                null
+        );
 
         Cursor cursor = mContext.getContentResolver().query(
                 WeatherEntry.CONTENT_URI,
@@ -512,4 +523,513 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    // Make sure that walking weather/<location> a page at a time returns every row once, in order
+    public void testKeysetPagination() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        ContentValues[] bulkInsertContentValues = createBulkInsertWeatherValues(locationRowId);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, bulkInsertContentValues);
+
+        final int pageSize = 4;
+        int rowsSeen = 0;
+        long afterDate = 0;
+        while (true) {
+            Uri pageUri = WeatherEntry.buildWeatherLocationPage(TestUtilities.TEST_LOCATION,
+                    TestUtilities.TEST_DATE, afterDate, pageSize);
+            Cursor cursor = mContext.getContentResolver().query(pageUri, null, null, null, null);
+            int count = cursor.getCount();
+            assertTrue("Error: page larger than the requested limit", count <= pageSize);
+
+            int dateColumn = cursor.getColumnIndex(WeatherEntry.COLUMN_DATE);
+            while (cursor.moveToNext()) {
+                long date = cursor.getLong(dateColumn);
+                assertTrue("Error: pages are not in date order", date > afterDate);
+                TestUtilities.validateCurrentRecord("testKeysetPagination. Error validating row "
+                        + rowsSeen, cursor, bulkInsertContentValues[rowsSeen]);
+                afterDate = date;
+                rowsSeen++;
+            }
+            cursor.close();
+
+            if (count < pageSize) {
+                break;
+            }
+        }
+        assertEquals("Error: paging did not return every row", BULK_INSERT_RECORDS_TO_INSERT,
+                rowsSeen);
+
+        deleteAllRecordsFromProvider();
+    }
+
+    // Make sure maintenance drops expired weather and unused locations, but keeps the rest
+    public void testMaintenance() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        // A location from an old search that no weather refers to any more
+        ContentValues orphanValues = new ContentValues(testValues);
+        orphanValues.put(LocationEntry.COLUMN_LOCATION_SETTING, "94043");
+        mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, orphanValues);
+
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        ContentValues expiredValues = TestUtilities.createWeatherValues(locationRowId);
+        ContentValues todayValues = TestUtilities.createWeatherValues(locationRowId);
+        todayValues.put(WeatherEntry.COLUMN_DATE, today);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                new ContentValues[] { expiredValues, todayValues });
+
+        Bundle metrics = mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_MAINTAIN, TestUtilities.TEST_LOCATION, null);
+        assertNotNull("Error: maintenance returned no metrics", metrics);
+        assertEquals(2, metrics.getInt(WeatherContract.EXTRA_MAINTENANCE_ROWS_DELETED));
+        assertTrue(metrics.getLong(WeatherContract.EXTRA_MAINTENANCE_SIZE_AFTER) > 0);
+        assertTrue(metrics.getLong(WeatherContract.EXTRA_MAINTENANCE_DURATION) >= 0);
+
+        Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Error: maintenance should only keep today's weather", 1, cursor.getCount());
+        assertEquals(today, cursor.getLong(cursor.getColumnIndex(WeatherEntry.COLUMN_DATE)));
+        cursor.close();
+
+        cursor = mContext.getContentResolver().query(LocationEntry.CONTENT_URI,
+                null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Error: maintenance should drop the unused location", 1, cursor.getCount());
+        assertEquals(TestUtilities.TEST_LOCATION, cursor.getString(
+                cursor.getColumnIndex(LocationEntry.COLUMN_LOCATION_SETTING)));
+        cursor.close();
+
+        deleteAllRecordsFromProvider();
+    }
+
+    public void testMetrics() {
+        // Start from a clean slate, the other tests ran in this process too
+        mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_METRICS, WeatherContract.METRICS_RESET, null);
+
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                new ContentValues[] { TestUtilities.createWeatherValues(locationRowId) });
+        for (int i = 0; i < 3; i++) {
+            Cursor cursor = mContext.getContentResolver().query(
+                    WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION),
+                    null, null, null, null);
+            cursor.close();
+        }
+
+        Bundle metrics = mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_METRICS, null, null);
+        assertNotNull("Error: no metrics returned", metrics);
+
+        Bundle query = metrics.getBundle("query " + WeatherContract.PATH_WEATHER + "/*");
+        assertNotNull("Error: the weather/* queries were not recorded", query);
+        assertEquals(3, query.getLong(WeatherContract.EXTRA_METRICS_COUNT));
+        assertEquals(3, query.getLong(WeatherContract.EXTRA_METRICS_ROWS));
+        long histogramCount = 0;
+        for (long bucket : query.getLongArray(WeatherContract.EXTRA_METRICS_HISTOGRAM)) {
+            histogramCount += bucket;
+        }
+        assertEquals(3, histogramCount);
+        assertTrue(query.getLong(WeatherContract.EXTRA_METRICS_MAX_MICROS)
+                <= query.getLong(WeatherContract.EXTRA_METRICS_TOTAL_MICROS));
+
+        Bundle insert = metrics.getBundle("insert " + WeatherContract.PATH_LOCATION);
+        assertEquals(1, insert.getLong(WeatherContract.EXTRA_METRICS_COUNT));
+        Bundle bulkInsert = metrics.getBundle("bulkInsert " + WeatherContract.PATH_WEATHER);
+        assertEquals(1, bulkInsert.getLong(WeatherContract.EXTRA_METRICS_ROWS));
+
+        deleteAllRecordsFromProvider();
+    }
+
+    private Bundle callCursors() {
+        return mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_CURSORS, null, null);
+    }
+
+    // Opens a cursor and drops it without closing it
+    private void leakCursor() {
+        mContext.getContentResolver().query(LocationEntry.CONTENT_URI, null, null, null, null);
+    }
+
+    public void testCursorTracking() throws Exception {
+        Bundle before = callCursors();
+        if (null == before) {
+            Log.d(LOG_TAG, "Cursor tracking is off in this build");
+            return;
+        }
+
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        Cursor cursor = mContext.getContentResolver().query(
+                LocationEntry.CONTENT_URI, null, null, null, null);
+        Bundle open = callCursors();
+        assertEquals(before.getInt(WeatherContract.EXTRA_CURSORS_OPEN) + 1,
+                open.getInt(WeatherContract.EXTRA_CURSORS_OPEN));
+        cursor.close();
+        Bundle closed = callCursors();
+        assertEquals(before.getInt(WeatherContract.EXTRA_CURSORS_OPEN),
+                closed.getInt(WeatherContract.EXTRA_CURSORS_OPEN));
+        assertEquals(before.getLong(WeatherContract.EXTRA_CURSORS_WINDOW_BYTES),
+                closed.getLong(WeatherContract.EXTRA_CURSORS_WINDOW_BYTES));
+
+        // The cursor is only noticed once it has been collected
+        leakCursor();
+        int leaked = before.getInt(WeatherContract.EXTRA_CURSORS_LEAKED);
+        for (int i = 0; i < 10 && leaked == before.getInt(WeatherContract.EXTRA_CURSORS_LEAKED);
+                i++) {
+            Runtime.getRuntime().gc();
+            Runtime.getRuntime().runFinalization();
+            leaked = callCursors().getInt(WeatherContract.EXTRA_CURSORS_LEAKED);
+        }
+        assertEquals("Error: the cursor that was never closed was not reported",
+                before.getInt(WeatherContract.EXTRA_CURSORS_LEAKED) + 1, leaked);
+
+        deleteAllRecordsFromProvider();
+    }
+
+    /*
+        The provider caches query results.  This makes sure that a write through the provider
+        is visible to the very next query for the same URI, even after that query was cached.
+     */
+    public void testQueryCacheInvalidatedByWrites() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        Uri weatherLocationUri = WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION);
+
+        // Run the same query twice so that the second one is served from the cache
+        for (int i = 0; i < 2; i++) {
+            Cursor cursor = mContext.getContentResolver().query(weatherLocationUri,
+                    null, null, null, null);
+            assertEquals("Error: Expected no weather before the insert", 0, cursor.getCount());
+            cursor.close();
+        }
+
+        ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, weatherValues);
+
+        Cursor cursor = mContext.getContentResolver().query(weatherLocationUri,
+                null, null, null, null);
+        weatherValues.putAll(testValues);
+        TestUtilities.validateCursor("testQueryCacheInvalidatedByWrites. Stale cached result " +
+                "returned after insert.", cursor, weatherValues);
+
+        // Updating the location must also drop the cached join
+        ContentValues updatedValues = new ContentValues(testValues);
+        updatedValues.put(LocationEntry.COLUMN_CITY_NAME, "Santa's Village");
+        mContext.getContentResolver().update(LocationEntry.CONTENT_URI, updatedValues,
+                LocationEntry._ID + "= ?", new String[] { Long.toString(locationRowId)});
+
+        cursor = mContext.getContentResolver().query(weatherLocationUri, null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Error: Stale cached result returned after location update",
+                "Santa's Village",
+                cursor.getString(cursor.getColumnIndex(LocationEntry.COLUMN_CITY_NAME)));
+        cursor.close();
+
+        deleteAllRecordsFromProvider();
+    }
+
+    // Make sure the current_conditions row follows today's forecast through inserts, updates
+    // and deletes.
+    public void testCurrentConditions() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        Uri currentUri = WeatherContract.CurrentConditionsEntry.buildCurrentConditionsUri(
+                TestUtilities.TEST_LOCATION);
+
+        Cursor cursor = mContext.getContentResolver().query(currentUri, null, null, null, null);
+        assertEquals("Error: Expected no current conditions before any weather", 0,
+                cursor.getCount());
+        cursor.close();
+
+        // Yesterday, today and tomorrow
+        long millisecondsInADay = 1000*60*60*24;
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        ContentValues[] weatherValues = new ContentValues[3];
+        for (int i = 0; i < weatherValues.length; i++) {
+            weatherValues[i] = TestUtilities.createWeatherValues(locationRowId);
+            weatherValues[i].put(WeatherEntry.COLUMN_DATE, today + (i - 1) * millisecondsInADay);
+            weatherValues[i].put(WeatherEntry.COLUMN_MAX_TEMP, 70 + i);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weatherValues);
+
+        cursor = mContext.getContentResolver().query(currentUri, null, null, null, null);
+        assertTrue("Error: No current conditions after bulk insert", cursor.moveToFirst());
+        assertEquals(1, cursor.getCount());
+        assertEquals(today, cursor.getLong(
+                cursor.getColumnIndex(WeatherContract.CurrentConditionsEntry.COLUMN_DATE)));
+        assertEquals(71.0, cursor.getDouble(
+                cursor.getColumnIndex(WeatherContract.CurrentConditionsEntry.COLUMN_MAX_TEMP)));
+        assertEquals(TestUtilities.TEST_LOCATION, cursor.getString(
+                cursor.getColumnIndex(WeatherContract.CurrentConditionsEntry.COLUMN_LOCATION_SETTING)));
+        assertEquals(locationRowId, cursor.getLong(
+                cursor.getColumnIndex(WeatherContract.CurrentConditionsEntry._ID)));
+        cursor.close();
+
+        // Updating today's forecast must be reflected straight away
+        ContentValues updatedValues = new ContentValues();
+        updatedValues.put(WeatherEntry.COLUMN_MAX_TEMP, 99);
+        mContext.getContentResolver().update(WeatherEntry.CONTENT_URI, updatedValues,
+                WeatherEntry.COLUMN_DATE + " = ?", new String[] { Long.toString(today) });
+
+        cursor = mContext.getContentResolver().query(currentUri, null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Error: current conditions not refreshed after update", 99.0,
+                cursor.getDouble(cursor.getColumnIndex(
+                        WeatherContract.CurrentConditionsEntry.COLUMN_MAX_TEMP)));
+        cursor.close();
+
+        // Once today is gone, the next day takes over
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI,
+                WeatherEntry.COLUMN_DATE + " <= ?", new String[] { Long.toString(today) });
+
+        cursor = mContext.getContentResolver().query(currentUri, null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(today + millisecondsInADay, cursor.getLong(
+                cursor.getColumnIndex(WeatherContract.CurrentConditionsEntry.COLUMN_DATE)));
+        cursor.close();
+
+        deleteAllRecordsFromProvider();
+
+        cursor = mContext.getContentResolver().query(currentUri, null, null, null, null);
+        assertEquals("Error: current conditions left behind after deleting all records", 0,
+                cursor.getCount());
+        cursor.close();
+    }
+
+    public void testCallWithoutLocation() {
+        String[] methods = { WeatherContract.METHOD_GET_TODAY, WeatherContract.METHOD_GET_RANGE };
+        for (String method : methods) {
+            boolean thrown = false;
+            try {
+                mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI, method,
+                        null, null);
+            } catch (IllegalArgumentException e) {
+                assertTrue("Error: " + method + "'s exception doesn't name the missing arg",
+                        e.getMessage().contains("location setting"));
+                thrown = true;
+            }
+            assertTrue("Error: " + method + " accepted a null location setting", thrown);
+        }
+    }
+
+    // The current_conditions cursor is cached, make sure a cache hit still notices that the day
+    // has rolled over since the rows were built.
+    public void testCurrentConditionsDayRollover() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        // Today, tomorrow and the day after
+        long millisecondsInADay = 1000*60*60*24;
+        long now = System.currentTimeMillis();
+        long today = WeatherContract.normalizeDate(now);
+        long tomorrow = WeatherContract.normalizeDate(now + millisecondsInADay);
+        ContentValues[] weatherValues = new ContentValues[3];
+        for (int i = 0; i < weatherValues.length; i++) {
+            weatherValues[i] = TestUtilities.createWeatherValues(locationRowId);
+            weatherValues[i].put(WeatherEntry.COLUMN_DATE,
+                    WeatherContract.normalizeDate(now + i * millisecondsInADay));
+            weatherValues[i].put(WeatherEntry.COLUMN_MAX_TEMP, 70 + i);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weatherValues);
+
+        Uri currentUri = WeatherContract.CurrentConditionsEntry.buildCurrentConditionsUri(
+                TestUtilities.TEST_LOCATION);
+        ContentProviderClient client = mContext.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        WeatherProvider provider = (WeatherProvider) client.getLocalContentProvider();
+        try {
+            // The second query of each day is the one served from the cache
+            for (int i = 0; i < 2; i++) {
+                Cursor cursor = mContext.getContentResolver().query(currentUri, null, null, null,
+                        null);
+                assertTrue(cursor.moveToFirst());
+                assertEquals("Error: current conditions aren't today's", today, cursor.getLong(
+                        cursor.getColumnIndex(WeatherContract.CurrentConditionsEntry.COLUMN_DATE)));
+                cursor.close();
+            }
+
+            provider.setClockOffset(millisecondsInADay);
+
+            for (int i = 0; i < 2; i++) {
+                Cursor cursor = mContext.getContentResolver().query(currentUri, null, null, null,
+                        null);
+                assertTrue(cursor.moveToFirst());
+                assertEquals("Error: current conditions not rebuilt after the day rolled over",
+                        tomorrow, cursor.getLong(cursor.getColumnIndex(
+                                WeatherContract.CurrentConditionsEntry.COLUMN_DATE)));
+                assertEquals(71.0, cursor.getDouble(cursor.getColumnIndex(
+                        WeatherContract.CurrentConditionsEntry.COLUMN_MAX_TEMP)));
+                cursor.close();
+            }
+        } finally {
+            provider.setClockOffset(0);
+            client.release();
+        }
+
+        deleteAllRecordsFromProvider();
+    }
+
+    // The sync deletes past intraday days after every sync.  current_conditions isn't built
+    // from them, so that mustn't rebuild it or drop its cached cursor.
+    public void testIntradayDeleteKeepsCurrentConditions() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+        weatherValues.put(WeatherEntry.COLUMN_DATE, today);
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, weatherValues);
+
+        // Yesterday's intraday forecast, which the sync would delete
+        long yesterday = WeatherContract.normalizeDate(today - 1000*60*60*12);
+        IntradayCodec.Writer writer = new IntradayCodec.Writer(yesterday);
+        writer.addSlot(yesterday, 12.5, 800, 40, 1013.2, 1.5, 90);
+        ContentValues intradayValues = new ContentValues();
+        intradayValues.put(WeatherContract.IntradayEntry.COLUMN_LOC_KEY, locationRowId);
+        intradayValues.put(WeatherContract.IntradayEntry.COLUMN_DATE, yesterday);
+        intradayValues.put(WeatherContract.IntradayEntry.COLUMN_SLOTS, writer.toByteArray());
+        mContext.getContentResolver().bulkInsert(WeatherContract.IntradayEntry.CONTENT_URI,
+                new ContentValues[]{intradayValues});
+
+        Uri currentUri = WeatherContract.CurrentConditionsEntry.buildCurrentConditionsUri(
+                TestUtilities.TEST_LOCATION);
+        ContentProviderClient client = mContext.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        WeatherQueryCache cache = ((WeatherProvider) client.getLocalContentProvider())
+                .getQueryCache();
+        try {
+            Cursor cursor = mContext.getContentResolver().query(currentUri, null, null, null,
+                    null);
+            assertEquals(1, cursor.getCount());
+            cursor.close();
+
+            int deleted = mContext.getContentResolver().delete(
+                    WeatherContract.IntradayEntry.CONTENT_URI,
+                    WeatherContract.IntradayEntry.COLUMN_DATE + " < ?",
+                    new String[]{Long.toString(today)});
+            assertEquals("Error: the past intraday day wasn't deleted", 1, deleted);
+
+            long hits = cache.getHitCount();
+            cursor = mContext.getContentResolver().query(currentUri, null, null, null, null);
+            assertEquals(1, cursor.getCount());
+            cursor.close();
+            assertEquals("Error: deleting intraday rows dropped the current conditions", hits + 1,
+                    cache.getHitCount());
+        } finally {
+            client.release();
+        }
+
+        deleteAllRecordsFromProvider();
+    }
+
+    public void testLocationSuggestions() {
+        deleteAllRecordsFromProvider();
+
+        ContentValues northPole = TestUtilities.createNorthPoleLocationValues();
+        mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, northPole);
+        ContentValues paris = TestUtilities.createNorthPoleLocationValues();
+        paris.put(LocationEntry.COLUMN_LOCATION_SETTING, "Paris,FR");
+        paris.put(LocationEntry.COLUMN_CITY_NAME, "Paris");
+        mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, paris);
+        ContentValues parma = TestUtilities.createNorthPoleLocationValues();
+        parma.put(LocationEntry.COLUMN_LOCATION_SETTING, "43130");
+        parma.put(LocationEntry.COLUMN_CITY_NAME, "Parma");
+        mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, parma);
+
+        String[] projection = { WeatherContract.LocationHistoryEntry.COLUMN_LOCATION_SETTING };
+
+        // Matches the city name regardless of case, most recently resolved first
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.LocationHistoryEntry.buildSuggestionUri("pAR", 10),
+                projection, null, null, null);
+        assertEquals(2, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals("43130", cursor.getString(0));
+        cursor.close();
+
+        // Matches the location setting, and honours the limit
+        cursor = mContext.getContentResolver().query(
+                WeatherContract.LocationHistoryEntry.buildSuggestionUri("997", 10),
+                projection, null, null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(TestUtilities.TEST_LOCATION, cursor.getString(0));
+        cursor.close();
+
+        cursor = mContext.getContentResolver().query(
+                WeatherContract.LocationHistoryEntry.buildSuggestionUri("Par", 1),
+                projection, null, null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+
+        // The suggestions outlive the locations themselves
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        cursor = mContext.getContentResolver().query(
+                WeatherContract.LocationHistoryEntry.buildSuggestionUri("n", 10),
+                projection, null, null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+
+        deleteAllRecordsFromProvider();
+    }
+
+    public void testApplyBatch() throws Exception {
+        deleteAllRecordsFromProvider();
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        operations.add(ContentProviderOperation.newInsert(LocationEntry.CONTENT_URI)
+                .withValues(TestUtilities.createNorthPoleLocationValues())
+                .build());
+        operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                .withValues(TestUtilities.createWeatherValues(0))
+                .withValueBackReference(WeatherEntry.COLUMN_LOC_KEY, 0)
+                .withYieldAllowed(true)
+                .build());
+
+        TestUtilities.TestContentObserver tco = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI, true, tco);
+        mContext.getContentResolver().applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+        tco.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(tco);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION),
+                null, null, null, null);
+        assertEquals("Error: the back reference did not reach the weather row", 1,
+                cursor.getCount());
+        cursor.close();
+
+        // A failing operation rolls the whole batch back
+        operations.clear();
+        operations.add(ContentProviderOperation.newDelete(WeatherEntry.CONTENT_URI).build());
+        operations.add(ContentProviderOperation.newDelete(LocationEntry.CONTENT_URI)
+                .withExpectedCount(2)
+                .build());
+        try {
+            mContext.getContentResolver().applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+            fail("Error: the expected count of the second operation was not checked");
+        } catch (OperationApplicationException e) {
+            // Expected
+        }
+        cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                null, null, null, null);
+        assertEquals("Error: a failed batch left a delete behind", 1, cursor.getCount());
+        cursor.close();
+
+        deleteAllRecordsFromProvider();
+    }
 }
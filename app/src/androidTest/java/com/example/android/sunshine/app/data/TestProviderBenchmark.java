@@ -0,0 +1,831 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.CursorWrapper;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.data.WeatherContract.CurrentConditionsEntry;
+import com.example.android.sunshine.app.data.WeatherContract.IntradayEntry;
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+/*
+    Synthetic microbenchmarks for the provider's read paths.  Timings are only logged, since they
+    depend on the device, but every benchmark also checks that the paths it compares return the
+    same data.  Run with
+    adb logcat -s TestProviderBenchmark
+    to see the results.
+ */
+public class TestProviderBenchmark extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestProviderBenchmark.class.getSimpleName();
+
+    static final int WARMUP_ITERATIONS = 50;
+    static final int ITERATIONS = 500;
+    static final int DAYS_TO_INSERT = 14;
+
+    private long mLocationRowId;
+    private long mToday;
+
+    private ContentProviderClient mClient;
+    private WeatherProvider mProvider;
+
+    private static final String[] TODAY_COLUMNS = {
+            CurrentConditionsEntry.COLUMN_WEATHER_ID,
+            CurrentConditionsEntry.COLUMN_SHORT_DESC,
+            CurrentConditionsEntry.COLUMN_MAX_TEMP,
+            CurrentConditionsEntry.COLUMN_MIN_TEMP
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // Time what a release build does, without CursorTracker's bookkeeping
+        mClient = mContext.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        mProvider = (WeatherProvider) mClient.getLocalContentProvider();
+        mProvider.setCursorTracking(false);
+
+        deleteAllRecords();
+
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI,
+                TestUtilities.createNorthPoleLocationValues());
+        mLocationRowId = ContentUris.parseId(locationUri);
+
+        long millisecondsInADay = 1000*60*60*24;
+        mToday = WeatherContract.normalizeDate(System.currentTimeMillis());
+        ContentValues[] weatherValues = new ContentValues[DAYS_TO_INSERT];
+        for (int i = 0; i < DAYS_TO_INSERT; i++) {
+            weatherValues[i] = TestUtilities.createWeatherValues(mLocationRowId);
+            weatherValues[i].put(WeatherEntry.COLUMN_DATE, mToday + i * millisecondsInADay);
+            weatherValues[i].put(WeatherEntry.COLUMN_MAX_TEMP, 70 + i);
+            weatherValues[i].put(WeatherEntry.COLUMN_MIN_TEMP, 50 - i);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weatherValues);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        mProvider.setCursorTracking(mContext.getResources().getBoolean(R.bool.track_cursors));
+        mClient.release();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(IntradayEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(
+                WeatherContract.LocationHistoryEntry.CONTENT_URI, null, null);
+    }
+
+    static void logResult(String name, long elapsedNanos, int iterations) {
+        Log.d(LOG_TAG, name + ": " + (elapsedNanos / iterations) + " ns/op over "
+                + iterations + " iterations");
+    }
+
+    private Bundle callGetToday() {
+        return mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_GET_TODAY, TestUtilities.TEST_LOCATION, null);
+    }
+
+    private double queryToday() {
+        Cursor cursor = mContext.getContentResolver().query(
+                CurrentConditionsEntry.buildCurrentConditionsUri(TestUtilities.TEST_LOCATION),
+                TODAY_COLUMNS, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        double high = cursor.getDouble(2);
+        cursor.close();
+        return high;
+    }
+
+    public void testGetTodayMatchesQuery() {
+        Bundle today = callGetToday();
+        assertNotNull("Error: getToday returned nothing", today);
+        assertEquals(mToday, today.getLong(WeatherContract.EXTRA_DATE));
+        assertEquals(queryToday(), today.getDouble(WeatherContract.EXTRA_MAX_TEMP));
+        assertEquals(50.0, today.getDouble(WeatherContract.EXTRA_MIN_TEMP));
+
+        assertNull("Error: getToday should return null for an unknown location",
+                mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                        WeatherContract.METHOD_GET_TODAY, "unknown", null));
+    }
+
+    public void testGetRange() {
+        Bundle extras = new Bundle();
+        extras.putLong(WeatherContract.EXTRA_START_DATE, mToday);
+        extras.putInt(WeatherContract.EXTRA_COUNT, 7);
+        Bundle range = mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_GET_RANGE, TestUtilities.TEST_LOCATION, extras);
+
+        long[] dates = range.getLongArray(WeatherContract.EXTRA_DATE);
+        double[] highs = range.getDoubleArray(WeatherContract.EXTRA_MAX_TEMP);
+        assertEquals(7, dates.length);
+        assertEquals(7, highs.length);
+        for (int i = 0; i < dates.length; i++) {
+            assertEquals(mToday + i * 1000L*60*60*24, dates[i]);
+            assertEquals(70.0 + i, highs[i]);
+        }
+    }
+
+    public void testBenchmarkGetToday() {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            callGetToday();
+            queryToday();
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            callGetToday();
+        }
+        logResult("call(getToday)", SystemClock.elapsedRealtimeNanos() - start, ITERATIONS);
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            queryToday();
+        }
+        logResult("query(current)", SystemClock.elapsedRealtimeNanos() - start, ITERATIONS);
+    }
+
+    public void testBenchmarkGetRange() {
+        Bundle extras = new Bundle();
+        extras.putLong(WeatherContract.EXTRA_START_DATE, mToday);
+        Uri weatherUri = WeatherEntry.buildWeatherLocationWithStartDate(
+                TestUtilities.TEST_LOCATION, mToday);
+        String[] projection = {
+                WeatherEntry.COLUMN_DATE,
+                WeatherEntry.COLUMN_WEATHER_ID,
+                WeatherEntry.COLUMN_MAX_TEMP,
+                WeatherEntry.COLUMN_MIN_TEMP
+        };
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Bundle range = mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                    WeatherContract.METHOD_GET_RANGE, TestUtilities.TEST_LOCATION, extras);
+            assertEquals(DAYS_TO_INSERT, range.getLongArray(WeatherContract.EXTRA_DATE).length);
+        }
+        logResult("call(getRange)", SystemClock.elapsedRealtimeNanos() - start, ITERATIONS);
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Cursor cursor = mContext.getContentResolver().query(weatherUri, projection, null, null,
+                    WeatherEntry.COLUMN_DATE + " ASC");
+            assertEquals(DAYS_TO_INSERT, cursor.getCount());
+            while (cursor.moveToNext()) {
+                cursor.getDouble(2);
+            }
+            cursor.close();
+        }
+        logResult("query(weather/location?date)", SystemClock.elapsedRealtimeNanos() - start,
+                ITERATIONS);
+    }
+
+    public void testBenchmarkForecastSnapshot() {
+        ContentValues[] days = TestForecastSnapshot.createDays(mToday, DAYS_TO_INSERT);
+        ForecastSnapshot.write(mContext, TestUtilities.TEST_LOCATION, days);
+        assertEquals(callGetToday().getDouble(WeatherContract.EXTRA_MAX_TEMP),
+                ForecastSnapshot.getToday(mContext, TestUtilities.TEST_LOCATION)
+                        .getDouble(WeatherContract.EXTRA_MAX_TEMP));
+
+        try {
+            // Cold: map the file again for every read, as a freshly started process would
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < ITERATIONS; i++) {
+                ForecastSnapshot.unmap();
+                assertNotNull(ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION));
+            }
+            logResult("snapshot read, cold", SystemClock.elapsedRealtimeNanos() - start,
+                    ITERATIONS);
+
+            start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < ITERATIONS; i++) {
+                assertNotNull(ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION));
+            }
+            logResult("snapshot read, mapped", SystemClock.elapsedRealtimeNanos() - start,
+                    ITERATIONS);
+
+            start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < ITERATIONS; i++) {
+                callGetToday();
+            }
+            logResult("call(getToday)", SystemClock.elapsedRealtimeNanos() - start, ITERATIONS);
+
+            // The join every consumer used to run on its own
+            String[] projection = {
+                    WeatherEntry.COLUMN_WEATHER_ID,
+                    WeatherEntry.COLUMN_SHORT_DESC,
+                    WeatherEntry.COLUMN_MAX_TEMP,
+                    WeatherEntry.COLUMN_MIN_TEMP
+            };
+            start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < ITERATIONS; i++) {
+                // A distinct sort order every time keeps the query cache out of it
+                Cursor cursor = mContext.getContentResolver().query(
+                        WeatherEntry.buildWeatherLocationWithStartDate(
+                                TestUtilities.TEST_LOCATION, mToday),
+                        projection, null, null,
+                        WeatherEntry.COLUMN_DATE + " ASC /* " + i + " */");
+                assertTrue(cursor.moveToFirst());
+                cursor.getDouble(2);
+                cursor.close();
+            }
+            logResult("query(weather/location?date), uncached",
+                    SystemClock.elapsedRealtimeNanos() - start, ITERATIONS);
+        } finally {
+            ForecastSnapshot.unmap();
+            new File(mContext.getFilesDir(), ForecastSnapshot.FILE_NAME).delete();
+        }
+    }
+
+    static final int COLD_START_ITERATIONS = 20;
+
+    // Runs the forecast list's first page query and reads its first row
+    private long timeToFirstRow(WeatherProvider provider) {
+        String[] projection = {
+                WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+                WeatherEntry.COLUMN_DATE,
+                WeatherEntry.COLUMN_SHORT_DESC,
+                WeatherEntry.COLUMN_MAX_TEMP,
+                WeatherEntry.COLUMN_MIN_TEMP,
+                WeatherEntry.COLUMN_WEATHER_ID
+        };
+        long start = SystemClock.elapsedRealtimeNanos();
+        Cursor cursor = provider.query(WeatherEntry.buildWeatherLocationPage(
+                TestUtilities.TEST_LOCATION, mToday, 0, 10), projection, null, null,
+                WeatherEntry.COLUMN_DATE + " ASC");
+        assertTrue(cursor.moveToFirst());
+        cursor.getDouble(3);
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        cursor.close();
+        return elapsed;
+    }
+
+    public void testBenchmarkPrewarm() {
+        ContentProviderClient client = mContext.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        WeatherProvider provider = (WeatherProvider) client.getLocalContentProvider();
+        try {
+            long cold = 0;
+            long prewarmed = 0;
+            for (int i = 0; i < COLD_START_ITERATIONS; i++) {
+                // shutdown() closes the database and empties the query cache
+                provider.shutdown();
+                cold += timeToFirstRow(provider);
+
+                provider.shutdown();
+                provider.prewarm();
+                prewarmed += timeToFirstRow(provider);
+            }
+            logResult("time to first row, cold", cold, COLD_START_ITERATIONS);
+            logResult("time to first row, prewarmed", prewarmed, COLD_START_ITERATIONS);
+        } finally {
+            client.release();
+        }
+    }
+
+    static final int PROJECTION_DAYS = 5000;
+
+    // The forecast list's projection before and after the location columns were split out
+    private static final String[] JOINED_FORECAST_COLUMNS = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG
+    };
+    private static final String[] TRIMMED_FORECAST_COLUMNS = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_WEATHER_ID
+    };
+
+    // The window under the wrappers of the ContentResolver and, in debug builds, CursorTracker
+    static CursorWindow getWindow(Cursor cursor) {
+        while (cursor instanceof CursorWrapper) {
+            cursor = ((CursorWrapper) cursor).getWrappedCursor();
+        }
+        return ((AbstractWindowedCursor) cursor).getWindow();
+    }
+
+    // Loads every row of the location's forecast and logs how many fit the first CursorWindow
+    private void loadForecast(String name, String[] projection) {
+        Uri weatherUri = WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION);
+        int windowRows = -1;
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < 10; i++) {
+            Cursor cursor = mContext.getContentResolver().query(weatherUri, projection, null,
+                    null, WeatherEntry.COLUMN_DATE + " ASC");
+            assertEquals(PROJECTION_DAYS, cursor.getCount());
+            while (cursor.moveToNext()) {
+                if (windowRows < 0) {
+                    windowRows = getWindow(cursor).getNumRows();
+                }
+                cursor.getDouble(3);
+            }
+            cursor.close();
+        }
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        Log.d(LOG_TAG, name + ": " + windowRows + " rows in the first CursorWindow");
+        logResult(name + " load", elapsed, 10);
+    }
+
+    public void testBenchmarkForecastProjection() {
+        // Far more days than the app keeps, so the rows outgrow a CursorWindow
+        long millisecondsInADay = 1000*60*60*24;
+        ContentValues[] weatherValues = new ContentValues[PROJECTION_DAYS - DAYS_TO_INSERT];
+        for (int i = 0; i < weatherValues.length; i++) {
+            weatherValues[i] = TestUtilities.createWeatherValues(mLocationRowId);
+            weatherValues[i].put(WeatherEntry.COLUMN_DATE,
+                    mToday + (DAYS_TO_INSERT + i) * millisecondsInADay);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weatherValues);
+
+        loadForecast("joined location columns", JOINED_FORECAST_COLUMNS);
+        loadForecast("per-day columns only", TRIMMED_FORECAST_COLUMNS);
+
+        // What the forecast list now runs once for the map instead
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Cursor cursor = mContext.getContentResolver().query(LocationEntry.CONTENT_URI,
+                    new String[] { LocationEntry.COLUMN_COORD_LAT, LocationEntry.COLUMN_COORD_LONG },
+                    LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                    new String[] { TestUtilities.TEST_LOCATION }, null);
+            assertTrue(cursor.moveToFirst());
+            cursor.close();
+        }
+        logResult("location lookup", SystemClock.elapsedRealtimeNanos() - start, ITERATIONS);
+    }
+
+    static final int SYNTHETIC_ROWS = 20000;
+
+    // Fills a table shaped like weather with deterministic synthetic rows, either as REAL
+    // columns or scaled with WeatherContract.FixedPoint.
+    private static void fillSyntheticWeather(SQLiteDatabase db, boolean compact) {
+        String numeric = compact ? " INTEGER NOT NULL, " : " REAL NOT NULL, ";
+        db.execSQL("CREATE TABLE " + WeatherEntry.TABLE_NAME + " (" +
+                WeatherEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                WeatherEntry.COLUMN_LOC_KEY + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_DATE + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_SHORT_DESC + " TEXT NOT NULL, " +
+                WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_MIN_TEMP + numeric +
+                WeatherEntry.COLUMN_MAX_TEMP + numeric +
+                WeatherEntry.COLUMN_HUMIDITY + numeric +
+                WeatherEntry.COLUMN_PRESSURE + numeric +
+                WeatherEntry.COLUMN_WIND_SPEED + numeric +
+                WeatherEntry.COLUMN_DEGREES + numeric +
+                "UNIQUE (" + WeatherEntry.COLUMN_DATE + ", " + WeatherEntry.COLUMN_LOC_KEY + "));");
+
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < SYNTHETIC_ROWS; i++) {
+                values.put(WeatherEntry.COLUMN_LOC_KEY, 1 + i % 4);
+                values.put(WeatherEntry.COLUMN_DATE, TestUtilities.TEST_DATE + i * 1000L*60*60*24);
+                values.put(WeatherEntry.COLUMN_SHORT_DESC, "Clear");
+                values.put(WeatherEntry.COLUMN_WEATHER_ID, 800);
+                putNumeric(values, WeatherEntry.COLUMN_MIN_TEMP, 5.3 + i % 17, compact);
+                putNumeric(values, WeatherEntry.COLUMN_MAX_TEMP, 15.7 + i % 23, compact);
+                putNumeric(values, WeatherEntry.COLUMN_HUMIDITY, 40 + i % 60, compact);
+                putNumeric(values, WeatherEntry.COLUMN_PRESSURE, 1003.4 + i % 20, compact);
+                putNumeric(values, WeatherEntry.COLUMN_WIND_SPEED, 0.5 + (i % 80) / 10.0, compact);
+                putNumeric(values, WeatherEntry.COLUMN_DEGREES, i % 360, compact);
+                db.insert(WeatherEntry.TABLE_NAME, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void putNumeric(ContentValues values, String column, double value,
+                                   boolean compact) {
+        if (compact) {
+            values.put(column, WeatherContract.FixedPoint.encode(value,
+                    WeatherContract.FixedPoint.getScale(column)));
+        } else {
+            values.put(column, value);
+        }
+    }
+
+    private static void logStorage(String name, SQLiteDatabase db) {
+        long pages = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+        long pageSize = DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+        Log.d(LOG_TAG, name + ": " + pages * pageSize + " bytes, "
+                + (pages * pageSize / SYNTHETIC_ROWS) + " bytes/row");
+    }
+
+    // Reads every numeric of every row, decoding in SQL the way the provider does, and logs
+    // how many rows the first CursorWindow held and how long the scan took.
+    private static void scanSyntheticWeather(String name, SQLiteDatabase db, boolean compact) {
+        String[] projection = new String[WeatherContract.FixedPoint.SCALED_COLUMNS.length];
+        for (int i = 0; i < projection.length; i++) {
+            String column = WeatherContract.FixedPoint.SCALED_COLUMNS[i];
+            projection[i] = compact
+                    ? WeatherContract.FixedPoint.decodeExpression(column,
+                            WeatherContract.FixedPoint.getScale(column)) + " AS " + column
+                    : column;
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME, projection, null, null, null, null,
+                WeatherEntry.COLUMN_DATE + " ASC");
+        double sum = 0;
+        int windowRows = -1;
+        while (cursor.moveToNext()) {
+            if (windowRows < 0) {
+                windowRows = ((AbstractWindowedCursor) cursor).getWindow().getNumRows();
+            }
+            for (int col = 0; col < projection.length; col++) {
+                sum += cursor.getDouble(col);
+            }
+        }
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        assertEquals(SYNTHETIC_ROWS, cursor.getCount());
+        cursor.close();
+
+        Log.d(LOG_TAG, name + ": " + windowRows + " rows in the first CursorWindow, checksum "
+                + Math.round(sum));
+        logResult(name + " scan", elapsed, SYNTHETIC_ROWS);
+    }
+
+    public void testBenchmarkFixedPointStorage() {
+        SQLiteDatabase real = SQLiteDatabase.create(null);
+        SQLiteDatabase compact = SQLiteDatabase.create(null);
+        try {
+            fillSyntheticWeather(real, false);
+            fillSyntheticWeather(compact, true);
+
+            logStorage("REAL columns", real);
+            logStorage("fixed point columns", compact);
+
+            // Both layouts must read back the same values, to the scale's precision
+            Cursor realCursor = real.query(WeatherEntry.TABLE_NAME,
+                    new String[] { WeatherEntry.COLUMN_PRESSURE }, null, null, null, null, null);
+            Cursor compactCursor = compact.query(WeatherEntry.TABLE_NAME,
+                    new String[] { WeatherEntry.COLUMN_PRESSURE }, null, null, null, null, null);
+            while (realCursor.moveToNext() && compactCursor.moveToNext()) {
+                assertEquals(realCursor.getDouble(0), WeatherContract.FixedPoint.decode(
+                        compactCursor.getLong(0), WeatherContract.FixedPoint.PRESSURE_SCALE),
+                        0.05);
+            }
+            realCursor.close();
+            compactCursor.close();
+
+            scanSyntheticWeather("REAL columns", real, false);
+            scanSyntheticWeather("fixed point columns", compact, true);
+        } finally {
+            real.close();
+            compact.close();
+        }
+    }
+
+    static final int SLOTS_PER_DAY = 8;
+    static final long SLOT_IN_MILLIS = 1000L*60*60*3;
+
+    // Deterministic synthetic slot values, shared by both intraday layouts
+    private static double slotTemp(int day, int slot) {
+        return -5.5 + (day * SLOTS_PER_DAY + slot) % 40;
+    }
+
+    private static int slotWeatherId(int day, int slot) {
+        return 800 + (day + slot) % 5;
+    }
+
+    private static byte[] packSyntheticDay(long dayStart, int day) {
+        IntradayCodec.Writer writer = new IntradayCodec.Writer(dayStart);
+        for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+            writer.addSlot(dayStart + slot * SLOT_IN_MILLIS, slotTemp(day, slot),
+                    slotWeatherId(day, slot), 40 + slot, 1013.2 + slot, 1.5 + slot / 10.0,
+                    slot * 45);
+        }
+        return writer.toByteArray();
+    }
+
+    public void testIntradayQuery() {
+        ContentValues[] days = new ContentValues[2];
+        for (int day = 0; day < days.length; day++) {
+            long dayStart = mToday + day * 1000L*60*60*24;
+            days[day] = new ContentValues();
+            days[day].put(IntradayEntry.COLUMN_LOC_KEY, mLocationRowId);
+            days[day].put(IntradayEntry.COLUMN_DATE, dayStart);
+            days[day].put(IntradayEntry.COLUMN_SLOTS, packSyntheticDay(dayStart, day));
+        }
+        assertEquals(days.length, mContext.getContentResolver().bulkInsert(
+                IntradayEntry.CONTENT_URI, days));
+
+        Cursor cursor = mContext.getContentResolver().query(
+                IntradayEntry.buildIntradayLocation(TestUtilities.TEST_LOCATION),
+                new String[] { IntradayEntry.COLUMN_SLOT_TIME, IntradayEntry.COLUMN_SLOT_TEMP,
+                        IntradayEntry.COLUMN_SLOT_WEATHER_ID }, null, null, null);
+        assertEquals(days.length * SLOTS_PER_DAY, cursor.getCount());
+        for (int row = 0; cursor.moveToNext(); row++) {
+            int day = row / SLOTS_PER_DAY;
+            int slot = row % SLOTS_PER_DAY;
+            assertEquals(mToday + day * 1000L*60*60*24 + slot * SLOT_IN_MILLIS, cursor.getLong(0));
+            assertEquals(slotTemp(day, slot), cursor.getDouble(1), 0.05);
+            assertEquals(slotWeatherId(day, slot), cursor.getInt(2));
+        }
+        cursor.close();
+
+        cursor = mContext.getContentResolver().query(
+                IntradayEntry.buildIntradayLocationWithDate(TestUtilities.TEST_LOCATION,
+                        mToday + 1000L*60*60*24), null, null, null, null);
+        assertEquals(SLOTS_PER_DAY, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(mToday + 1000L*60*60*24,
+                cursor.getLong(cursor.getColumnIndex(IntradayEntry.COLUMN_DATE)));
+        cursor.close();
+    }
+
+    static final int SYNTHETIC_DAYS = 2500;
+
+    // The naive alternative to the packed blob: one row per slot
+    private static void fillSyntheticSlotRows(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE slot (" +
+                IntradayEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                IntradayEntry.COLUMN_LOC_KEY + " INTEGER NOT NULL, " +
+                IntradayEntry.COLUMN_DATE + " INTEGER NOT NULL, " +
+                IntradayEntry.COLUMN_SLOT_TIME + " INTEGER NOT NULL, " +
+                IntradayEntry.COLUMN_SLOT_TEMP + " REAL NOT NULL, " +
+                IntradayEntry.COLUMN_SLOT_WEATHER_ID + " INTEGER NOT NULL, " +
+                IntradayEntry.COLUMN_SLOT_HUMIDITY + " REAL NOT NULL, " +
+                IntradayEntry.COLUMN_SLOT_PRESSURE + " REAL NOT NULL, " +
+                IntradayEntry.COLUMN_SLOT_WIND_SPEED + " REAL NOT NULL, " +
+                IntradayEntry.COLUMN_SLOT_DEGREES + " REAL NOT NULL, " +
+                "UNIQUE (" + IntradayEntry.COLUMN_SLOT_TIME + ", " +
+                IntradayEntry.COLUMN_LOC_KEY + "));");
+        db.execSQL("CREATE INDEX slot_date ON slot (" + IntradayEntry.COLUMN_LOC_KEY + ", " +
+                IntradayEntry.COLUMN_DATE + ");");
+
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int day = 0; day < SYNTHETIC_DAYS; day++) {
+                long dayStart = TestUtilities.TEST_DATE + day * 1000L*60*60*24;
+                for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+                    values.put(IntradayEntry.COLUMN_LOC_KEY, 1);
+                    values.put(IntradayEntry.COLUMN_DATE, dayStart);
+                    values.put(IntradayEntry.COLUMN_SLOT_TIME, dayStart + slot * SLOT_IN_MILLIS);
+                    values.put(IntradayEntry.COLUMN_SLOT_TEMP, slotTemp(day, slot));
+                    values.put(IntradayEntry.COLUMN_SLOT_WEATHER_ID, slotWeatherId(day, slot));
+                    values.put(IntradayEntry.COLUMN_SLOT_HUMIDITY, 40 + slot);
+                    values.put(IntradayEntry.COLUMN_SLOT_PRESSURE, 1013.2 + slot);
+                    values.put(IntradayEntry.COLUMN_SLOT_WIND_SPEED, 1.5 + slot / 10.0);
+                    values.put(IntradayEntry.COLUMN_SLOT_DEGREES, slot * 45);
+                    db.insert("slot", null, values);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // The intraday table as WeatherDbHelper creates it, without the foreign key
+    private static void fillSyntheticPackedDays(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + IntradayEntry.TABLE_NAME + " (" +
+                IntradayEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                IntradayEntry.COLUMN_LOC_KEY + " INTEGER NOT NULL, " +
+                IntradayEntry.COLUMN_DATE + " INTEGER NOT NULL, " +
+                IntradayEntry.COLUMN_SLOTS + " BLOB NOT NULL, " +
+                "UNIQUE (" + IntradayEntry.COLUMN_DATE + ", " +
+                IntradayEntry.COLUMN_LOC_KEY + "));");
+
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int day = 0; day < SYNTHETIC_DAYS; day++) {
+                long dayStart = TestUtilities.TEST_DATE + day * 1000L*60*60*24;
+                values.put(IntradayEntry.COLUMN_LOC_KEY, 1);
+                values.put(IntradayEntry.COLUMN_DATE, dayStart);
+                values.put(IntradayEntry.COLUMN_SLOTS, packSyntheticDay(dayStart, day));
+                db.insert(IntradayEntry.TABLE_NAME, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static long bytesOf(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA page_count", null)
+                * DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+    }
+
+    // The temperatures of one day, read through the same decoding cursor the provider returns
+    private static double sumPackedDay(SQLiteDatabase db, String selection, String[] args) {
+        Cursor cursor = new IntradayCursor(db.query(IntradayEntry.TABLE_NAME,
+                IntradayCursor.SOURCE_COLUMNS, selection, args, null, null,
+                IntradayEntry.COLUMN_DATE + " ASC"),
+                new String[] { IntradayEntry.COLUMN_SLOT_TIME, IntradayEntry.COLUMN_SLOT_TEMP });
+        double sum = 0;
+        while (cursor.moveToNext()) {
+            sum += cursor.getDouble(1);
+        }
+        cursor.close();
+        return sum;
+    }
+
+    private static double sumSlotRows(SQLiteDatabase db, String selection, String[] args) {
+        Cursor cursor = db.query("slot", new String[] { IntradayEntry.COLUMN_SLOT_TIME,
+                IntradayEntry.COLUMN_SLOT_TEMP }, selection, args, null, null,
+                IntradayEntry.COLUMN_SLOT_TIME + " ASC");
+        double sum = 0;
+        while (cursor.moveToNext()) {
+            sum += cursor.getDouble(1);
+        }
+        cursor.close();
+        return sum;
+    }
+
+    public void testBenchmarkIntradayStorage() {
+        SQLiteDatabase rows = SQLiteDatabase.create(null);
+        SQLiteDatabase packed = SQLiteDatabase.create(null);
+        try {
+            fillSyntheticSlotRows(rows);
+            fillSyntheticPackedDays(packed);
+
+            int slots = SYNTHETIC_DAYS * SLOTS_PER_DAY;
+            Log.d(LOG_TAG, "row per slot: " + bytesOf(rows) + " bytes, "
+                    + (bytesOf(rows) / slots) + " bytes/slot");
+            Log.d(LOG_TAG, "packed days: " + bytesOf(packed) + " bytes, "
+                    + (bytesOf(packed) / slots) + " bytes/slot");
+
+            // One day at a time, the way a detail screen reads it
+            String daySelection = IntradayEntry.COLUMN_LOC_KEY + " = 1 AND " +
+                    IntradayEntry.COLUMN_DATE + " = ?";
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                String[] args = { Long.toString(TestUtilities.TEST_DATE) };
+                assertEquals(sumSlotRows(rows, daySelection, args),
+                        sumPackedDay(packed, daySelection, args), 0.05 * SLOTS_PER_DAY);
+            }
+
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sumSlotRows(rows, daySelection, new String[] { Long.toString(
+                        TestUtilities.TEST_DATE + (i % SYNTHETIC_DAYS) * 1000L*60*60*24) });
+            }
+            logResult("row per slot day query", SystemClock.elapsedRealtimeNanos() - start,
+                    ITERATIONS);
+
+            start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sumPackedDay(packed, daySelection, new String[] { Long.toString(
+                        TestUtilities.TEST_DATE + (i % SYNTHETIC_DAYS) * 1000L*60*60*24) });
+            }
+            logResult("packed day query", SystemClock.elapsedRealtimeNanos() - start,
+                    ITERATIONS);
+
+            // Everything, the way a sync or export would
+            start = SystemClock.elapsedRealtimeNanos();
+            double rowsSum = sumSlotRows(rows, null, null);
+            logResult("row per slot scan", SystemClock.elapsedRealtimeNanos() - start, slots);
+
+            start = SystemClock.elapsedRealtimeNanos();
+            double packedSum = sumPackedDay(packed, null, null);
+            logResult("packed scan", SystemClock.elapsedRealtimeNanos() - start, slots);
+
+            assertEquals(rowsSum, packedSum, 0.05 * slots);
+        } finally {
+            rows.close();
+            packed.close();
+        }
+    }
+
+    static final int BATCH_LOCATIONS = 20;
+
+    // Queries the forecast in a loop, keeping track of how long each query took
+    private class ForecastReader extends Thread {
+        final CountDownLatch mFirstRead = new CountDownLatch(1);
+        volatile boolean mStopped;
+        int mReads;
+        long mTotalNanos;
+        long mMaxNanos;
+
+        @Override
+        public void run() {
+            while (!mStopped) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                // A distinct sort order every time keeps the query cache out of it
+                Cursor cursor = mContext.getContentResolver().query(
+                        WeatherEntry.buildWeatherLocationWithStartDate(
+                                TestUtilities.TEST_LOCATION, mToday),
+                        null, null, null,
+                        WeatherEntry.COLUMN_DATE + " ASC /* " + mReads + " */");
+                cursor.getCount();
+                cursor.close();
+                long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+                mReads++;
+                mTotalNanos += elapsed;
+                mMaxNanos = Math.max(mMaxNanos, elapsed);
+                mFirstRead.countDown();
+            }
+        }
+    }
+
+    // BATCH_LOCATIONS locations with a forecast each, yields allowed at every location if asked
+    private ArrayList<ContentProviderOperation> buildImportBatch(boolean yieldAllowed) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        for (int i = 0; i < BATCH_LOCATIONS; i++) {
+            ContentValues location = TestUtilities.createNorthPoleLocationValues();
+            location.put(LocationEntry.COLUMN_LOCATION_SETTING, "batch-" + i);
+            int locationIndex = operations.size();
+            operations.add(ContentProviderOperation.newInsert(LocationEntry.CONTENT_URI)
+                    .withValues(location)
+                    .withYieldAllowed(yieldAllowed)
+                    .build());
+            for (int day = 0; day < DAYS_TO_INSERT; day++) {
+                ContentValues weather = TestUtilities.createWeatherValues(0);
+                weather.put(WeatherEntry.COLUMN_DATE, mToday + day * 1000L*60*60*24);
+                operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                        .withValues(weather)
+                        .withValueBackReference(WeatherEntry.COLUMN_LOC_KEY, locationIndex)
+                        .build());
+            }
+        }
+        return operations;
+    }
+
+    private void runImportBatch(String name, boolean yieldAllowed) throws Exception {
+        ArrayList<ContentProviderOperation> operations = buildImportBatch(yieldAllowed);
+        ForecastReader reader = new ForecastReader();
+        reader.start();
+        reader.mFirstRead.await();
+        int readsBefore = reader.mReads;
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        mContext.getContentResolver().applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+        long batchNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        reader.mStopped = true;
+        reader.join();
+        Log.d(LOG_TAG, name + ": batch of " + operations.size() + " took "
+                + batchNanos / 1000 + " us, " + (reader.mReads - readsBefore)
+                + " reads meanwhile, reader waited " + reader.mTotalNanos / reader.mReads / 1000
+                + " us on average and " + reader.mMaxNanos / 1000 + " us at most");
+
+        Cursor cursor = mContext.getContentResolver().query(LocationEntry.CONTENT_URI,
+                null, LocationEntry.COLUMN_LOCATION_SETTING + " LIKE 'batch-%'", null, null);
+        assertEquals("Error: the batch did not insert every location",
+                BATCH_LOCATIONS, cursor.getCount());
+        cursor.close();
+        cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocation("batch-" + (BATCH_LOCATIONS - 1)),
+                null, null, null, null);
+        assertEquals(DAYS_TO_INSERT, cursor.getCount());
+        cursor.close();
+
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI,
+                WeatherEntry.COLUMN_LOC_KEY + " != ?",
+                new String[]{Long.toString(mLocationRowId)});
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI,
+                LocationEntry.COLUMN_LOCATION_SETTING + " LIKE 'batch-%'", null);
+    }
+
+    public void testBenchmarkBatchContention() throws Exception {
+        runImportBatch("applyBatch without yield points", false);
+        runImportBatch("applyBatch yielding at every location", true);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import com.example.android.sunshine.shared.JulianDay;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * The date labels of the forecast list, the detail screen and the widgets, kept per Julian day
+ * so a row binding a day it has seen before doesn't format it again.
+ *
+ * "Today" and "Tomorrow" depend on the current day, and the names on the locale and zone, so
+ * every lookup checks all three first and drops the labels when any of them changed.  This
+ * covers local midnight, {@link com.example.android.sunshine.app.data.TimeZoneChangedReceiver}
+ * and locale changes without listening for any of them.
+ */
+public final class DateLabelCache {
+
+    // The labels kept for one day
+    static final int LABEL_FRIENDLY = 0;
+    static final int LABEL_FRIENDLY_LONG_TODAY = 1;
+    static final int LABEL_FULL_FRIENDLY = 2;
+    static final int LABEL_DAY_NAME = 3;
+    static final int LABEL_MONTH_DAY = 4;
+    static final int LABEL_COUNT = 5;
+
+    private static final Object sLock = new Object();
+
+    // Guarded by sLock
+    private static final SparseArray<String[]> sLabels = new SparseArray<String[]>();
+    private static int sToday;
+    private static Locale sLocale;
+    private static TimeZone sZone;
+    private static SimpleDateFormat sShortenedDateFormat;
+    private static SimpleDateFormat sDayFormat;
+    private static SimpleDateFormat sMonthDayFormat;
+
+    private DateLabelCache() {
+    }
+
+    /**
+     * @return the label of the given kind for the day of the given date, formatted on a miss
+     */
+    static String get(Context context, long dateInMillis, int label) {
+        int julianDay = JulianDay.fromMillis(dateInMillis);
+        int today = JulianDay.fromMillis(System.currentTimeMillis());
+        synchronized (sLock) {
+            Locale locale = Locale.getDefault();
+            TimeZone zone = JulianDay.getTimeZone();
+            if (today != sToday || locale != sLocale || zone != sZone) {
+                sLabels.clear();
+                sToday = today;
+                sLocale = locale;
+                sZone = zone;
+                sShortenedDateFormat = null;
+                sDayFormat = null;
+                sMonthDayFormat = null;
+            }
+
+            String[] labels = sLabels.get(julianDay);
+            if (null == labels) {
+                labels = new String[LABEL_COUNT];
+                sLabels.put(julianDay, labels);
+            }
+            if (null == labels[label]) {
+                labels[label] = format(context, dateInMillis, julianDay, label);
+            }
+            return labels[label];
+        }
+    }
+
+    /**
+     * Drops every label, for tests and benchmarks.
+     */
+    static void clear() {
+        synchronized (sLock) {
+            sLabels.clear();
+            sLocale = null;
+        }
+    }
+
+    // Called with sLock held
+    private static String format(Context context, long dateInMillis, int julianDay, int label) {
+        switch (label) {
+            case LABEL_FRIENDLY_LONG_TODAY:
+                // If the date we're building the String for is today's date, the format
+                // is "Today, June 24"
+                if (julianDay == sToday) {
+                    return context.getString(R.string.format_full_friendly_date,
+                            context.getString(R.string.today),
+                            get(context, dateInMillis, LABEL_MONTH_DAY));
+                }
+                return get(context, dateInMillis, LABEL_FRIENDLY);
+            case LABEL_FRIENDLY:
+                if (julianDay < sToday + 7) {
+                    // If the input date is less than a week in the future, just return the
+                    // day name.
+                    return get(context, dateInMillis, LABEL_DAY_NAME);
+                }
+                // Otherwise, use the form "Mon Jun 3"
+                if (null == sShortenedDateFormat) {
+                    sShortenedDateFormat = createFormat("EEE MMM dd");
+                }
+                return sShortenedDateFormat.format(dateInMillis);
+            case LABEL_FULL_FRIENDLY:
+                return context.getString(R.string.format_full_friendly_date,
+                        get(context, dateInMillis, LABEL_DAY_NAME),
+                        get(context, dateInMillis, LABEL_MONTH_DAY));
+            case LABEL_DAY_NAME:
+                // If the date is today, return the localized version of "Today" instead of the
+                // actual day name.
+                if (julianDay == sToday) {
+                    return context.getString(R.string.today);
+                } else if (julianDay == sToday + 1) {
+                    return context.getString(R.string.tomorrow);
+                }
+                // Otherwise, the format is just the day of the week (e.g "Wednesday").
+                if (null == sDayFormat) {
+                    sDayFormat = createFormat("EEEE");
+                }
+                return sDayFormat.format(dateInMillis);
+            case LABEL_MONTH_DAY:
+                if (null == sMonthDayFormat) {
+                    sMonthDayFormat = createFormat("MMMM dd");
+                }
+                return sMonthDayFormat.format(dateInMillis);
+            default:
+                throw new IllegalArgumentException("Unknown label: " + label);
+        }
+    }
+
+    // In the zone the days are computed in, so a label always names the day it is kept for
+    private static SimpleDateFormat createFormat(String pattern) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, sLocale);
+        format.setTimeZone(sZone);
+        return format;
+    }
+}
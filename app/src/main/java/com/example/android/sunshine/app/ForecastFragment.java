@@ -21,9 +21,11 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.TypedArray;
 import android.database.Cursor;
+import android.database.MergeCursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.support.design.widget.AppBarLayout;
 import android.support.v4.app.Fragment;
@@ -48,6 +50,8 @@ import android.widget.TextView;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 
+import java.util.ArrayList;
+
 /**
  * Encapsulates fetching the forecast and displaying it as a {@link android.support.v7.widget.RecyclerView} layout.
  */
@@ -59,10 +63,22 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     private int mChoiceMode;
     private boolean mHoldForTransition;
     private long mInitialSelectedDate = -1;
+    // When the first page was requested, 0 once its first row has been drawn
+    private long mFirstRowStart;
 
     private static final String SELECTED_KEY = "selected_position";
 
+    // The forecast is loaded in pages of PAGE_SIZE days.  Page n is loaded by the loader with id
+    // FORECAST_LOADER + n, and the next page is only requested once the user scrolls close to
+    // the end of the ones already loaded.
     private static final int FORECAST_LOADER = 0;
+    private static final int PAGE_SIZE = 10;
+    private static final String AFTER_DATE_KEY = "after_date";
+
+    // Cursors of the loaded pages, in order.  A null entry is a page that is still loading.
+    private final ArrayList<Cursor> mPages = new ArrayList<Cursor>();
+    // The date each page continues after, 0 for the first page.
+    private final ArrayList<Long> mPageAfterDates = new ArrayList<Long>();
     // For the forecast view we're showing only a small subset of the stored data.
     // Specify the columns we need.
     private static final String[] FORECAST_COLUMNS = {
@@ -77,10 +93,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
             WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
             WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
             WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.LocationEntry.COLUMN_COORD_LAT,
-            WeatherContract.LocationEntry.COLUMN_COORD_LONG
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID
     };
 
     // These indices are tied to FORECAST_COLUMNS.  If FORECAST_COLUMNS changes, these
@@ -90,10 +103,24 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     static final int COL_WEATHER_DESC = 2;
     static final int COL_WEATHER_MAX_TEMP = 3;
     static final int COL_WEATHER_MIN_TEMP = 4;
-    static final int COL_LOCATION_SETTING = 5;
-    static final int COL_WEATHER_CONDITION_ID = 6;
-    static final int COL_COORD_LAT = 7;
-    static final int COL_COORD_LONG = 8;
+    static final int COL_WEATHER_CONDITION_ID = 5;
+
+    // The location is the same for every day, so rather than joining it into each row of the
+    // list it is looked up once, by its own loader.  The id is below the forecast pages'.
+    private static final int LOCATION_LOADER = FORECAST_LOADER - 1;
+
+    private static final String[] LOCATION_COLUMNS = {
+            WeatherContract.CurrentConditionsEntry.COLUMN_COORD_LAT,
+            WeatherContract.CurrentConditionsEntry.COLUMN_COORD_LONG
+    };
+
+    // These indices are tied to LOCATION_COLUMNS.
+    static final int COL_COORD_LAT = 0;
+    static final int COL_COORD_LONG = 1;
+
+    // Coordinates of the preferred location, null until the location loader has them
+    private String mCoordLat;
+    private String mCoordLong;
 
     /**
      * A callback interface that all activities containing this fragment must
@@ -200,6 +227,19 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // specify an adapter (see also next example)
         mRecyclerView.setAdapter(mForecastAdapter);
 
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager =
+                        (LinearLayoutManager) recyclerView.getLayoutManager();
+                // Start on the next page half a page before we run out of rows
+                if (layoutManager.findLastVisibleItemPosition()
+                        >= mForecastAdapter.getItemCount() - PAGE_SIZE / 2) {
+                    loadNextPage();
+                }
+            }
+        });
+
         final View parallaxView = rootView.findViewById(R.id.parallax_bar);
         if (null != parallaxView) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
@@ -259,13 +299,78 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         if ( mHoldForTransition ) {
             getActivity().supportPostponeEnterTransition();
         }
-        getLoaderManager().initLoader(FORECAST_LOADER, null, this);
+        // The loader manager outlives a configuration change, and with it the later pages'
+        // loaders.  Only the first page is shown again, so they would hold their cursors and
+        // keep reloading for nothing.
+        LoaderManager loaderManager = getLoaderManager();
+        for (int page = 1; null != loaderManager.getLoader(FORECAST_LOADER + page); page++) {
+            loaderManager.destroyLoader(FORECAST_LOADER + page);
+        }
+        mPages.clear();
+        mPageAfterDates.clear();
+        mFirstRowStart = SystemClock.elapsedRealtime();
+        startPage(0, 0);
+        getLoaderManager().initLoader(LOCATION_LOADER, null, this);
         super.onActivityCreated(savedInstanceState);
     }
 
     // since we read the location when we create the loader, all we need to do is restart things
     void onLocationChanged() {
+        dropPagesAfter(0);
         getLoaderManager().restartLoader(FORECAST_LOADER, null, this);
+        getLoaderManager().restartLoader(LOCATION_LOADER, null, this);
+    }
+
+    private void startPage(int page, long afterDate) {
+        Bundle args = new Bundle();
+        args.putLong(AFTER_DATE_KEY, afterDate);
+        mPageAfterDates.add(afterDate);
+        mPages.add(null);
+        if (page == 0) {
+            getLoaderManager().initLoader(FORECAST_LOADER, args, this);
+        } else {
+            // A later page may still have a loader from before a rotation, with another date.
+            getLoaderManager().restartLoader(FORECAST_LOADER + page, args, this);
+        }
+    }
+
+    /*
+        Requests the page after the last loaded one, unless a page is still loading or the last
+        page came back short, which means there is nothing more to load.
+     */
+    private void loadNextPage() {
+        int lastPage = mPages.size() - 1;
+        if (lastPage < 0) {
+            return;
+        }
+        Cursor last = mPages.get(lastPage);
+        if (null == last || last.getCount() < PAGE_SIZE || !last.moveToLast()) {
+            return;
+        }
+        startPage(lastPage + 1, last.getLong(COL_WEATHER_DATE));
+    }
+
+    // Destroys the loaders of every page after the given one.
+    private void dropPagesAfter(int page) {
+        for (int i = mPages.size() - 1; i > page; i--) {
+            getLoaderManager().destroyLoader(FORECAST_LOADER + i);
+            mPages.remove(i);
+            mPageAfterDates.remove(i);
+        }
+    }
+
+    // The adapter sees every page loaded so far as one cursor.
+    private Cursor mergePages() {
+        int loaded = 0;
+        while (loaded < mPages.size() && null != mPages.get(loaded)) {
+            loaded++;
+        }
+        if (loaded == 0) {
+            return null;
+        } else if (loaded == 1) {
+            return mPages.get(0);
+        }
+        return new MergeCursor(mPages.subList(0, loaded).toArray(new Cursor[loaded]));
     }
 
     private void openPreferredLocationInMap() {
@@ -273,12 +378,8 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // intent can is detailed in the "Common Intents" page of Android's developer site:
         // http://developer.android.com/guide/components/intents-common.html#Maps
         if (null != mForecastAdapter) {
-            Cursor c = mForecastAdapter.getCursor();
-            if (null != c) {
-                c.moveToPosition(0);
-                String posLat = c.getString(COL_COORD_LAT);
-                String posLong = c.getString(COL_COORD_LONG);
-                Uri geoLocation = Uri.parse("geo:" + posLat + "," + posLong);
+            if (null != mCoordLat && null != mCoordLong) {
+                Uri geoLocation = Uri.parse("geo:" + mCoordLat + "," + mCoordLong);
 
                 Intent intent = new Intent(Intent.ACTION_VIEW);
                 intent.setData(geoLocation);
@@ -303,8 +404,22 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
     @Override
     public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        // This is called when a new Loader needs to be created.  This
-        // fragment only uses one loader, so we don't care about checking the id.
+        if (i == LOCATION_LOADER) {
+            // The location's current_conditions row, which carries its coordinates and, unlike
+            // the raw location table, is kept in the provider's query cache.  There is no row
+            // until the location has a forecast, and without one there is nothing to map.
+            return new CursorLoader(getActivity(),
+                    WeatherContract.CurrentConditionsEntry.buildCurrentConditionsUri(
+                            Utility.getPreferredLocation(getActivity())),
+                    LOCATION_COLUMNS,
+                    null,
+                    null,
+                    null);
+        }
+
+        // This is called when a new Loader needs to be created.  Every loader of this
+        // fragment loads one page of the forecast, continuing after the date in the bundle.
+        long afterDate = null != bundle ? bundle.getLong(AFTER_DATE_KEY, 0) : 0;
 
         // To only show current and future dates, filter the query to return weather only for
         // dates after or including today.
@@ -313,8 +428,8 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
 
         String locationSetting = Utility.getPreferredLocation(getActivity());
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                locationSetting, System.currentTimeMillis());
+        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationPage(
+                locationSetting, System.currentTimeMillis(), afterDate, PAGE_SIZE);
 
         return new CursorLoader(getActivity(),
                 weatherForLocationUri,
@@ -326,7 +441,37 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        mForecastAdapter.swapCursor(data);
+        if (loader.getId() == LOCATION_LOADER) {
+            if (data.moveToFirst()) {
+                mCoordLat = data.getString(COL_COORD_LAT);
+                mCoordLong = data.getString(COL_COORD_LONG);
+            } else {
+                mCoordLat = null;
+                mCoordLong = null;
+            }
+            return;
+        }
+        int page = loader.getId() - FORECAST_LOADER;
+        if (page >= mPages.size()) {
+            return;
+        }
+        mPages.set(page, data);
+
+        // If the pages after this one no longer continue where it ends, for example after a
+        // sync, reload them from here.
+        if (page + 1 < mPages.size()) {
+            if (data.getCount() < PAGE_SIZE || !data.moveToLast()) {
+                dropPagesAfter(page);
+            } else if (data.getLong(COL_WEATHER_DATE) != mPageAfterDates.get(page + 1)) {
+                dropPagesAfter(page);
+                loadNextPage();
+            }
+        }
+
+        mForecastAdapter.swapCursor(mergePages());
+        if (page != 0) {
+            return;
+        }
         updateEmptyView();
         if ( data.getCount() == 0 ) {
             getActivity().supportStartPostponedEnterTransition();
@@ -338,6 +483,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
                     // we see Children.
                     if (mRecyclerView.getChildCount() > 0) {
                         mRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        logTimeToFirstRow();
                         int position = mForecastAdapter.getSelectedItemPosition();
                         if (position == RecyclerView.NO_POSITION &&
                                 -1 != mInitialSelectedDate) {
@@ -384,7 +530,14 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
-        mForecastAdapter.swapCursor(null);
+        if (loader.getId() == LOCATION_LOADER) {
+            return;
+        }
+        int page = loader.getId() - FORECAST_LOADER;
+        if (page < mPages.size()) {
+            mPages.set(page, null);
+        }
+        mForecastAdapter.swapCursor(mergePages());
     }
 
     public void setUseTodayLayout(boolean useTodayLayout) {
@@ -398,6 +551,18 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         mInitialSelectedDate = initialSelectedDate;
     }
 
+    // Logs how long the first rows took to show, once.  Compare runs with
+    // R.bool.prewarm_database on and off, see WeatherProvider.prewarm()
+    private void logTimeToFirstRow() {
+        if (mFirstRowStart == 0) {
+            return;
+        }
+        Log.d(LOG_TAG, "Time to first row: " + (SystemClock.elapsedRealtime() - mFirstRowStart)
+                + "ms, database prewarm "
+                + (getResources().getBoolean(R.bool.prewarm_database) ? "on" : "off"));
+        mFirstRowStart = 0;
+    }
+
     /*
         Updates the empty list view with contextually relevant information that the user can
         use to determine why they aren't seeing weather.
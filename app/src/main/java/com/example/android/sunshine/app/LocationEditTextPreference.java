@@ -20,6 +20,7 @@ import android.app.AlertDialog;
 import android.app.Dialog;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.database.Cursor;
 import android.os.Bundle;
 import android.preference.EditTextPreference;
 import android.text.Editable;
@@ -27,8 +28,15 @@ import android.text.TextWatcher;
 import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.Filter;
+import android.widget.FilterQueryProvider;
+import android.widget.ListPopupWindow;
+import android.widget.SimpleCursorAdapter;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationHistoryEntry;
 
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
@@ -38,7 +46,18 @@ import com.google.android.gms.location.places.ui.PlacePicker;
 
 public class LocationEditTextPreference extends EditTextPreference {
     static final private int DEFAULT_MINIMUM_LOCATION_LENGTH = 2;
+    static final private int MAX_SUGGESTIONS = 5;
+
+    private static final String[] SUGGESTION_COLUMNS = {
+            LocationHistoryEntry._ID,
+            LocationHistoryEntry.COLUMN_CITY_NAME,
+            LocationHistoryEntry.COLUMN_LOCATION_SETTING
+    };
+    static final private int COL_SUGGESTION_LOCATION_SETTING = 2;
+
     private int mMinLength;
+    private ListPopupWindow mSuggestions;
+    private SimpleCursorAdapter mSuggestionAdapter;
 
     public LocationEditTextPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -103,11 +122,85 @@ public class LocationEditTextPreference extends EditTextPreference {
         return view;
     }
 
+    // Locations that resolved before, matching what has been typed so far.  The adapter's filter
+    // runs the provider query on its own thread, so typing never waits on the database.
+    private void setupSuggestions(final EditText et) {
+        mSuggestionAdapter = new SimpleCursorAdapter(getContext(),
+                android.R.layout.simple_list_item_2, null,
+                new String[] {
+                        LocationHistoryEntry.COLUMN_CITY_NAME,
+                        LocationHistoryEntry.COLUMN_LOCATION_SETTING
+                },
+                new int[] { android.R.id.text1, android.R.id.text2 }, 0);
+        mSuggestionAdapter.setFilterQueryProvider(new FilterQueryProvider() {
+            @Override
+            public Cursor runQuery(CharSequence constraint) {
+                if (null == constraint || constraint.length() == 0) {
+                    return null;
+                }
+                return getContext().getContentResolver().query(
+                        LocationHistoryEntry.buildSuggestionUri(constraint.toString().trim(),
+                                MAX_SUGGESTIONS),
+                        SUGGESTION_COLUMNS, null, null, null);
+            }
+        });
+
+        mSuggestions = new ListPopupWindow(getContext());
+        mSuggestions.setAnchorView(et);
+        mSuggestions.setAdapter(mSuggestionAdapter);
+        mSuggestions.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                Cursor cursor = mSuggestionAdapter.getCursor();
+                if (cursor != null && cursor.moveToPosition(position)) {
+                    String locationSetting = cursor.getString(COL_SUGGESTION_LOCATION_SETTING);
+                    et.setText(locationSetting);
+                    et.setSelection(locationSetting.length());
+                }
+                mSuggestions.dismiss();
+            }
+        });
+    }
+
+    private void updateSuggestions(CharSequence text) {
+        mSuggestionAdapter.getFilter().filter(text, new Filter.FilterListener() {
+            @Override
+            public void onFilterComplete(int count) {
+                if (null == mSuggestions) {
+                    // The dialog closed while the query ran
+                    return;
+                }
+                // Nothing to suggest once the text is exactly a suggestion, e.g. after picking one
+                Cursor cursor = mSuggestionAdapter.getCursor();
+                boolean exactMatch = count == 1 && cursor.moveToFirst()
+                        && getEditText().getText().toString().trim()
+                        .equalsIgnoreCase(cursor.getString(COL_SUGGESTION_LOCATION_SETTING));
+                if (count > 0 && !exactMatch) {
+                    mSuggestions.show();
+                } else {
+                    mSuggestions.dismiss();
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void onDialogClosed(boolean positiveResult) {
+        if (null != mSuggestions) {
+            mSuggestions.dismiss();
+            mSuggestions = null;
+            mSuggestionAdapter.changeCursor(null);
+            mSuggestionAdapter = null;
+        }
+        super.onDialogClosed(positiveResult);
+    }
+
     @Override
     protected void showDialog(Bundle state) {
         super.showDialog(state);
 
-        EditText et = getEditText();
+        final EditText et = getEditText();
+        setupSuggestions(et);
         et.addTextChangedListener(new TextWatcher() {
 
 
@@ -123,12 +216,22 @@ public class LocationEditTextPreference extends EditTextPreference {
 
             @Override
             public void afterTextChanged(Editable s) {
+                if (null != mSuggestionAdapter) {
+                    updateSuggestions(s);
+                }
+
+                // A location the server did not find last time won't be found now either
+                boolean knownInvalid = s.length() >= mMinLength
+                        && Utility.isLocationKnownInvalid(getContext(), s.toString());
+                et.setError(knownInvalid
+                        ? getContext().getString(R.string.pref_location_known_invalid) : null);
+
                 Dialog d = getDialog();
                 if (d instanceof AlertDialog) {
                     AlertDialog dialog = (AlertDialog) d;
                     Button positiveButton = dialog.getButton(AlertDialog.BUTTON_POSITIVE);
                     // Check if the EditText is empty
-                    if (s.length() < mMinLength) {
+                    if (s.length() < mMinLength || knownInvalid) {
                         // Disable OK button
                         positiveButton.setEnabled(false);
                     } else {
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+/**
+ * The user's settings as plain fields, so that code reading them for every list row doesn't
+ * look up the preferences and their keys each time.
+ *
+ * A snapshot never changes.  A new one is read whenever the default shared preferences change,
+ * and {@link #get} returns the latest.
+ */
+public final class SettingsSnapshot {
+
+    private static final Object sLock = new Object();
+    private static volatile SettingsSnapshot sSnapshot;
+
+    // SharedPreferences only keeps a weak reference to its listeners
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+    // The application context sListener is registered with, guarded by sLock
+    private static Context sAppContext;
+
+    private final String mLocation;
+    private final boolean mLatLonAvailable;
+    private final float mLatitude;
+    private final float mLongitude;
+    private final boolean mMetric;
+    private final String mArtPack;
+    private final boolean mUsingLocalGraphics;
+
+    private SettingsSnapshot(Context context, SharedPreferences prefs) {
+        mLocation = prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+
+        String latitudeKey = context.getString(R.string.pref_location_latitude);
+        String longitudeKey = context.getString(R.string.pref_location_longitude);
+        mLatLonAvailable = prefs.contains(latitudeKey) && prefs.contains(longitudeKey);
+        mLatitude = prefs.getFloat(latitudeKey, Utility.DEFAULT_LATLONG);
+        mLongitude = prefs.getFloat(longitudeKey, Utility.DEFAULT_LATLONG);
+
+        String metric = context.getString(R.string.pref_units_metric);
+        mMetric = prefs.getString(context.getString(R.string.pref_units_key), metric)
+                .equals(metric);
+
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        mArtPack = prefs.getString(context.getString(R.string.pref_art_pack_key),
+                sunshineArtPack);
+        mUsingLocalGraphics = mArtPack.equals(sunshineArtPack);
+    }
+
+    /**
+     * @return the current settings, read the first time and after every change
+     */
+    public static SettingsSnapshot get(Context context) {
+        SettingsSnapshot snapshot = sSnapshot;
+        if (null != snapshot) {
+            return snapshot;
+        }
+        synchronized (sLock) {
+            if (null == sSnapshot) {
+                final Context appContext = context.getApplicationContext();
+                SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+                sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+                        sSnapshot = new SettingsSnapshot(appContext, prefs);
+                    }
+                };
+                prefs.registerOnSharedPreferenceChangeListener(sListener);
+                sAppContext = appContext;
+                sSnapshot = new SettingsSnapshot(appContext, prefs);
+            }
+            return sSnapshot;
+        }
+    }
+
+    /**
+     * Forgets the snapshot and stops listening, so that the next {@link #get} reads the
+     * settings of the application it is given.  For tests, as Robolectric gives each test its
+     * own application.
+     */
+    public static void reset() {
+        synchronized (sLock) {
+            if (null != sAppContext) {
+                PreferenceManager.getDefaultSharedPreferences(sAppContext)
+                        .unregisterOnSharedPreferenceChangeListener(sListener);
+            }
+            sAppContext = null;
+            sListener = null;
+            sSnapshot = null;
+        }
+    }
+
+    public String getLocation() {
+        return mLocation;
+    }
+
+    public boolean isLatLonAvailable() {
+        return mLatLonAvailable;
+    }
+
+    public float getLatitude() {
+        return mLatitude;
+    }
+
+    public float getLongitude() {
+        return mLongitude;
+    }
+
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    /**
+     * @return the art pack's URL format, with a %s for the art slug
+     */
+    public String getArtPack() {
+        return mArtPack;
+    }
+
+    public boolean isUsingLocalGraphics() {
+        return mUsingLocalGraphics;
+    }
+}
@@ -20,63 +20,118 @@ import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.preference.PreferenceManager;
-import android.text.format.Time;
 
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.shared.WeatherCondition;
+import com.example.android.sunshine.shared.WeatherConditions;
+import com.example.android.sunshine.shared.WeatherFormatter;
 
 import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 
 public class Utility {
     // We'll default our latlong to 0. Yay, "Earth!"
     public static float DEFAULT_LATLONG = 0F;
 
     public static boolean isLocationLatLonAvailable(Context context) {
-        SharedPreferences prefs
-                = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.contains(context.getString(R.string.pref_location_latitude))
-                && prefs.contains(context.getString(R.string.pref_location_longitude));
+        return SettingsSnapshot.get(context).isLatLonAvailable();
     }
 
     public static float getLocationLatitude(Context context) {
-        SharedPreferences prefs
-                = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getFloat(context.getString(R.string.pref_location_latitude),
-                DEFAULT_LATLONG);
+        return SettingsSnapshot.get(context).getLatitude();
     }
 
     public static float getLocationLongitude(Context context) {
-        SharedPreferences prefs
-                = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getFloat(context.getString(R.string.pref_location_longitude),
-                DEFAULT_LATLONG);
+        return SettingsSnapshot.get(context).getLongitude();
     }
 
     public static String getPreferredLocation(Context context) {
+        return SettingsSnapshot.get(context).getLocation();
+    }
+
+    // Location names the server answered with "not found" are kept here, so that they are turned
+    // down locally the next time instead of costing another sync.  The set is capped, once full
+    // it starts over.
+    static final int MAX_INVALID_LOCATIONS = 50;
+
+    private static String normalizeLocation(String location) {
+        return location.trim().toLowerCase(Locale.US);
+    }
+
+    public static boolean isLocationKnownInvalid(Context context, String location) {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getString(context.getString(R.string.pref_location_key),
-                context.getString(R.string.pref_location_default));
+        Set<String> invalid = prefs.getStringSet(
+                context.getString(R.string.pref_invalid_locations_key), null);
+        return null != invalid && invalid.contains(normalizeLocation(location));
     }
 
-    public static boolean isMetric(Context context) {
+    public static void addInvalidLocation(Context context, String location) {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getString(context.getString(R.string.pref_units_key),
-                context.getString(R.string.pref_units_metric))
-                .equals(context.getString(R.string.pref_units_metric));
+        String key = context.getString(R.string.pref_invalid_locations_key);
+        // The returned set must not be modified, work on a copy
+        Set<String> invalid = new HashSet<String>(
+                prefs.getStringSet(key, Collections.<String>emptySet()));
+        if (invalid.size() >= MAX_INVALID_LOCATIONS) {
+            invalid.clear();
+        }
+        invalid.add(normalizeLocation(location));
+        prefs.edit().putStringSet(key, invalid).apply();
+    }
+
+    public static boolean isMetric(Context context) {
+        return SettingsSnapshot.get(context).isMetric();
     }
 
     public static String formatTemperature(Context context, double temperature) {
-        // Data stored in Celsius by default.  If user prefers to see in Fahrenheit, convert
-        // the values here.
-        String suffix = "\u00B0";
-        if (!isMetric(context)) {
-            temperature = (temperature * 1.8) + 32;
-        }
+        return formatTemperature(context, temperature, SettingsSnapshot.get(context));
+    }
 
+    /**
+     * Like {@link #formatTemperature(Context, double)}, for callers formatting several
+     * temperatures with the same settings.
+     */
+    public static String formatTemperature(Context context, double temperature,
+                                           SettingsSnapshot settings) {
+        // Data stored in Celsius by default, the formatter converts it to the user's units.
         // For presentation, assume the user doesn't care about tenths of a degree.
-        return String.format(context.getString(R.string.format_temperature), temperature);
+        return getFormatter(context, settings).formatTemperature(temperature);
+    }
+
+    /*
+        The formatter for the current units and locale.  Building one formats every
+        temperature up front, so it is kept until either changes, not whenever any other
+        setting does.
+     */
+    private static final class CachedFormatter {
+        final boolean metric;
+        final Locale locale;
+        final WeatherFormatter formatter;
+
+        CachedFormatter(boolean metric, Locale locale, WeatherFormatter formatter) {
+            this.metric = metric;
+            this.locale = locale;
+            this.formatter = formatter;
+        }
+    }
+
+    private static volatile CachedFormatter sFormatter;
+
+    public static WeatherFormatter getFormatter(Context context, SettingsSnapshot settings) {
+        boolean metric = settings.isMetric();
+        Locale locale = Locale.getDefault();
+        CachedFormatter cached = sFormatter;
+        if (null != cached && cached.metric == metric && cached.locale.equals(locale)) {
+            return cached.formatter;
+        }
+        WeatherFormatter formatter = new WeatherFormatter(locale, metric,
+                context.getString(R.string.format_temperature),
+                context.getString(metric ? R.string.format_wind_kmh : R.string.format_wind_mph));
+        sFormatter = new CachedFormatter(metric, locale, formatter);
+        return formatter;
     }
 
     static String formatDate(long dateInMilliseconds) {
@@ -102,30 +157,8 @@ public class Utility {
         // For tomorrow:  "Tomorrow"
         // For the next 5 days: "Wednesday" (just the day name)
         // For all days after that: "Mon Jun 8"
-
-        Time time = new Time();
-        time.setToNow();
-        long currentTime = System.currentTimeMillis();
-        int julianDay = Time.getJulianDay(dateInMillis, time.gmtoff);
-        int currentJulianDay = Time.getJulianDay(currentTime, time.gmtoff);
-
-        // If the date we're building the String for is today's date, the format
-        // is "Today, June 24"
-        if (displayLongToday && julianDay == currentJulianDay) {
-            String today = context.getString(R.string.today);
-            int formatId = R.string.format_full_friendly_date;
-            return String.format(context.getString(
-                    formatId,
-                    today,
-                    getFormattedMonthDay(context, dateInMillis)));
-        } else if ( julianDay < currentJulianDay + 7 ) {
-            // If the input date is less than a week in the future, just return the day name.
-            return getDayName(context, dateInMillis);
-        } else {
-            // Otherwise, use the form "Mon Jun 3"
-            SimpleDateFormat shortenedDateFormat = new SimpleDateFormat("EEE MMM dd");
-            return shortenedDateFormat.format(dateInMillis);
-        }
+        return DateLabelCache.get(context, dateInMillis, displayLongToday
+                ? DateLabelCache.LABEL_FRIENDLY_LONG_TODAY : DateLabelCache.LABEL_FRIENDLY);
     }
 
     /**
@@ -137,13 +170,7 @@ public class Utility {
      * @return a user-friendly representation of the date.
      */
     public static String getFullFriendlyDayString(Context context, long dateInMillis) {
-
-        String day = getDayName(context, dateInMillis);
-        int formatId = R.string.format_full_friendly_date;
-        return String.format(context.getString(
-                formatId,
-                day,
-                getFormattedMonthDay(context, dateInMillis)));
+        return DateLabelCache.get(context, dateInMillis, DateLabelCache.LABEL_FULL_FRIENDLY);
     }
 
     /**
@@ -155,24 +182,7 @@ public class Utility {
      * @return
      */
     public static String getDayName(Context context, long dateInMillis) {
-        // If the date is today, return the localized version of "Today" instead of the actual
-        // day name.
-
-        Time t = new Time();
-        t.setToNow();
-        int julianDay = Time.getJulianDay(dateInMillis, t.gmtoff);
-        int currentJulianDay = Time.getJulianDay(System.currentTimeMillis(), t.gmtoff);
-        if (julianDay == currentJulianDay) {
-            return context.getString(R.string.today);
-        } else if ( julianDay == currentJulianDay +1 ) {
-            return context.getString(R.string.tomorrow);
-        } else {
-            Time time = new Time();
-            time.setToNow();
-            // Otherwise, the format is just the day of the week (e.g "Wednesday".
-            SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE");
-            return dayFormat.format(dateInMillis);
-        }
+        return DateLabelCache.get(context, dateInMillis, DateLabelCache.LABEL_DAY_NAME);
     }
 
     /**
@@ -183,45 +193,84 @@ public class Utility {
      * @return The day in the form of a string formatted "December 6"
      */
     public static String getFormattedMonthDay(Context context, long dateInMillis ) {
-        Time time = new Time();
-        time.setToNow();
-        SimpleDateFormat dbDateFormat = new SimpleDateFormat(Utility.DATE_FORMAT);
-        SimpleDateFormat monthDayFormat = new SimpleDateFormat("MMMM dd");
-        String monthDayString = monthDayFormat.format(dateInMillis);
-        return monthDayString;
+        return DateLabelCache.get(context, dateInMillis, DateLabelCache.LABEL_MONTH_DAY);
     }
 
     public static String getFormattedWind(Context context, float windSpeed, float degrees) {
-        int windFormat;
-        if (Utility.isMetric(context)) {
-            windFormat = R.string.format_wind_kmh;
-        } else {
-            windFormat = R.string.format_wind_mph;
-            windSpeed = .621371192237334f * windSpeed;
-        }
+        // From wind direction in degrees, the formatter determines compass direction as a
+        // string (e.g NW)
+        return getFormatter(context, SettingsSnapshot.get(context))
+                .formatWind(windSpeed, degrees);
+    }
 
-        // From wind direction in degrees, determine compass direction as a string (e.g NW)
-        // You know what's fun, writing really long if/else statements with tons of possible
-        // conditions.  Seriously, try it!
-        String direction = "Unknown";
-        if (degrees >= 337.5 || degrees < 22.5) {
-            direction = "N";
-        } else if (degrees >= 22.5 && degrees < 67.5) {
-            direction = "NE";
-        } else if (degrees >= 67.5 && degrees < 112.5) {
-            direction = "E";
-        } else if (degrees >= 112.5 && degrees < 157.5) {
-            direction = "SE";
-        } else if (degrees >= 157.5 && degrees < 202.5) {
-            direction = "S";
-        } else if (degrees >= 202.5 && degrees < 247.5) {
-            direction = "SW";
-        } else if (degrees >= 247.5 && degrees < 292.5) {
-            direction = "W";
-        } else if (degrees >= 292.5 && degrees < 337.5) {
-            direction = "NW";
-        }
-        return String.format(context.getString(windFormat), windSpeed, direction);
+    // Everything shown for a weather condition code, one array lookup instead of a chain of ifs
+    // for every list item and widget row.  See WeatherConditions.
+    private static final WeatherConditions sConditions = new WeatherConditions.Builder()
+            .setIcons(R.drawable.ic_storm, R.drawable.ic_light_rain, R.drawable.ic_rain,
+                    R.drawable.ic_snow, R.drawable.ic_fog, R.drawable.ic_clear,
+                    R.drawable.ic_light_clouds, R.drawable.ic_cloudy)
+            .setArt(R.drawable.art_storm, R.drawable.art_light_rain, R.drawable.art_rain,
+                    R.drawable.art_snow, R.drawable.art_fog, R.drawable.art_clear,
+                    R.drawable.art_light_clouds, R.drawable.art_clouds)
+            .setStrings(200, 232, R.string.condition_2xx)
+            .setStrings(300, 321, R.string.condition_3xx)
+            .setString(500, R.string.condition_500)
+            .setString(501, R.string.condition_501)
+            .setString(502, R.string.condition_502)
+            .setString(503, R.string.condition_503)
+            .setString(504, R.string.condition_504)
+            .setString(511, R.string.condition_511)
+            .setString(520, R.string.condition_520)
+            .setString(531, R.string.condition_531)
+            .setString(600, R.string.condition_600)
+            .setString(601, R.string.condition_601)
+            .setString(602, R.string.condition_602)
+            .setString(611, R.string.condition_611)
+            .setString(612, R.string.condition_612)
+            .setString(615, R.string.condition_615)
+            .setString(616, R.string.condition_616)
+            .setString(620, R.string.condition_620)
+            .setString(621, R.string.condition_621)
+            .setString(622, R.string.condition_622)
+            .setString(701, R.string.condition_701)
+            .setString(711, R.string.condition_711)
+            .setString(721, R.string.condition_721)
+            .setString(731, R.string.condition_731)
+            .setString(741, R.string.condition_741)
+            .setString(751, R.string.condition_751)
+            .setString(761, R.string.condition_761)
+            .setString(762, R.string.condition_762)
+            .setString(771, R.string.condition_771)
+            .setString(781, R.string.condition_781)
+            .setString(800, R.string.condition_800)
+            .setString(801, R.string.condition_801)
+            .setString(802, R.string.condition_802)
+            .setString(803, R.string.condition_803)
+            .setString(804, R.string.condition_804)
+            .setString(900, R.string.condition_900)
+            .setString(901, R.string.condition_901)
+            .setString(902, R.string.condition_902)
+            .setString(903, R.string.condition_903)
+            .setString(904, R.string.condition_904)
+            .setString(905, R.string.condition_905)
+            .setString(906, R.string.condition_906)
+            .setString(951, R.string.condition_951)
+            .setString(952, R.string.condition_952)
+            .setString(953, R.string.condition_953)
+            .setString(954, R.string.condition_954)
+            .setString(955, R.string.condition_955)
+            .setString(956, R.string.condition_956)
+            .setString(957, R.string.condition_957)
+            .setString(958, R.string.condition_958)
+            .setString(959, R.string.condition_959)
+            .setString(960, R.string.condition_960)
+            .setString(961, R.string.condition_961)
+            .setString(962, R.string.condition_962)
+            .setUnknownString(R.string.condition_unknown)
+            .build();
+
+    public static WeatherCondition getWeatherCondition(int weatherId) {
+        return sConditions.get(weatherId);
     }
 
     /**
@@ -231,32 +280,7 @@ public class Utility {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getIconResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
-        }
-        return -1;
+        return sConditions.get(weatherId).getIconResource();
     }
 
     /**
@@ -266,10 +290,7 @@ public class Utility {
      * @return true if Sunshine is using local graphics, false otherwise.
      */
     public static boolean usingLocalGraphics(Context context) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
-        return prefs.getString(context.getString(R.string.pref_art_pack_key),
-                sunshineArtPack).equals(sunshineArtPack);
+        return SettingsSnapshot.get(context).isUsingLocalGraphics();
     }
 
     /**
@@ -281,36 +302,15 @@ public class Utility {
      * @return url for the corresponding weather artwork. null if no relation is found.
      */
     public static String getArtUrlForWeatherCondition(Context context, int weatherId) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String formatArtUrl = prefs.getString(context.getString(R.string.pref_art_pack_key),
-                context.getString(R.string.pref_art_pack_sunshine));
-
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return String.format(Locale.US, formatArtUrl, "storm");
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return String.format(Locale.US, formatArtUrl, "light_rain");
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return String.format(Locale.US, formatArtUrl, "rain");
-        } else if (weatherId == 511) {
-            return String.format(Locale.US, formatArtUrl, "snow");
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return String.format(Locale.US, formatArtUrl, "rain");
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return String.format(Locale.US, formatArtUrl, "snow");
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return String.format(Locale.US, formatArtUrl, "fog");
-        } else if (weatherId == 761 || weatherId == 781) {
-            return String.format(Locale.US, formatArtUrl, "storm");
-        } else if (weatherId == 800) {
-            return String.format(Locale.US, formatArtUrl, "clear");
-        } else if (weatherId == 801) {
-            return String.format(Locale.US, formatArtUrl, "light_clouds");
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return String.format(Locale.US, formatArtUrl, "clouds");
+        return getArtUrlForWeatherCondition(SettingsSnapshot.get(context), weatherId);
+    }
+
+    public static String getArtUrlForWeatherCondition(SettingsSnapshot settings, int weatherId) {
+        String artSlug = sConditions.get(weatherId).getArtSlug();
+        if (null == artSlug) {
+            return null;
         }
-        return null;
+        return String.format(Locale.US, settings.getArtPack(), artSlug);
     }
 
     /**
@@ -320,32 +320,7 @@ public class Utility {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getArtResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.art_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.art_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.art_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.art_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.art_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.art_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.art_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.art_clouds;
-        }
-        return -1;
+        return sConditions.get(weatherId).getArtResource();
     }
 
     /**
@@ -356,172 +331,9 @@ public class Utility {
      * @return string for the weather condition. null if no relation is found.
      */
     public static String getStringForWeatherCondition(Context context, int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        int stringId;
-        if (weatherId >= 200 && weatherId <= 232) {
-            stringId = R.string.condition_2xx;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            stringId = R.string.condition_3xx;
-        } else switch (weatherId) {
-            case 500:
-                stringId = R.string.condition_500;
-                break;
-            case 501:
-                stringId = R.string.condition_501;
-                break;
-            case 502:
-                stringId = R.string.condition_502;
-                break;
-            case 503:
-                stringId = R.string.condition_503;
-                break;
-            case 504:
-                stringId = R.string.condition_504;
-                break;
-            case 511:
-                stringId = R.string.condition_511;
-                break;
-            case 520:
-                stringId = R.string.condition_520;
-                break;
-            case 531:
-                stringId = R.string.condition_531;
-                break;
-            case 600:
-                stringId = R.string.condition_600;
-                break;
-            case 601:
-                stringId = R.string.condition_601;
-                break;
-            case 602:
-                stringId = R.string.condition_602;
-                break;
-            case 611:
-                stringId = R.string.condition_611;
-                break;
-            case 612:
-                stringId = R.string.condition_612;
-                break;
-            case 615:
-                stringId = R.string.condition_615;
-                break;
-            case 616:
-                stringId = R.string.condition_616;
-                break;
-            case 620:
-                stringId = R.string.condition_620;
-                break;
-            case 621:
-                stringId = R.string.condition_621;
-                break;
-            case 622:
-                stringId = R.string.condition_622;
-                break;
-            case 701:
-                stringId = R.string.condition_701;
-                break;
-            case 711:
-                stringId = R.string.condition_711;
-                break;
-            case 721:
-                stringId = R.string.condition_721;
-                break;
-            case 731:
-                stringId = R.string.condition_731;
-                break;
-            case 741:
-                stringId = R.string.condition_741;
-                break;
-            case 751:
-                stringId = R.string.condition_751;
-                break;
-            case 761:
-                stringId = R.string.condition_761;
-                break;
-            case 762:
-                stringId = R.string.condition_762;
-                break;
-            case 771:
-                stringId = R.string.condition_771;
-                break;
-            case 781:
-                stringId = R.string.condition_781;
-                break;
-            case 800:
-                stringId = R.string.condition_800;
-                break;
-            case 801:
-                stringId = R.string.condition_801;
-                break;
-            case 802:
-                stringId = R.string.condition_802;
-                break;
-            case 803:
-                stringId = R.string.condition_803;
-                break;
-            case 804:
-                stringId = R.string.condition_804;
-                break;
-            case 900:
-                stringId = R.string.condition_900;
-                break;
-            case 901:
-                stringId = R.string.condition_901;
-                break;
-            case 902:
-                stringId = R.string.condition_902;
-                break;
-            case 903:
-                stringId = R.string.condition_903;
-                break;
-            case 904:
-                stringId = R.string.condition_904;
-                break;
-            case 905:
-                stringId = R.string.condition_905;
-                break;
-            case 906:
-                stringId = R.string.condition_906;
-                break;
-            case 951:
-                stringId = R.string.condition_951;
-                break;
-            case 952:
-                stringId = R.string.condition_952;
-                break;
-            case 953:
-                stringId = R.string.condition_953;
-                break;
-            case 954:
-                stringId = R.string.condition_954;
-                break;
-            case 955:
-                stringId = R.string.condition_955;
-                break;
-            case 956:
-                stringId = R.string.condition_956;
-                break;
-            case 957:
-                stringId = R.string.condition_957;
-                break;
-            case 958:
-                stringId = R.string.condition_958;
-                break;
-            case 959:
-                stringId = R.string.condition_959;
-                break;
-            case 960:
-                stringId = R.string.condition_960;
-                break;
-            case 961:
-                stringId = R.string.condition_961;
-                break;
-            case 962:
-                stringId = R.string.condition_962;
-                break;
-            default:
-                return context.getString(R.string.condition_unknown, weatherId);
+        int stringId = sConditions.get(weatherId).getStringResource();
+        if (stringId == R.string.condition_unknown) {
+            return context.getString(stringId, weatherId);
         }
         return context.getString(stringId);
     }
@@ -534,32 +346,7 @@ public class Utility {
      * @return A string URL to an appropriate image or null if no mapping is found
      */
     public static String getImageUrlForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg";
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg";
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
-        } else if (weatherId == 511) {
-            return "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg";
-        } else if (weatherId == 761 || weatherId == 781) {
-            return "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg";
-        } else if (weatherId == 800) {
-            return "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg";
-        } else if (weatherId == 801) {
-            return "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg";
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg";
-        }
-        return null;
+        return sConditions.get(weatherId).getImageUrl();
     }
 
     /**
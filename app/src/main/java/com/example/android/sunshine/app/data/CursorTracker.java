@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.AbstractWindowedCursor;
+import android.database.CrossProcessCursorWrapper;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.CursorWrapper;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+
+/**
+ * Debug-only bookkeeping of the cursors {@link WeatherProvider} hands out: how many are open,
+ * roughly how much CursorWindow memory they hold, and where they were opened.
+ *
+ * Every cursor is wrapped so that closing it takes it off the books.  A cursor that is garbage
+ * collected while still open is reported as leaked, with the stack trace of the query that
+ * opened it.  Once the open windows add up to more than the budget, the open cursors are
+ * logged, once until they drop below it again.
+ *
+ * The budget is kept against an estimate from each window's rows and columns, as measuring a
+ * window means copying every string and blob out of it, too much to do on every query.  The
+ * windows are only measured for the reports, {@link #toBundle} and {@link #dump}.
+ */
+class CursorTracker {
+
+    private static final String LOG_TAG = CursorTracker.class.getSimpleName();
+
+    // The leaks kept for the report, the log has all of them
+    static final int MAX_REPORTED_LEAKS = 10;
+
+    // What a field takes in a window for the estimate: its 12 byte slot, plus the number or
+    // short string most of ours hold
+    static final int ESTIMATED_FIELD_BYTES = 24;
+
+    private final long mBudgetBytes;
+    private final ReferenceQueue<Cursor> mCollected = new ReferenceQueue<Cursor>();
+
+    // Guarded by this
+    private final HashSet<Record> mOpen = new HashSet<Record>();
+    private final ArrayDeque<Record> mLeaks = new ArrayDeque<Record>();
+    // Estimated, see ESTIMATED_FIELD_BYTES
+    private long mOpenBytes;
+    private int mLeakCount;
+    private boolean mOverBudget;
+
+    /*
+        What is known about one cursor.  Only weakly refers to it, so that a cursor nobody
+        closed can still be collected, which is how its leak is noticed.
+     */
+    private static final class Record extends WeakReference<Cursor> {
+        final String name;
+        final long windowBytes;
+        final long openedAt;
+        final Throwable stack;
+
+        Record(Cursor cursor, ReferenceQueue<Cursor> queue, String name, long windowBytes) {
+            super(cursor, queue);
+            this.name = name;
+            this.windowBytes = windowBytes;
+            this.openedAt = SystemClock.elapsedRealtime();
+            this.stack = new Throwable("Cursor for " + name + " opened here");
+        }
+    }
+
+    private final class TrackedCursor extends CrossProcessCursorWrapper {
+        private Record mRecord;
+
+        TrackedCursor(Cursor cursor) {
+            super(cursor);
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            untrack(mRecord);
+        }
+    }
+
+    CursorTracker(long budgetBytes) {
+        mBudgetBytes = budgetBytes;
+    }
+
+    /**
+     * Wraps a cursor the provider is about to return.  Call this once the window is filled,
+     * e.g. after getCount(), so its size can be estimated.
+     */
+    Cursor track(String name, Cursor cursor) {
+        collectLeaks();
+
+        TrackedCursor tracked = new TrackedCursor(cursor);
+        Record record = new Record(tracked, mCollected, name, estimateWindow(cursor));
+        tracked.mRecord = record;
+        boolean overBudget = false;
+        synchronized (this) {
+            mOpen.add(record);
+            mOpenBytes += record.windowBytes;
+            if (!mOverBudget && mOpenBytes > mBudgetBytes) {
+                mOverBudget = true;
+                overBudget = true;
+            }
+        }
+        if (overBudget) {
+            StringWriter report = new StringWriter();
+            dump(new PrintWriter(report));
+            Log.w(LOG_TAG, "Open cursors are over their budget of " + mBudgetBytes
+                    + " bytes\n" + report);
+        }
+        return tracked;
+    }
+
+    private void untrack(Record record) {
+        // Closed properly, so it won't show up as collected
+        record.clear();
+        synchronized (this) {
+            if (mOpen.remove(record)) {
+                mOpenBytes -= record.windowBytes;
+                if (mOpenBytes <= mBudgetBytes) {
+                    mOverBudget = false;
+                }
+            }
+        }
+    }
+
+    private void collectLeaks() {
+        Record record;
+        while ((record = (Record) mCollected.poll()) != null) {
+            Log.w(LOG_TAG, "Cursor for " + record.name + " was never closed", record.stack);
+            synchronized (this) {
+                if (mOpen.remove(record)) {
+                    mOpenBytes -= record.windowBytes;
+                }
+                mLeakCount++;
+                mLeaks.addLast(record);
+                if (mLeaks.size() > MAX_REPORTED_LEAKS) {
+                    mLeaks.removeFirst();
+                }
+            }
+        }
+    }
+
+    // The window under the cursor's wrappers, null if it doesn't have one
+    private static CursorWindow getWindow(Cursor cursor) {
+        while (cursor instanceof CursorWrapper) {
+            cursor = ((CursorWrapper) cursor).getWrappedCursor();
+        }
+        if (!(cursor instanceof AbstractWindowedCursor)) {
+            return null;
+        }
+        return ((AbstractWindowedCursor) cursor).getWindow();
+    }
+
+    // A guess at the bytes of data in the cursor's window, without reading any of it
+    static long estimateWindow(Cursor cursor) {
+        CursorWindow window = getWindow(cursor);
+        if (null == window) {
+            return 0;
+        }
+        return (long) window.getNumRows() * cursor.getColumnCount() * ESTIMATED_FIELD_BYTES;
+    }
+
+    // The bytes of data in the cursor's window, close to what the window allocated for them
+    static long measureWindow(Cursor cursor) {
+        CursorWindow window = getWindow(cursor);
+        if (null == window || cursor.isClosed()) {
+            return 0;
+        }
+        long bytes = 0;
+        int columns = cursor.getColumnCount();
+        int end = window.getStartPosition() + window.getNumRows();
+        for (int row = window.getStartPosition(); row < end; row++) {
+            for (int column = 0; column < columns; column++) {
+                // Every field has a fixed size slot, strings and blobs live outside of it
+                bytes += 12;
+                switch (window.getType(row, column)) {
+                    case Cursor.FIELD_TYPE_STRING:
+                        bytes += window.getString(row, column).length() + 1;
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        bytes += window.getBlob(row, column).length;
+                        break;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    // Measures the window of a cursor that is still open, 0 once it is gone
+    private static long measure(Record record) {
+        Cursor cursor = record.get();
+        if (null == cursor) {
+            return 0;
+        }
+        try {
+            return measureWindow(cursor);
+        } catch (IllegalStateException e) {
+            // Closed by its owner while it was being measured
+            return 0;
+        }
+    }
+
+    /**
+     * @return the counts in the layout described at {@link WeatherContract#METHOD_CURSORS},
+     * with the open windows measured
+     */
+    Bundle toBundle() {
+        collectLeaks();
+        Bundle cursors = new Bundle(3);
+        synchronized (this) {
+            long windowBytes = 0;
+            for (Record record : mOpen) {
+                windowBytes += measure(record);
+            }
+            cursors.putInt(WeatherContract.EXTRA_CURSORS_OPEN, mOpen.size());
+            cursors.putLong(WeatherContract.EXTRA_CURSORS_WINDOW_BYTES, windowBytes);
+            cursors.putInt(WeatherContract.EXTRA_CURSORS_LEAKED, mLeakCount);
+        }
+        return cursors;
+    }
+
+    void dump(PrintWriter writer) {
+        collectLeaks();
+        long now = SystemClock.elapsedRealtime();
+        synchronized (this) {
+            writer.println("Open cursors: " + mOpen.size() + ", an estimated " + mOpenBytes
+                    + " bytes of windows, budget " + mBudgetBytes);
+            for (Record record : mOpen) {
+                writer.println("  " + record.name + ": " + measure(record) + " bytes (estimated "
+                        + record.windowBytes + "), open " + (now - record.openedAt) + "ms");
+                record.stack.printStackTrace(writer);
+            }
+            writer.println("Leaked cursors: " + mLeakCount
+                    + (mLeakCount > mLeaks.size() ? ", the last " + mLeaks.size() + ":" : ""));
+            for (Record record : mLeaks) {
+                writer.println("  " + record.name + ": an estimated " + record.windowBytes
+                        + " bytes");
+                record.stack.printStackTrace(writer);
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A small fixed-layout copy of the preferred location's forecast, written by the sync after
+ * every successful insert and read through a memory mapping.  The widgets, Muzei, the
+ * notification and the wearable bridge read today's forecast from here without opening the
+ * database, and fall back to the provider when the snapshot is missing or for another location.
+ *
+ * Every reader and the writer are in the app's process, so they take turns on the class lock;
+ * copying a snapshot out is a few hundred bytes and doesn't hold it for long.  The file also
+ * starts with a sequence number that the writer makes odd before it touches the days and even
+ * again once it is done.  A writer that dies half way leaves an odd sequence behind, and
+ * readers use the provider until the next sync rewrites the file.
+ */
+public final class ForecastSnapshot {
+
+    private static final String LOG_TAG = ForecastSnapshot.class.getSimpleName();
+
+    static final String FILE_NAME = "forecast.snapshot";
+
+    private static final int MAGIC = 0x534e4653; // "SNFS"
+    private static final int FORMAT_VERSION = 1;
+
+    // Header
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_SEQUENCE = 8;
+    private static final int OFFSET_DAY_COUNT = 16;
+    private static final int OFFSET_LOCATION_LENGTH = 20;
+    private static final int OFFSET_LOCATION = 24;
+    private static final int MAX_LOCATION_BYTES = 72;
+    private static final int HEADER_SIZE = OFFSET_LOCATION + MAX_LOCATION_BYTES;
+
+    // Day records: date, max, min, weather id, then the short description
+    private static final int DAY_DATE = 0;
+    private static final int DAY_MAX_TEMP = 8;
+    private static final int DAY_MIN_TEMP = 16;
+    private static final int DAY_WEATHER_ID = 24;
+    private static final int DAY_DESC_LENGTH = 28;
+    private static final int DAY_DESC = 29;
+    private static final int MAX_DESC_BYTES = 27;
+    private static final int DAY_SIZE = DAY_DESC + MAX_DESC_BYTES;
+
+    // The sync fetches two weeks
+    static final int MAX_DAYS = 14;
+
+    static final int FILE_SIZE = HEADER_SIZE + MAX_DAYS * DAY_SIZE;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Mapped once per process and shared by every reader and the writer
+    private static MappedByteBuffer sBuffer;
+
+    private final String mLocationSetting;
+    private final long[] mDates;
+    private final double[] mMaxTemps;
+    private final double[] mMinTemps;
+    private final int[] mWeatherIds;
+    private final String[] mShortDescs;
+
+    private ForecastSnapshot(String locationSetting, int days) {
+        mLocationSetting = locationSetting;
+        mDates = new long[days];
+        mMaxTemps = new double[days];
+        mMinTemps = new double[days];
+        mWeatherIds = new int[days];
+        mShortDescs = new String[days];
+    }
+
+    private static synchronized MappedByteBuffer map(Context context) throws IOException {
+        if (sBuffer == null) {
+            File file = new File(context.getFilesDir(), FILE_NAME);
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                if (raf.length() != FILE_SIZE) {
+                    // A new file, or one from another layout: start from an empty snapshot
+                    raf.setLength(0);
+                    raf.setLength(FILE_SIZE);
+                }
+                sBuffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            } finally {
+                // The mapping stays valid once the file is closed
+                raf.close();
+            }
+        }
+        return sBuffer;
+    }
+
+    // Drops the mapping, so the next access maps the file again.  For tests.
+    static synchronized void unmap() {
+        sBuffer = null;
+    }
+
+    /**
+     * Replaces the snapshot with the given weather rows, as handed to
+     * {@link WeatherContract.WeatherEntry#CONTENT_URI} by the sync.  Rows past
+     * {@link #MAX_DAYS} are left out.
+     */
+    public static synchronized void write(Context context, String locationSetting,
+                                          ContentValues[] days) {
+        MappedByteBuffer buffer;
+        try {
+            buffer = map(context);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Unable to map the forecast snapshot", e);
+            return;
+        }
+
+        long sequence = buffer.getLong(OFFSET_SEQUENCE);
+        if ((sequence & 1) != 0) {
+            // Left odd by a writer that died, move on to the next odd number
+            sequence++;
+        }
+        buffer.putLong(OFFSET_SEQUENCE, sequence + 1);
+
+        buffer.putInt(OFFSET_MAGIC, MAGIC);
+        buffer.putInt(OFFSET_VERSION, FORMAT_VERSION);
+        putString(buffer, OFFSET_LOCATION_LENGTH, OFFSET_LOCATION, MAX_LOCATION_BYTES,
+                locationSetting, 4);
+
+        int count = Math.min(days.length, MAX_DAYS);
+        for (int i = 0; i < count; i++) {
+            ContentValues day = days[i];
+            int offset = HEADER_SIZE + i * DAY_SIZE;
+            buffer.putLong(offset + DAY_DATE, WeatherContract.normalizeDate(
+                    day.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE)));
+            buffer.putDouble(offset + DAY_MAX_TEMP,
+                    day.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP));
+            buffer.putDouble(offset + DAY_MIN_TEMP,
+                    day.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP));
+            buffer.putInt(offset + DAY_WEATHER_ID,
+                    day.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID));
+            putString(buffer, offset + DAY_DESC_LENGTH, offset + DAY_DESC, MAX_DESC_BYTES,
+                    day.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC), 1);
+        }
+        buffer.putInt(OFFSET_DAY_COUNT, count);
+
+        buffer.putLong(OFFSET_SEQUENCE, sequence + 2);
+    }
+
+    /**
+     * Reads a copy of the snapshot.
+     *
+     * @return the snapshot, or null if there is none for this location or the last write
+     * didn't finish
+     */
+    public static synchronized ForecastSnapshot read(Context context, String locationSetting) {
+        MappedByteBuffer buffer;
+        try {
+            buffer = map(context);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Unable to map the forecast snapshot", e);
+            return null;
+        }
+
+        if ((buffer.getLong(OFFSET_SEQUENCE) & 1) != 0
+                || buffer.getInt(OFFSET_MAGIC) != MAGIC
+                || buffer.getInt(OFFSET_VERSION) != FORMAT_VERSION) {
+            return null;
+        }
+
+        String location = getString(buffer, OFFSET_LOCATION_LENGTH, OFFSET_LOCATION,
+                MAX_LOCATION_BYTES, 4);
+        int count = buffer.getInt(OFFSET_DAY_COUNT);
+        if (!location.equals(locationSetting) || count < 0 || count > MAX_DAYS) {
+            return null;
+        }
+        ForecastSnapshot snapshot = new ForecastSnapshot(location, count);
+        for (int i = 0; i < count; i++) {
+            int offset = HEADER_SIZE + i * DAY_SIZE;
+            snapshot.mDates[i] = buffer.getLong(offset + DAY_DATE);
+            snapshot.mMaxTemps[i] = buffer.getDouble(offset + DAY_MAX_TEMP);
+            snapshot.mMinTemps[i] = buffer.getDouble(offset + DAY_MIN_TEMP);
+            snapshot.mWeatherIds[i] = buffer.getInt(offset + DAY_WEATHER_ID);
+            snapshot.mShortDescs[i] = getString(buffer, offset + DAY_DESC_LENGTH,
+                    offset + DAY_DESC, MAX_DESC_BYTES, 1);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Today's forecast for the location or, failing that, the next day available, in the shape
+     * {@link WeatherContract#METHOD_GET_TODAY} returns it.  Read from the snapshot when it has
+     * such a day for this location, from the provider otherwise.
+     *
+     * @return the forecast, or null if there is none for today or later
+     */
+    public static Bundle getToday(Context context, String locationSetting) {
+        ForecastSnapshot snapshot = read(context, locationSetting);
+        if (null != snapshot) {
+            int day = snapshot.findDay(System.currentTimeMillis());
+            if (day >= 0) {
+                return snapshot.toBundle(day);
+            }
+        }
+        return context.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_GET_TODAY, locationSetting, null);
+    }
+
+    public int getDayCount() {
+        return mDates.length;
+    }
+
+    /**
+     * @return the first day on or after the day of the given time, -1 if the snapshot ends before
+     */
+    public int findDay(long time) {
+        long date = WeatherContract.normalizeDate(time);
+        for (int i = 0; i < mDates.length; i++) {
+            if (mDates[i] >= date) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public long getDate(int day) {
+        return mDates[day];
+    }
+
+    public int getWeatherId(int day) {
+        return mWeatherIds[day];
+    }
+
+    public String getShortDesc(int day) {
+        return mShortDescs[day];
+    }
+
+    public double getMaxTemp(int day) {
+        return mMaxTemps[day];
+    }
+
+    public double getMinTemp(int day) {
+        return mMinTemps[day];
+    }
+
+    Bundle toBundle(int day) {
+        Bundle bundle = new Bundle(5);
+        bundle.putLong(WeatherContract.EXTRA_DATE, mDates[day]);
+        bundle.putInt(WeatherContract.EXTRA_WEATHER_ID, mWeatherIds[day]);
+        bundle.putString(WeatherContract.EXTRA_SHORT_DESC, mShortDescs[day]);
+        bundle.putDouble(WeatherContract.EXTRA_MAX_TEMP, mMaxTemps[day]);
+        bundle.putDouble(WeatherContract.EXTRA_MIN_TEMP, mMinTemps[day]);
+        return bundle;
+    }
+
+    // Strings are stored as a length followed by at most maxBytes of UTF-8, cut on a character
+    // boundary.  The length takes lengthSize bytes, 1 or 4.
+    private static void putString(MappedByteBuffer buffer, int lengthOffset, int offset,
+                                  int maxBytes, String value, int lengthSize) {
+        String text = value == null ? "" : value;
+        byte[] bytes = text.getBytes(UTF_8);
+        int end = text.length();
+        while (bytes.length > maxBytes) {
+            end--;
+            if (Character.isLowSurrogate(text.charAt(end))) {
+                end--;
+            }
+            bytes = text.substring(0, end).getBytes(UTF_8);
+        }
+        if (lengthSize == 1) {
+            buffer.put(lengthOffset, (byte) bytes.length);
+        } else {
+            buffer.putInt(lengthOffset, bytes.length);
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(offset + i, bytes[i]);
+        }
+    }
+
+    private static String getString(MappedByteBuffer buffer, int lengthOffset, int offset,
+                                    int maxBytes, int lengthSize) {
+        int length = lengthSize == 1 ? buffer.get(lengthOffset) & 0xff
+                : buffer.getInt(lengthOffset);
+        // Never trust a length read back from the file with the buffer's bounds
+        length = Math.max(0, Math.min(length, maxBytes));
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import com.example.android.sunshine.app.data.WeatherContract.FixedPoint;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs one day of intraday forecast slots into the blob stored in
+ * {@link WeatherContract.IntradayEntry#COLUMN_SLOTS}, and reads single fields back out of it.
+ *
+ * The layout is a two byte header (version, slot count) followed by fixed size slots of seven
+ * big-endian shorts: minutes since the start of the day, then temperature, weather id,
+ * humidity, pressure, wind speed and degrees, the numerics scaled as in {@link FixedPoint}.
+ * Because every slot has the same size, a field is read straight from its offset without
+ * decoding anything else.
+ */
+public final class IntradayCodec {
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 2;
+    static final int SLOT_SIZE = 14;
+
+    // Field offsets within a slot
+    private static final int OFFSET_MINUTES = 0;
+    private static final int OFFSET_TEMP = 2;
+    private static final int OFFSET_WEATHER_ID = 4;
+    private static final int OFFSET_HUMIDITY = 6;
+    private static final int OFFSET_PRESSURE = 8;
+    private static final int OFFSET_WIND_SPEED = 10;
+    private static final int OFFSET_DEGREES = 12;
+
+    // A day of 3-hour slots is 8, leave room for hourly data
+    public static final int MAX_SLOTS = 24;
+
+    private static final long MINUTE_IN_MILLIS = 60 * 1000;
+
+    private IntradayCodec() {
+    }
+
+    /**
+     * Collects the slots of one day, in time order, and packs them with {@link #toByteArray()}.
+     */
+    public static final class Writer {
+        private final long mDayStart;
+        private final ByteBuffer mBuffer = ByteBuffer.allocate(HEADER_SIZE + MAX_SLOTS * SLOT_SIZE);
+        private int mCount;
+
+        /**
+         * @param dayStart The normalized date of the day, see {@link WeatherContract#normalizeDate}
+         */
+        public Writer(long dayStart) {
+            mDayStart = dayStart;
+            mBuffer.position(HEADER_SIZE);
+        }
+
+        public long getDayStart() {
+            return mDayStart;
+        }
+
+        public int getSlotCount() {
+            return mCount;
+        }
+
+        /**
+         * Adds a slot.  Slots beyond {@link #MAX_SLOTS} are dropped.
+         *
+         * @param time Start of the slot in milliseconds since the epoch, within the day
+         */
+        public Writer addSlot(long time, double temp, int weatherId, double humidity,
+                              double pressure, double windSpeed, double degrees) {
+            if (mCount == MAX_SLOTS) {
+                return this;
+            }
+            mBuffer.putShort((short) ((time - mDayStart) / MINUTE_IN_MILLIS));
+            mBuffer.putShort((short) FixedPoint.encode(temp, FixedPoint.TEMPERATURE_SCALE));
+            mBuffer.putShort((short) weatherId);
+            mBuffer.putShort((short) FixedPoint.encode(humidity, FixedPoint.HUMIDITY_SCALE));
+            mBuffer.putShort((short) FixedPoint.encode(pressure, FixedPoint.PRESSURE_SCALE));
+            mBuffer.putShort((short) FixedPoint.encode(windSpeed, FixedPoint.WIND_SPEED_SCALE));
+            mBuffer.putShort((short) FixedPoint.encode(degrees, FixedPoint.DEGREES_SCALE));
+            mCount++;
+            return this;
+        }
+
+        public byte[] toByteArray() {
+            byte[] blob = new byte[HEADER_SIZE + mCount * SLOT_SIZE];
+            blob[0] = VERSION;
+            blob[1] = (byte) mCount;
+            System.arraycopy(mBuffer.array(), HEADER_SIZE, blob, HEADER_SIZE, mCount * SLOT_SIZE);
+            return blob;
+        }
+    }
+
+    /**
+     * @return the number of slots in the blob, 0 for a blob written by an unknown version.
+     */
+    public static int getSlotCount(byte[] blob) {
+        if (blob == null || blob.length < HEADER_SIZE || blob[0] != VERSION) {
+            return 0;
+        }
+        return blob[1] & 0xff;
+    }
+
+    public static long getTime(byte[] blob, long dayStart, int slot) {
+        return dayStart + getShort(blob, slot, OFFSET_MINUTES) * MINUTE_IN_MILLIS;
+    }
+
+    public static double getTemp(byte[] blob, int slot) {
+        return FixedPoint.decode(getShort(blob, slot, OFFSET_TEMP), FixedPoint.TEMPERATURE_SCALE);
+    }
+
+    public static int getWeatherId(byte[] blob, int slot) {
+        return getShort(blob, slot, OFFSET_WEATHER_ID);
+    }
+
+    public static double getHumidity(byte[] blob, int slot) {
+        return FixedPoint.decode(getShort(blob, slot, OFFSET_HUMIDITY), FixedPoint.HUMIDITY_SCALE);
+    }
+
+    public static double getPressure(byte[] blob, int slot) {
+        return FixedPoint.decode(getShort(blob, slot, OFFSET_PRESSURE), FixedPoint.PRESSURE_SCALE);
+    }
+
+    public static double getWindSpeed(byte[] blob, int slot) {
+        return FixedPoint.decode(getShort(blob, slot, OFFSET_WIND_SPEED),
+                FixedPoint.WIND_SPEED_SCALE);
+    }
+
+    public static double getDegrees(byte[] blob, int slot) {
+        return FixedPoint.decode(getShort(blob, slot, OFFSET_DEGREES), FixedPoint.DEGREES_SCALE);
+    }
+
+    private static short getShort(byte[] blob, int slot, int field) {
+        int offset = HEADER_SIZE + slot * SLOT_SIZE + field;
+        return (short) ((blob[offset] << 8) | (blob[offset + 1] & 0xff));
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+import com.example.android.sunshine.app.data.WeatherContract.IntradayEntry;
+
+/**
+ * Presents the packed intraday rows of the database as one row per slot.
+ *
+ * Only the blobs are kept; a field is decoded from its blob when it is asked for, so a reader
+ * that looks at a single column, or only at the first few slots, never pays for the rest.
+ */
+class IntradayCursor extends AbstractCursor {
+
+    // The columns this cursor can provide, in the order of a null projection
+    static final String[] ALL_COLUMNS = {
+            IntradayEntry._ID,
+            IntradayEntry.COLUMN_LOC_KEY,
+            IntradayEntry.COLUMN_DATE,
+            IntradayEntry.COLUMN_SLOT_TIME,
+            IntradayEntry.COLUMN_SLOT_TEMP,
+            IntradayEntry.COLUMN_SLOT_WEATHER_ID,
+            IntradayEntry.COLUMN_SLOT_HUMIDITY,
+            IntradayEntry.COLUMN_SLOT_PRESSURE,
+            IntradayEntry.COLUMN_SLOT_WIND_SPEED,
+            IntradayEntry.COLUMN_SLOT_DEGREES
+    };
+
+    // The stored columns the provider has to select for this cursor, in this order
+    static final String[] SOURCE_COLUMNS = {
+            IntradayEntry.TABLE_NAME + "." + IntradayEntry._ID,
+            IntradayEntry.COLUMN_LOC_KEY,
+            IntradayEntry.COLUMN_DATE,
+            IntradayEntry.COLUMN_SLOTS
+    };
+
+    private static final int FIELD_ID = 0;
+    private static final int FIELD_LOC_KEY = 1;
+    private static final int FIELD_DATE = 2;
+    private static final int FIELD_TIME = 3;
+    private static final int FIELD_TEMP = 4;
+    private static final int FIELD_WEATHER_ID = 5;
+    private static final int FIELD_HUMIDITY = 6;
+    private static final int FIELD_PRESSURE = 7;
+    private static final int FIELD_WIND_SPEED = 8;
+    private static final int FIELD_DEGREES = 9;
+
+    private final String[] mColumns;
+    // The field of ALL_COLUMNS behind each requested column
+    private final int[] mFields;
+
+    // One entry per stored day
+    private final long[] mDayIds;
+    private final long[] mLocationIds;
+    private final long[] mDates;
+    private final byte[][] mBlobs;
+
+    // One entry per slot row: which day it comes from and which slot of that day it is
+    private final int[] mRowDay;
+    private final int[] mRowSlot;
+
+    /**
+     * Reads the days from the source cursor, which must select {@link #SOURCE_COLUMNS}, and
+     * closes it.
+     *
+     * @throws IllegalArgumentException if the projection asks for a column this cursor lacks
+     */
+    IntradayCursor(Cursor source, String[] projection) {
+        mColumns = null == projection ? ALL_COLUMNS : projection;
+        mFields = new int[mColumns.length];
+        for (int i = 0; i < mColumns.length; i++) {
+            mFields[i] = fieldOf(mColumns[i]);
+        }
+
+        int days = source.getCount();
+        mDayIds = new long[days];
+        mLocationIds = new long[days];
+        mDates = new long[days];
+        mBlobs = new byte[days][];
+        int rows = 0;
+        try {
+            for (int day = 0; source.moveToNext(); day++) {
+                mDayIds[day] = source.getLong(0);
+                mLocationIds[day] = source.getLong(1);
+                mDates[day] = source.getLong(2);
+                mBlobs[day] = source.getBlob(3);
+                rows += IntradayCodec.getSlotCount(mBlobs[day]);
+            }
+        } finally {
+            source.close();
+        }
+
+        mRowDay = new int[rows];
+        mRowSlot = new int[rows];
+        int row = 0;
+        for (int day = 0; day < days; day++) {
+            int slots = IntradayCodec.getSlotCount(mBlobs[day]);
+            for (int slot = 0; slot < slots; slot++, row++) {
+                mRowDay[row] = day;
+                mRowSlot[row] = slot;
+            }
+        }
+    }
+
+    private static int fieldOf(String column) {
+        String name = column;
+        String tablePrefix = IntradayEntry.TABLE_NAME + ".";
+        if (name.startsWith(tablePrefix)) {
+            name = name.substring(tablePrefix.length());
+        }
+        for (int i = 0; i < ALL_COLUMNS.length; i++) {
+            if (ALL_COLUMNS[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Invalid intraday column: " + column);
+    }
+
+    @Override
+    public int getCount() {
+        return mRowDay.length;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumns;
+    }
+
+    @Override
+    public int getType(int column) {
+        switch (mFields[column]) {
+            case FIELD_TEMP:
+            case FIELD_HUMIDITY:
+            case FIELD_PRESSURE:
+            case FIELD_WIND_SPEED:
+            case FIELD_DEGREES:
+                return Cursor.FIELD_TYPE_FLOAT;
+            default:
+                return Cursor.FIELD_TYPE_INTEGER;
+        }
+    }
+
+    @Override
+    public double getDouble(int column) {
+        checkPosition();
+        byte[] blob = mBlobs[mRowDay[mPos]];
+        int slot = mRowSlot[mPos];
+        switch (mFields[column]) {
+            case FIELD_TEMP:
+                return IntradayCodec.getTemp(blob, slot);
+            case FIELD_HUMIDITY:
+                return IntradayCodec.getHumidity(blob, slot);
+            case FIELD_PRESSURE:
+                return IntradayCodec.getPressure(blob, slot);
+            case FIELD_WIND_SPEED:
+                return IntradayCodec.getWindSpeed(blob, slot);
+            case FIELD_DEGREES:
+                return IntradayCodec.getDegrees(blob, slot);
+            default:
+                return getLong(column);
+        }
+    }
+
+    @Override
+    public long getLong(int column) {
+        checkPosition();
+        int day = mRowDay[mPos];
+        int slot = mRowSlot[mPos];
+        switch (mFields[column]) {
+            case FIELD_ID:
+                // Unique per slot, stable while the day's row is
+                return mDayIds[day] * IntradayCodec.MAX_SLOTS + slot;
+            case FIELD_LOC_KEY:
+                return mLocationIds[day];
+            case FIELD_DATE:
+                return mDates[day];
+            case FIELD_TIME:
+                return IntradayCodec.getTime(mBlobs[day], mDates[day], slot);
+            case FIELD_WEATHER_ID:
+                return IntradayCodec.getWeatherId(mBlobs[day], slot);
+            default:
+                return (long) getDouble(column);
+        }
+    }
+
+    @Override
+    public String getString(int column) {
+        if (getType(column) == Cursor.FIELD_TYPE_FLOAT) {
+            return Double.toString(getDouble(column));
+        }
+        return Long.toString(getLong(column));
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return false;
+    }
+}
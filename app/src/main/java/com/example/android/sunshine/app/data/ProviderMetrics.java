@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import java.io.PrintWriter;
+
+/**
+ * Latency histograms and row counts of {@link WeatherProvider} operations, one per operation
+ * and UriMatcher code.
+ *
+ * Latencies go into power of two buckets of microseconds, so recording a call is a handful of
+ * additions and the whole thing stays a few hundred bytes per URI type.  The percentiles this
+ * reports are the upper bound of the bucket they fall in.
+ */
+class ProviderMetrics {
+
+    static final int QUERY = 0;
+    static final int INSERT = 1;
+    static final int BULK_INSERT = 2;
+    static final int UPDATE = 3;
+    static final int DELETE = 4;
+
+    private static final String[] OPERATION_NAMES = {
+            "query", "insert", "bulkInsert", "update", "delete"
+    };
+
+    // 2^31 microseconds is over half an hour, nothing takes longer than that
+    static final int BUCKETS = 32;
+
+    // Keys of mHistograms are operation * OPERATION_KEY + match code
+    private static final int OPERATION_KEY = 1000;
+
+    private static class Histogram {
+        final long[] buckets = new long[BUCKETS];
+        long count;
+        long rows;
+        long totalMicros;
+        long maxMicros;
+    }
+
+    // The URI pattern of each match code, for the reports
+    private final SparseArray<String> mUriTypes;
+    private final SparseArray<Histogram> mHistograms = new SparseArray<Histogram>();
+
+    ProviderMetrics(SparseArray<String> uriTypes) {
+        mUriTypes = uriTypes;
+    }
+
+    /**
+     * Records one call.
+     *
+     * @param startNanos {@link SystemClock#elapsedRealtimeNanos()} when the call started
+     * @param rows The rows returned or written
+     */
+    void record(int operation, int match, long startNanos, int rows) {
+        long micros = (SystemClock.elapsedRealtimeNanos() - startNanos) / 1000;
+        int bucket = Math.min(BUCKETS - 1,
+                micros < 2 ? 0 : 63 - Long.numberOfLeadingZeros(micros));
+
+        int key = operation * OPERATION_KEY + match;
+        synchronized (this) {
+            Histogram histogram = mHistograms.get(key);
+            if (histogram == null) {
+                histogram = new Histogram();
+                mHistograms.put(key, histogram);
+            }
+            histogram.buckets[bucket]++;
+            histogram.count++;
+            histogram.rows += rows;
+            histogram.totalMicros += micros;
+            histogram.maxMicros = Math.max(histogram.maxMicros, micros);
+        }
+    }
+
+    synchronized void reset() {
+        mHistograms.clear();
+    }
+
+    private String getName(int key) {
+        String uriType = mUriTypes.get(key % OPERATION_KEY);
+        return OPERATION_NAMES[key / OPERATION_KEY] + " "
+                + (null == uriType ? Integer.toString(key % OPERATION_KEY) : uriType);
+    }
+
+    /**
+     * @return the histograms in the layout described at {@link WeatherContract#METHOD_METRICS}
+     */
+    synchronized Bundle toBundle() {
+        Bundle metrics = new Bundle(mHistograms.size());
+        for (int i = 0; i < mHistograms.size(); i++) {
+            Histogram histogram = mHistograms.valueAt(i);
+            Bundle values = new Bundle(5);
+            values.putLong(WeatherContract.EXTRA_METRICS_COUNT, histogram.count);
+            values.putLong(WeatherContract.EXTRA_METRICS_ROWS, histogram.rows);
+            values.putLong(WeatherContract.EXTRA_METRICS_TOTAL_MICROS, histogram.totalMicros);
+            values.putLong(WeatherContract.EXTRA_METRICS_MAX_MICROS, histogram.maxMicros);
+            values.putLongArray(WeatherContract.EXTRA_METRICS_HISTOGRAM,
+                    histogram.buckets.clone());
+            metrics.putBundle(getName(mHistograms.keyAt(i)), values);
+        }
+        return metrics;
+    }
+
+    synchronized void dump(PrintWriter writer) {
+        writer.println("Provider metrics (latencies in us):");
+        for (int i = 0; i < mHistograms.size(); i++) {
+            Histogram histogram = mHistograms.valueAt(i);
+            writer.println("  " + getName(mHistograms.keyAt(i))
+                    + ": count=" + histogram.count
+                    + " rows=" + histogram.rows
+                    + " mean=" + histogram.totalMicros / histogram.count
+                    + " p50<" + percentile(histogram, 50)
+                    + " p90<" + percentile(histogram, 90)
+                    + " p99<" + percentile(histogram, 99)
+                    + " max=" + histogram.maxMicros);
+        }
+    }
+
+    // The upper bound of the bucket the percentile falls in
+    private static long percentile(Histogram histogram, int percent) {
+        long target = (histogram.count * percent + 99) / 100;
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += histogram.buckets[bucket];
+            if (seen >= target) {
+                return 1L << (bucket + 1);
+            }
+        }
+        return histogram.maxMicros;
+    }
+}
@@ -19,7 +19,8 @@ import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
-import android.text.format.Time;
+
+import com.example.android.sunshine.shared.JulianDay;
 
 /**
  * Defines table and column names for the weather database.
@@ -43,15 +44,78 @@ public class WeatherContract {
     // At least, let's hope not.  Don't be that dev, reader.  Don't be that dev.
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
+    public static final String PATH_CURRENT_CONDITIONS = "current";
+    public static final String PATH_INTRADAY = "intraday";
+    public static final String PATH_LOCATION_HISTORY = "location_history";
+
+    // Methods understood by WeatherProvider.call().  These skip the Cursor and CursorWindow
+    // entirely and hand back a Bundle of primitives, for callers that only need a few numbers.
+    //
+    // METHOD_GET_TODAY takes the location setting as the arg and returns the weather id, high,
+    // low, short description and date of today's forecast or, failing that, the next day
+    // available.  It returns null if there is no forecast for today or any day after it, and
+    // throws IllegalArgumentException without a location setting.
+    public static final String METHOD_GET_TODAY = "getToday";
+    // METHOD_GET_RANGE takes the location setting as the arg, plus EXTRA_START_DATE and
+    // EXTRA_COUNT in the extras, and returns parallel arrays of up to EXTRA_COUNT days starting at
+    // EXTRA_START_DATE, in date order.  It also throws IllegalArgumentException without a
+    // location setting.
+    public static final String METHOD_GET_RANGE = "getRange";
+
+    // METHOD_MAINTAIN prunes and compacts the database, see WeatherMaintenance.  It takes the
+    // preferred location setting as the arg, so that location is never dropped, and returns the
+    // EXTRA_MAINTENANCE_* metrics of the run.  It may take a while, don't call it on the main
+    // thread.
+    public static final String METHOD_MAINTAIN = "maintain";
+
+    public static final String EXTRA_START_DATE = "start_date";
+    public static final String EXTRA_COUNT = "count";
+
+    // Keys of the Bundles returned from call().  getToday returns single values, getRange returns
+    // arrays of the same type.
+    public static final String EXTRA_DATE = "date";
+    public static final String EXTRA_WEATHER_ID = "weather_id";
+    public static final String EXTRA_SHORT_DESC = "short_desc";
+    public static final String EXTRA_MAX_TEMP = "max";
+    public static final String EXTRA_MIN_TEMP = "min";
+
+    // Keys of the Bundle returned by METHOD_MAINTAIN.  Sizes are in bytes.
+    public static final String EXTRA_MAINTENANCE_SIZE_BEFORE = "size_before";
+    public static final String EXTRA_MAINTENANCE_SIZE_AFTER = "size_after";
+    public static final String EXTRA_MAINTENANCE_ROWS_DELETED = "rows_deleted";
+    public static final String EXTRA_MAINTENANCE_DURATION = "duration_millis";
+
+    // METHOD_METRICS returns the provider's latency histograms since the process started.  The
+    // Bundle holds one Bundle per operation and URI type that has been used, keyed like
+    // "query weather/*", each with the EXTRA_METRICS_* values.  Pass "reset" as the arg to start
+    // over after reading them.
+    public static final String METHOD_METRICS = "metrics";
+    public static final String METRICS_RESET = "reset";
+
+    // Number of calls, total rows returned or written, and latencies in microseconds.
+    // EXTRA_METRICS_HISTOGRAM is a long[] of call counts, bucket i holding the calls that took
+    // less than 2^(i+1) microseconds and at least 2^i, bucket 0 everything under 2.
+    public static final String EXTRA_METRICS_COUNT = "count";
+    public static final String EXTRA_METRICS_ROWS = "rows";
+    public static final String EXTRA_METRICS_TOTAL_MICROS = "total_micros";
+    public static final String EXTRA_METRICS_MAX_MICROS = "max_micros";
+    public static final String EXTRA_METRICS_HISTOGRAM = "histogram";
+
+    // METHOD_CURSORS reports the cursors the provider has handed out and that are still open,
+    // in debug builds with cursor tracking on, see R.bool.track_cursors.  Otherwise it returns
+    // null.  The full report, with the stack trace of each query, is in
+    // adb shell dumpsys activity provider com.example.android.sunshine.app
+    public static final String METHOD_CURSORS = "cursors";
+
+    // Open cursors, the bytes in their CursorWindows, and cursors collected without a close()
+    public static final String EXTRA_CURSORS_OPEN = "open";
+    public static final String EXTRA_CURSORS_WINDOW_BYTES = "window_bytes";
+    public static final String EXTRA_CURSORS_LEAKED = "leaked";
 
     // To make it easy to query for the exact date, we normalize all dates that go into
-    // the database to the start of the the Julian day at UTC.
+    // the database to the start of their local day, see JulianDay.
     public static long normalizeDate(long startDate) {
-        // normalize the start date to the beginning of the (UTC) day
-        Time time = new Time();
-        time.set(startDate);
-        int julianDay = Time.getJulianDay(startDate, time.gmtoff);
-        return time.setJulianDay(julianDay);
+        return JulianDay.normalize(startDate);
     }
 
     /* Inner class that defines the table contents of the location table */
@@ -126,6 +190,10 @@ public class WeatherContract {
         // Degrees are meteorological degrees (e.g, 0 is north, 180 is south).  Stored as floats.
         public static final String COLUMN_DEGREES = "degrees";
 
+        // Query parameters for paging through weather/<location>, see buildWeatherLocationPage
+        public static final String PARAM_AFTER_DATE = "after";
+        public static final String PARAM_LIMIT = "limit";
+
         public static Uri buildWeatherUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
@@ -144,6 +212,21 @@ public class WeatherContract {
                     .appendQueryParameter(COLUMN_DATE, Long.toString(normalizedDate)).build();
         }
 
+        /*
+            Keyset pagination for weather/<location>.  A page holds at most limit rows, in date
+            order, strictly after afterDate.  Pass the date of the last row of the previous page
+            as afterDate to get the next one, or 0 for the first page.
+         */
+        public static Uri buildWeatherLocationPage(
+                String locationSetting, long startDate, long afterDate, int limit) {
+            Uri.Builder builder = buildWeatherLocationWithStartDate(locationSetting, startDate)
+                    .buildUpon();
+            if (afterDate > 0) {
+                builder.appendQueryParameter(PARAM_AFTER_DATE, Long.toString(afterDate));
+            }
+            return builder.appendQueryParameter(PARAM_LIMIT, Integer.toString(limit)).build();
+        }
+
         public static Uri buildWeatherLocationWithDate(String locationSetting, long date) {
             return CONTENT_URI.buildUpon().appendPath(locationSetting)
                     .appendPath(Long.toString(normalizeDate(date))).build();
@@ -164,5 +247,235 @@ public class WeatherContract {
             else
                 return 0;
         }
+
+        public static long getAfterDateFromUri(Uri uri) {
+            String dateString = uri.getQueryParameter(PARAM_AFTER_DATE);
+            if (null != dateString && dateString.length() > 0)
+                return Long.parseLong(dateString);
+            else
+                return 0;
+        }
+
+        public static int getLimitFromUri(Uri uri) {
+            String limitString = uri.getQueryParameter(PARAM_LIMIT);
+            if (null != limitString && limitString.length() > 0)
+                return Integer.parseInt(limitString);
+            else
+                return 0;
+        }
+    }
+
+    /*
+        Inner class that defines the locations that have resolved at some point.  Unlike the
+        location table, rows stay after their weather is gone, so the location setting can offer
+        them as suggestions.  Query it with buildSuggestionUri for the most recent locations whose
+        location setting or city name start with a prefix, ignoring case.
+     */
+    public static final class LocationHistoryEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_LOCATION_HISTORY).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" +
+                        PATH_LOCATION_HISTORY;
+
+        public static final String TABLE_NAME = "location_history";
+
+        public static final String COLUMN_LOCATION_SETTING = "location_setting";
+        public static final String COLUMN_CITY_NAME = "city_name";
+        // When the location last resolved, in milliseconds since the epoch
+        public static final String COLUMN_RESOLVED = "resolved";
+
+        public static final String PARAM_PREFIX = "prefix";
+        public static final String PARAM_LIMIT = "limit";
+
+        public static Uri buildSuggestionUri(String prefix, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(PARAM_PREFIX, prefix)
+                    .appendQueryParameter(PARAM_LIMIT, Integer.toString(limit))
+                    .build();
+        }
+
+        public static String getPrefixFromUri(Uri uri) {
+            return uri.getQueryParameter(PARAM_PREFIX);
+        }
+
+        public static int getLimitFromUri(Uri uri) {
+            String limitString = uri.getQueryParameter(PARAM_LIMIT);
+            if (null != limitString && limitString.length() > 0)
+                return Integer.parseInt(limitString);
+            else
+                return 0;
+        }
+    }
+
+    /*
+        Inner class that defines the intraday (3-hourly) forecast.  The table holds one row per
+        location and day, with all of that day's slots packed into a single blob by
+        IntradayCodec.  Queries on intraday/<location> and intraday/<location>/<date> return one
+        cursor row per slot, with the COLUMN_SLOT_* columns decoded from the blob on demand.
+     */
+    public static final class IntradayEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_INTRADAY).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INTRADAY;
+
+        public static final String TABLE_NAME = "intraday";
+
+        // Stored columns.  Date is normalized like the weather date, slots is the packed blob.
+        public static final String COLUMN_LOC_KEY = "location_id";
+        public static final String COLUMN_DATE = "date";
+        public static final String COLUMN_SLOTS = "slots";
+
+        // Columns of the decoded slot rows returned by the provider
+        // Start of the slot, in milliseconds since the epoch
+        public static final String COLUMN_SLOT_TIME = "time";
+        // Temperature in degrees Celsius
+        public static final String COLUMN_SLOT_TEMP = "temp";
+        public static final String COLUMN_SLOT_WEATHER_ID = "weather_id";
+        public static final String COLUMN_SLOT_HUMIDITY = "humidity";
+        public static final String COLUMN_SLOT_PRESSURE = "pressure";
+        public static final String COLUMN_SLOT_WIND_SPEED = "wind";
+        public static final String COLUMN_SLOT_DEGREES = "degrees";
+
+        public static Uri buildIntradayLocation(String locationSetting) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting).build();
+        }
+
+        public static Uri buildIntradayLocationWithStartDate(
+                String locationSetting, long startDate) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting)
+                    .appendQueryParameter(COLUMN_DATE, Long.toString(normalizeDate(startDate)))
+                    .build();
+        }
+
+        public static Uri buildIntradayLocationWithDate(String locationSetting, long date) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting)
+                    .appendPath(Long.toString(normalizeDate(date))).build();
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
+
+        public static long getDateFromUri(Uri uri) {
+            return Long.parseLong(uri.getPathSegments().get(2));
+        }
+
+        public static long getStartDateFromUri(Uri uri) {
+            String dateString = uri.getQueryParameter(COLUMN_DATE);
+            if (null != dateString && dateString.length() > 0)
+                return Long.parseLong(dateString);
+            else
+                return 0;
+        }
+    }
+
+    /*
+        Fixed point encoding of the weather numerics.  When the app is built with
+        BuildConfig.COMPACT_WEATHER_SCHEMA the weather table stores min, max, humidity, pressure,
+        wind and degrees as INTEGER columns holding value * scale (tenths of a degree, hPa * 10
+        and so on), which SQLite packs into one to three bytes instead of an eight byte REAL.
+        The provider encodes on the way in and decodes in the query, so readers still get the
+        same column names and REAL values either way.
+     */
+    public static final class FixedPoint {
+
+        public static final int TEMPERATURE_SCALE = 10;
+        public static final int HUMIDITY_SCALE = 10;
+        public static final int PRESSURE_SCALE = 10;
+        public static final int WIND_SPEED_SCALE = 10;
+        public static final int DEGREES_SCALE = 10;
+
+        // The weather columns stored scaled in the compact schema
+        public static final String[] SCALED_COLUMNS = {
+                WeatherEntry.COLUMN_MIN_TEMP,
+                WeatherEntry.COLUMN_MAX_TEMP,
+                WeatherEntry.COLUMN_HUMIDITY,
+                WeatherEntry.COLUMN_PRESSURE,
+                WeatherEntry.COLUMN_WIND_SPEED,
+                WeatherEntry.COLUMN_DEGREES
+        };
+
+        /**
+         * @return the scale of the given weather column, or 0 if it isn't stored scaled.
+         */
+        public static int getScale(String column) {
+            if (WeatherEntry.COLUMN_MIN_TEMP.equals(column)
+                    || WeatherEntry.COLUMN_MAX_TEMP.equals(column)) {
+                return TEMPERATURE_SCALE;
+            } else if (WeatherEntry.COLUMN_HUMIDITY.equals(column)) {
+                return HUMIDITY_SCALE;
+            } else if (WeatherEntry.COLUMN_PRESSURE.equals(column)) {
+                return PRESSURE_SCALE;
+            } else if (WeatherEntry.COLUMN_WIND_SPEED.equals(column)) {
+                return WIND_SPEED_SCALE;
+            } else if (WeatherEntry.COLUMN_DEGREES.equals(column)) {
+                return DEGREES_SCALE;
+            }
+            return 0;
+        }
+
+        public static long encode(double value, int scale) {
+            return Math.round(value * scale);
+        }
+
+        public static double decode(long value, int scale) {
+            return (double) value / scale;
+        }
+
+        /**
+         * @return a SQL expression that decodes the given, possibly table qualified, column.
+         */
+        public static String decodeExpression(String column, int scale) {
+            return column + " / " + scale + ".0";
+        }
+    }
+
+    /*
+        Inner class that defines the table contents of the current_conditions table.  The
+        provider keeps one denormalized row per location holding today's forecast (or the next
+        one available) joined with the location data, so single-row consumers can do a key lookup
+        instead of the weather/location join.  The column names match the weather and location
+        tables, so existing projections can be reused as-is.
+     */
+    public static final class CurrentConditionsEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_CURRENT_CONDITIONS).build();
+
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_CURRENT_CONDITIONS;
+
+        public static final String TABLE_NAME = "current_conditions";
+
+        // The primary key.  _ID holds the row id of the location in the location table.
+        public static final String COLUMN_LOCATION_SETTING = LocationEntry.COLUMN_LOCATION_SETTING;
+
+        public static final String COLUMN_CITY_NAME = LocationEntry.COLUMN_CITY_NAME;
+        public static final String COLUMN_COORD_LAT = LocationEntry.COLUMN_COORD_LAT;
+        public static final String COLUMN_COORD_LONG = LocationEntry.COLUMN_COORD_LONG;
+
+        public static final String COLUMN_DATE = WeatherEntry.COLUMN_DATE;
+        public static final String COLUMN_WEATHER_ID = WeatherEntry.COLUMN_WEATHER_ID;
+        public static final String COLUMN_SHORT_DESC = WeatherEntry.COLUMN_SHORT_DESC;
+        public static final String COLUMN_MIN_TEMP = WeatherEntry.COLUMN_MIN_TEMP;
+        public static final String COLUMN_MAX_TEMP = WeatherEntry.COLUMN_MAX_TEMP;
+        public static final String COLUMN_HUMIDITY = WeatherEntry.COLUMN_HUMIDITY;
+        public static final String COLUMN_PRESSURE = WeatherEntry.COLUMN_PRESSURE;
+        public static final String COLUMN_WIND_SPEED = WeatherEntry.COLUMN_WIND_SPEED;
+        public static final String COLUMN_DEGREES = WeatherEntry.COLUMN_DEGREES;
+
+        public static Uri buildCurrentConditionsUri(String locationSetting) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting).build();
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
     }
 }
@@ -19,7 +19,11 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.data.WeatherContract.CurrentConditionsEntry;
+import com.example.android.sunshine.app.data.WeatherContract.IntradayEntry;
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.LocationHistoryEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
 /**
@@ -28,14 +32,24 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
     // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 5;
 
-    static final String DATABASE_NAME = "weather.db";
+    // The compact schema lives in its own file, so switching BuildConfig.COMPACT_WEATHER_SCHEMA
+    // never opens a database laid out the other way.
+    static final String DATABASE_NAME =
+            BuildConfig.COMPACT_WEATHER_SCHEMA ? "weather_compact.db" : "weather.db";
 
     public WeatherDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
 
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Let WeatherMaintenance hand free pages back without rewriting the whole file.  This
+        // only takes effect for new databases, existing ones are converted by a single VACUUM.
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+    }
+
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
         // Create a table to hold locations.  A location consists of the string supplied in the
@@ -48,6 +62,9 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 LocationEntry.COLUMN_COORD_LONG + " REAL NOT NULL " +
                 " );";
 
+        // The compact schema stores the numerics as scaled integers, see WeatherContract.FixedPoint
+        final String numeric = BuildConfig.COMPACT_WEATHER_SCHEMA ? " INTEGER" : " REAL";
+
         final String SQL_CREATE_WEATHER_TABLE = "CREATE TABLE " + WeatherEntry.TABLE_NAME + " (" +
                 // Why AutoIncrement here, and not above?
                 // Unique keys will be auto-generated in either case.  But for weather
@@ -62,13 +79,13 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 WeatherEntry.COLUMN_SHORT_DESC + " TEXT NOT NULL, " +
                 WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL," +
 
-                WeatherEntry.COLUMN_MIN_TEMP + " REAL NOT NULL, " +
-                WeatherEntry.COLUMN_MAX_TEMP + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_MIN_TEMP + numeric + " NOT NULL, " +
+                WeatherEntry.COLUMN_MAX_TEMP + numeric + " NOT NULL, " +
 
-                WeatherEntry.COLUMN_HUMIDITY + " REAL NOT NULL, " +
-                WeatherEntry.COLUMN_PRESSURE + " REAL NOT NULL, " +
-                WeatherEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, " +
-                WeatherEntry.COLUMN_DEGREES + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_HUMIDITY + numeric + " NOT NULL, " +
+                WeatherEntry.COLUMN_PRESSURE + numeric + " NOT NULL, " +
+                WeatherEntry.COLUMN_WIND_SPEED + numeric + " NOT NULL, " +
+                WeatherEntry.COLUMN_DEGREES + numeric + " NOT NULL, " +
 
                 // Set up the location column as a foreign key to location table.
                 " FOREIGN KEY (" + WeatherEntry.COLUMN_LOC_KEY + ") REFERENCES " +
@@ -79,8 +96,57 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 " UNIQUE (" + WeatherEntry.COLUMN_DATE + ", " +
                 WeatherEntry.COLUMN_LOC_KEY + ") ON CONFLICT REPLACE);";
 
+        // One row per location, maintained by the WeatherProvider in the same transaction as
+        // the weather writes.  Keyed by the location setting so lookups don't need the join.
+        final String SQL_CREATE_CURRENT_CONDITIONS_TABLE = "CREATE TABLE " +
+                CurrentConditionsEntry.TABLE_NAME + " (" +
+                CurrentConditionsEntry.COLUMN_LOCATION_SETTING + " TEXT PRIMARY KEY NOT NULL, " +
+                CurrentConditionsEntry._ID + " INTEGER NOT NULL, " +
+                CurrentConditionsEntry.COLUMN_CITY_NAME + " TEXT NOT NULL, " +
+                CurrentConditionsEntry.COLUMN_COORD_LAT + " REAL NOT NULL, " +
+                CurrentConditionsEntry.COLUMN_COORD_LONG + " REAL NOT NULL, " +
+                CurrentConditionsEntry.COLUMN_DATE + " INTEGER NOT NULL, " +
+                CurrentConditionsEntry.COLUMN_SHORT_DESC + " TEXT NOT NULL, " +
+                CurrentConditionsEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL, " +
+                CurrentConditionsEntry.COLUMN_MIN_TEMP + " REAL NOT NULL, " +
+                CurrentConditionsEntry.COLUMN_MAX_TEMP + " REAL NOT NULL, " +
+                CurrentConditionsEntry.COLUMN_HUMIDITY + " REAL NOT NULL, " +
+                CurrentConditionsEntry.COLUMN_PRESSURE + " REAL NOT NULL, " +
+                CurrentConditionsEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, " +
+                CurrentConditionsEntry.COLUMN_DEGREES + " REAL NOT NULL " +
+                ") WITHOUT ROWID;";
+
+        // One row per location and day, the day's slots packed by IntradayCodec
+        final String SQL_CREATE_INTRADAY_TABLE = "CREATE TABLE " + IntradayEntry.TABLE_NAME + " (" +
+                IntradayEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                IntradayEntry.COLUMN_LOC_KEY + " INTEGER NOT NULL, " +
+                IntradayEntry.COLUMN_DATE + " INTEGER NOT NULL, " +
+                IntradayEntry.COLUMN_SLOTS + " BLOB NOT NULL, " +
+                " FOREIGN KEY (" + IntradayEntry.COLUMN_LOC_KEY + ") REFERENCES " +
+                LocationEntry.TABLE_NAME + " (" + LocationEntry._ID + "), " +
+                " UNIQUE (" + IntradayEntry.COLUMN_DATE + ", " +
+                IntradayEntry.COLUMN_LOC_KEY + ") ON CONFLICT REPLACE);";
+
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_CURRENT_CONDITIONS_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_INTRADAY_TABLE);
+
+        // Every location that has resolved, for the suggestions.  Both text columns get an index
+        // that ignores case, which the provider's prefix range queries run on.
+        sqLiteDatabase.execSQL("CREATE TABLE " + LocationHistoryEntry.TABLE_NAME + " (" +
+                LocationHistoryEntry._ID + " INTEGER PRIMARY KEY, " +
+                LocationHistoryEntry.COLUMN_LOCATION_SETTING + " TEXT NOT NULL, " +
+                LocationHistoryEntry.COLUMN_CITY_NAME + " TEXT NOT NULL, " +
+                LocationHistoryEntry.COLUMN_RESOLVED + " INTEGER NOT NULL, " +
+                " UNIQUE (" + LocationHistoryEntry.COLUMN_LOCATION_SETTING +
+                ") ON CONFLICT REPLACE);");
+        sqLiteDatabase.execSQL("CREATE INDEX location_history_setting ON " +
+                LocationHistoryEntry.TABLE_NAME + " (" +
+                LocationHistoryEntry.COLUMN_LOCATION_SETTING + " COLLATE NOCASE);");
+        sqLiteDatabase.execSQL("CREATE INDEX location_history_city ON " +
+                LocationHistoryEntry.TABLE_NAME + " (" +
+                LocationHistoryEntry.COLUMN_CITY_NAME + " COLLATE NOCASE);");
     }
 
     @Override
@@ -93,6 +159,9 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
         // should be your top priority before modifying this method.
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + CurrentConditionsEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + IntradayEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationHistoryEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
     }
 }
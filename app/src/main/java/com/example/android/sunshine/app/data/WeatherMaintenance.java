@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.IntradayEntry;
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.LocationHistoryEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * The individual steps of the weather database maintenance.  {@link WeatherProvider} runs them
+ * when asked for {@link WeatherContract#METHOD_MAINTAIN}, so it can wrap the deletes in its own
+ * transactions and keep the derived tables and the query cache in step.
+ */
+class WeatherMaintenance {
+
+    private static final String LOG_TAG = WeatherMaintenance.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    // auto_vacuum = INCREMENTAL, see WeatherDbHelper.onConfigure
+    private static final long AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final int mWeatherRetentionDays;
+    private final int mIntradayRetentionDays;
+    private final int mMaxLocationHistory;
+    private final long mMaxDatabaseSize;
+
+    /**
+     * @param weatherRetentionDays Days of past daily weather to keep
+     * @param intradayRetentionDays Days of past intraday weather to keep
+     * @param maxLocationHistory How many resolved locations to keep
+     * @param maxDatabaseSize The size budget of the database file, in bytes
+     */
+    WeatherMaintenance(int weatherRetentionDays, int intradayRetentionDays,
+                       int maxLocationHistory, long maxDatabaseSize) {
+        mWeatherRetentionDays = weatherRetentionDays;
+        mIntradayRetentionDays = intradayRetentionDays;
+        mMaxLocationHistory = maxLocationHistory;
+        mMaxDatabaseSize = maxDatabaseSize;
+    }
+
+    /**
+     * @return the size of the database file in bytes, free pages included.
+     */
+    static long getDatabaseSize(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA page_count", null)
+                * DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+    }
+
+    boolean isOverBudget(SQLiteDatabase db) {
+        return getDatabaseSize(db) > mMaxDatabaseSize;
+    }
+
+    /**
+     * Deletes the daily weather that is older than its retention period.
+     *
+     * @param today The normalized date of today
+     * @return the number of rows deleted
+     */
+    int deleteExpiredWeather(SQLiteDatabase db, long today) {
+        return db.delete(WeatherEntry.TABLE_NAME, WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(getOldestDate(today, mWeatherRetentionDays))});
+    }
+
+    /**
+     * Deletes the intraday weather that is older than its retention period.
+     *
+     * @param today The normalized date of today
+     * @return the number of rows deleted
+     */
+    int deleteExpiredIntraday(SQLiteDatabase db, long today) {
+        return db.delete(IntradayEntry.TABLE_NAME, IntradayEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(getOldestDate(today, mIntradayRetentionDays))});
+    }
+
+    private static long getOldestDate(long today, int retentionDays) {
+        return WeatherContract.normalizeDate(today - retentionDays * DAY_IN_MILLIS);
+    }
+
+    /**
+     * Deletes the locations that no weather refers to any more, apart from the preferred one,
+     * which may simply not have been synced yet.
+     *
+     * @return the number of rows deleted
+     */
+    int deleteOrphanedLocations(SQLiteDatabase db, String preferredLocation) {
+        String selection = LocationEntry._ID + " NOT IN (SELECT DISTINCT " +
+                WeatherEntry.COLUMN_LOC_KEY + " FROM " + WeatherEntry.TABLE_NAME + ") AND " +
+                LocationEntry._ID + " NOT IN (SELECT DISTINCT " +
+                IntradayEntry.COLUMN_LOC_KEY + " FROM " + IntradayEntry.TABLE_NAME + ")";
+        if (null == preferredLocation) {
+            return db.delete(LocationEntry.TABLE_NAME, selection, null);
+        }
+        return db.delete(LocationEntry.TABLE_NAME,
+                selection + " AND " + LocationEntry.COLUMN_LOCATION_SETTING + " != ?",
+                new String[]{preferredLocation});
+    }
+
+    /**
+     * Keeps only the most recently resolved locations, as many as the maximum.
+     *
+     * @return the number of rows deleted
+     */
+    int trimLocationHistory(SQLiteDatabase db) {
+        return db.delete(LocationHistoryEntry.TABLE_NAME, LocationHistoryEntry._ID +
+                " NOT IN (SELECT " + LocationHistoryEntry._ID + " FROM " +
+                LocationHistoryEntry.TABLE_NAME + " ORDER BY " +
+                LocationHistoryEntry.COLUMN_RESOLVED + " DESC LIMIT " + mMaxLocationHistory + ")",
+                null);
+    }
+
+    /**
+     * Frees space to get under the size budget, one step per call: first the daily and intraday
+     * weather of every location but the preferred one, then the intraday forecast of the
+     * preferred location, then its furthest forecast day.  The last remaining day is never
+     * deleted.
+     *
+     * @return the number of rows deleted, 0 once there is nothing left to drop
+     */
+    int trimTowardsBudget(SQLiteDatabase db, String preferredLocation) {
+        String preferredLocationIds = "SELECT " + LocationEntry._ID + " FROM " +
+                LocationEntry.TABLE_NAME + " WHERE " + LocationEntry.COLUMN_LOCATION_SETTING +
+                " = ?";
+        String[] args = new String[]{null == preferredLocation ? "" : preferredLocation};
+
+        int deleted = db.delete(WeatherEntry.TABLE_NAME,
+                WeatherEntry.COLUMN_LOC_KEY + " NOT IN (" + preferredLocationIds + ")", args)
+                + db.delete(IntradayEntry.TABLE_NAME,
+                IntradayEntry.COLUMN_LOC_KEY + " NOT IN (" + preferredLocationIds + ")", args);
+        if (deleted > 0) {
+            return deleted;
+        }
+
+        // The intraday detail is a nice to have next to the daily forecast
+        deleted = db.delete(IntradayEntry.TABLE_NAME, null, null);
+        if (deleted > 0) {
+            return deleted;
+        }
+
+        if (DatabaseUtils.longForQuery(db, "SELECT COUNT(DISTINCT " + WeatherEntry.COLUMN_DATE +
+                ") FROM " + WeatherEntry.TABLE_NAME, null) <= 1) {
+            return 0;
+        }
+        return db.delete(WeatherEntry.TABLE_NAME, WeatherEntry.COLUMN_DATE + " = (SELECT MAX(" +
+                WeatherEntry.COLUMN_DATE + ") FROM " + WeatherEntry.TABLE_NAME + ")", null);
+    }
+
+    /**
+     * Returns the free pages to the file system.  Must not be called inside a transaction.
+     *
+     * A database created before auto_vacuum was turned on needs one full VACUUM to switch it
+     * over, after that only the incremental vacuum runs.
+     */
+    void compact(SQLiteDatabase db) {
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != AUTO_VACUUM_INCREMENTAL) {
+            Log.d(LOG_TAG, "Converting the database to incremental vacuum");
+            db.execSQL("VACUUM");
+            return;
+        }
+        // rawQuery only runs the statement once the cursor is read
+        Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum", null);
+        try {
+            while (cursor.moveToNext()) {
+                // nothing to read
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
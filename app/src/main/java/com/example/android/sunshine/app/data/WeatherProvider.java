@@ -17,25 +17,91 @@ package com.example.android.sunshine.app.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
+import android.content.res.Resources;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
 
 public class WeatherProvider extends ContentProvider {
 
-    // The URI Matcher used by this content provider.
+    private static final String LOG_TAG = WeatherProvider.class.getSimpleName();
+
+    // The URI Matcher used by this content provider, and the pattern behind each of its codes.
+    private static final SparseArray<String> sUriTypes = new SparseArray<String>();
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
 
+    // Results of recent queries, invalidated by the writes below.
+    private final WeatherQueryCache mQueryCache = new WeatherQueryCache();
+    // Latencies of every query and write, for call(METHOD_METRICS) and dump()
+    private final ProviderMetrics mMetrics = new ProviderMetrics(sUriTypes);
+    private WeatherMaintenance mMaintenance;
+    // Metrics of the last maintenance run, for dump()
+    private volatile Bundle mLastMaintenance;
+    // Wraps every cursor handed out, in debug builds only.  Null otherwise.
+    private volatile CursorTracker mCursorTracker;
+    // The URIs changed by the batch applyBatch is running on this thread, if any.  They are
+    // notified once the batch has committed, not while its transaction is still open.
+    private final ThreadLocal<HashSet<Uri>> mBatchChanges = new ThreadLocal<HashSet<Uri>>();
+
+    // How long a batch that yielded sleeps before taking the database back, so that the
+    // waiting readers actually get it
+    private static final long BATCH_YIELD_SLEEP_MILLIS = 4;
+
+    // The tables each kind of query reads from, used to invalidate cached results precisely.
+    private static final String[] sWeatherWithLocationTables = {
+            WeatherContract.WeatherEntry.TABLE_NAME,
+            WeatherContract.LocationEntry.TABLE_NAME
+    };
+    private static final String[] sCurrentConditionsTables = {
+            WeatherContract.CurrentConditionsEntry.TABLE_NAME
+    };
+    private static final String[] sLocationHistoryTables = {
+            WeatherContract.LocationHistoryEntry.TABLE_NAME
+    };
+
     static final int WEATHER = 100;
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
+    static final int CURRENT_CONDITIONS = 400;
+    static final int INTRADAY = 500;
+    static final int INTRADAY_WITH_LOCATION = 501;
+    static final int INTRADAY_WITH_LOCATION_AND_DATE = 502;
+    static final int LOCATION_HISTORY = 600;
+
+    // The normalized day the current_conditions rows were last built for.  When the day rolls
+    // over without a write, the rows are rebuilt on the next read.
+    private volatile long mCurrentConditionsDay;
+
+    // Added to the system clock wherever the provider works out what day it is, so tests can
+    // move into tomorrow without waiting for it.
+    private volatile long mClockOffsetMillis;
 
     private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
+    private static final SQLiteQueryBuilder sIntradayByLocationSettingQueryBuilder;
 
     static{
         sWeatherByLocationSettingQueryBuilder = new SQLiteQueryBuilder();
@@ -49,6 +115,16 @@ public class WeatherProvider extends ContentProvider {
                         "." + WeatherContract.WeatherEntry.COLUMN_LOC_KEY +
                         " = " + WeatherContract.LocationEntry.TABLE_NAME +
                         "." + WeatherContract.LocationEntry._ID);
+
+        //intraday INNER JOIN location ON intraday.location_id = location._id
+        sIntradayByLocationSettingQueryBuilder = new SQLiteQueryBuilder();
+        sIntradayByLocationSettingQueryBuilder.setTables(
+                WeatherContract.IntradayEntry.TABLE_NAME + " INNER JOIN " +
+                        WeatherContract.LocationEntry.TABLE_NAME +
+                        " ON " + WeatherContract.IntradayEntry.TABLE_NAME +
+                        "." + WeatherContract.IntradayEntry.COLUMN_LOC_KEY +
+                        " = " + WeatherContract.LocationEntry.TABLE_NAME +
+                        "." + WeatherContract.LocationEntry._ID);
     }
 
     //location.location_setting = ?
@@ -68,9 +144,174 @@ public class WeatherProvider extends ContentProvider {
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
 
+    //AND date > ?
+    private static final String sAfterDateSelection =
+            "AND " + WeatherContract.WeatherEntry.COLUMN_DATE + " > ? ";
+
+    //AND intraday.date >= ?
+    private static final String sIntradayStartDateSelection =
+            "AND " + WeatherContract.IntradayEntry.TABLE_NAME + "." +
+                    WeatherContract.IntradayEntry.COLUMN_DATE + " >= ? ";
+
+    //AND intraday.date = ?
+    private static final String sIntradayDaySelection =
+            "AND " + WeatherContract.IntradayEntry.TABLE_NAME + "." +
+                    WeatherContract.IntradayEntry.COLUMN_DATE + " = ? ";
+
+    //(location_setting >= ? AND location_setting < ?) OR (city_name >= ? AND city_name < ?),
+    //all ignoring case so the NOCASE indexes serve both halves
+    private static final String sLocationHistoryPrefixSelection =
+            "(" + WeatherContract.LocationHistoryEntry.COLUMN_LOCATION_SETTING +
+                    " >= ? COLLATE NOCASE AND " +
+                    WeatherContract.LocationHistoryEntry.COLUMN_LOCATION_SETTING +
+                    " < ? COLLATE NOCASE) OR (" +
+                    WeatherContract.LocationHistoryEntry.COLUMN_CITY_NAME +
+                    " >= ? COLLATE NOCASE AND " +
+                    WeatherContract.LocationHistoryEntry.COLUMN_CITY_NAME +
+                    " < ? COLLATE NOCASE)";
+
+    //current_conditions.location_setting = ?
+    private static final String sCurrentConditionsSelection =
+            WeatherContract.CurrentConditionsEntry.COLUMN_LOCATION_SETTING + " = ? ";
+
+    // Fills current_conditions with the first forecast on or after the given day for every
+    // location, joined with the location data.
+    private static final String sRefreshCurrentConditionsSql =
+            "INSERT OR REPLACE INTO " + WeatherContract.CurrentConditionsEntry.TABLE_NAME + " (" +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_LOCATION_SETTING + ", " +
+                    WeatherContract.CurrentConditionsEntry._ID + ", " +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_CITY_NAME + ", " +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_COORD_LAT + ", " +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_COORD_LONG + ", " +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_DATE + ", " +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_SHORT_DESC + ", " +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_WEATHER_ID + ", " +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_MIN_TEMP + ", " +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_MAX_TEMP + ", " +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_HUMIDITY + ", " +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_PRESSURE + ", " +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_WIND_SPEED + ", " +
+                    WeatherContract.CurrentConditionsEntry.COLUMN_DEGREES + ") " +
+            "SELECT l." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + ", " +
+                    "l." + WeatherContract.LocationEntry._ID + ", " +
+                    "l." + WeatherContract.LocationEntry.COLUMN_CITY_NAME + ", " +
+                    "l." + WeatherContract.LocationEntry.COLUMN_COORD_LAT + ", " +
+                    "l." + WeatherContract.LocationEntry.COLUMN_COORD_LONG + ", " +
+                    "w." + WeatherContract.WeatherEntry.COLUMN_DATE + ", " +
+                    "w." + WeatherContract.WeatherEntry.COLUMN_SHORT_DESC + ", " +
+                    "w." + WeatherContract.WeatherEntry.COLUMN_WEATHER_ID + ", " +
+                    weatherValue(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP) + ", " +
+                    weatherValue(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP) + ", " +
+                    weatherValue(WeatherContract.WeatherEntry.COLUMN_HUMIDITY) + ", " +
+                    weatherValue(WeatherContract.WeatherEntry.COLUMN_PRESSURE) + ", " +
+                    weatherValue(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED) + ", " +
+                    weatherValue(WeatherContract.WeatherEntry.COLUMN_DEGREES) +
+            " FROM " + WeatherContract.WeatherEntry.TABLE_NAME + " w INNER JOIN " +
+                    WeatherContract.LocationEntry.TABLE_NAME + " l ON w." +
+                    WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = l." +
+                    WeatherContract.LocationEntry._ID +
+            " WHERE w." + WeatherContract.WeatherEntry.COLUMN_DATE + " = (SELECT MIN(" +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + ") FROM " +
+                    WeatherContract.WeatherEntry.TABLE_NAME + " WHERE " +
+                    WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = l." +
+                    WeatherContract.LocationEntry._ID + " AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " >= ?)";
+
+    // A weather column of the refresh above, decoded if the compact schema stores it scaled
+    private static String weatherValue(String column) {
+        int scale = WeatherContract.FixedPoint.getScale(column);
+        if (!BuildConfig.COMPACT_WEATHER_SCHEMA || scale == 0) {
+            return "w." + column;
+        }
+        return WeatherContract.FixedPoint.decodeExpression("w." + column, scale);
+    }
+
+    // Every weather column, for queries without a projection on the compact schema
+    private static final String[] sAllWeatherColumns = {
+            WeatherContract.WeatherEntry._ID,
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES
+    };
+
+    // The same for the weather/location join, in the order "SELECT *" would return them
+    private static final String[] sAllWeatherWithLocationColumns;
+
+    static {
+        sAllWeatherWithLocationColumns = new String[sAllWeatherColumns.length + 1];
+        System.arraycopy(sAllWeatherColumns, 0, sAllWeatherWithLocationColumns, 0,
+                sAllWeatherColumns.length);
+        // _id is in both tables
+        sAllWeatherWithLocationColumns[0] = WeatherContract.WeatherEntry.TABLE_NAME + "." +
+                WeatherContract.WeatherEntry._ID;
+        sAllWeatherWithLocationColumns[sAllWeatherColumns.length] =
+                WeatherContract.LocationEntry.TABLE_NAME + ".*";
+    }
+
+    /*
+        With the compact schema the scaled weather columns are decoded by the query itself, so
+        readers get REAL values under the usual column names either way.  Selections and sort
+        orders on those columns would still see the scaled values; nothing uses them.
+     */
+    private static String[] decodeFixedPoint(String[] projection, boolean joined) {
+        if (!BuildConfig.COMPACT_WEATHER_SCHEMA) {
+            return projection;
+        }
+        if (null == projection) {
+            projection = joined ? sAllWeatherWithLocationColumns : sAllWeatherColumns;
+        }
+        final String tablePrefix = WeatherContract.WeatherEntry.TABLE_NAME + ".";
+        String[] decoded = new String[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            String column = projection[i];
+            String name = column.startsWith(tablePrefix)
+                    ? column.substring(tablePrefix.length()) : column;
+            int scale = WeatherContract.FixedPoint.getScale(name);
+            decoded[i] = scale == 0 ? column
+                    : WeatherContract.FixedPoint.decodeExpression(column, scale) + " AS " + name;
+        }
+        return decoded;
+    }
+
+    /*
+        The compact schema counterpart of normalizeDate, scales the numerics before a write.
+        Unlike normalizeDate it leaves the caller's values alone and returns scaled copies, as
+        the sync adapter goes on to use the values it inserted.
+     */
+    private static ContentValues encodeFixedPoint(ContentValues values) {
+        if (!BuildConfig.COMPACT_WEATHER_SCHEMA) {
+            return values;
+        }
+        ContentValues encoded = null;
+        for (String column : WeatherContract.FixedPoint.SCALED_COLUMNS) {
+            Double value = values.getAsDouble(column);
+            if (null != value) {
+                if (null == encoded) {
+                    encoded = new ContentValues(values);
+                }
+                encoded.put(column, WeatherContract.FixedPoint.encode(value,
+                        WeatherContract.FixedPoint.getScale(column)));
+            }
+        }
+        return null != encoded ? encoded : values;
+    }
+
+    // Restricts the refresh above to a single location
+    private static final String sRefreshCurrentConditionsForLocationSql =
+            sRefreshCurrentConditionsSql + " AND l." + WeatherContract.LocationEntry._ID + " = ?";
+
     private Cursor getWeatherByLocationSetting(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long startDate = WeatherContract.WeatherEntry.getStartDateFromUri(uri);
+        long afterDate = WeatherContract.WeatherEntry.getAfterDateFromUri(uri);
+        int limit = WeatherContract.WeatherEntry.getLimitFromUri(uri);
 
         String[] selectionArgs;
         String selection;
@@ -83,13 +324,27 @@ public class WeatherProvider extends ContentProvider {
             selection = sLocationSettingWithStartDateSelection;
         }
 
+        // Pages only make sense in date order, so a paged query always sorts by date and
+        // continues from the last date of the previous page rather than using an offset.
+        if (afterDate != 0 || limit > 0) {
+            sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+        }
+        if (afterDate != 0) {
+            selection += sAfterDateSelection;
+            String[] pagedArgs = new String[selectionArgs.length + 1];
+            System.arraycopy(selectionArgs, 0, pagedArgs, 0, selectionArgs.length);
+            pagedArgs[selectionArgs.length] = Long.toString(afterDate);
+            selectionArgs = pagedArgs;
+        }
+
         return sWeatherByLocationSettingQueryBuilder.query(mOpenHelper.getReadableDatabase(),
                 projection,
                 selection,
                 selectionArgs,
                 null,
                 null,
-                sortOrder
+                sortOrder,
+                limit > 0 ? Integer.toString(limit) : null
         );
     }
 
@@ -108,6 +363,228 @@ public class WeatherProvider extends ContentProvider {
         );
     }
 
+    /*
+        Reads the packed days of a location and hands them to IntradayCursor, which turns them
+        into one row per slot.  The blobs are only decoded as the columns are read.
+     */
+    private Cursor getIntradayByLocationSetting(Uri uri, String[] projection, boolean singleDay) {
+        String locationSetting = WeatherContract.IntradayEntry.getLocationSettingFromUri(uri);
+        long date = singleDay ? WeatherContract.IntradayEntry.getDateFromUri(uri)
+                : WeatherContract.IntradayEntry.getStartDateFromUri(uri);
+
+        String selection = sLocationSettingSelection;
+        String[] selectionArgs;
+        if (singleDay) {
+            selection += sIntradayDaySelection;
+            selectionArgs = new String[]{locationSetting, Long.toString(date)};
+        } else if (date != 0) {
+            selection += sIntradayStartDateSelection;
+            selectionArgs = new String[]{locationSetting, Long.toString(date)};
+        } else {
+            selectionArgs = new String[]{locationSetting};
+        }
+
+        Cursor days = sIntradayByLocationSettingQueryBuilder.query(
+                mOpenHelper.getReadableDatabase(),
+                IntradayCursor.SOURCE_COLUMNS,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                WeatherContract.IntradayEntry.TABLE_NAME + "." +
+                        WeatherContract.IntradayEntry.COLUMN_DATE + " ASC"
+        );
+        return new IntradayCursor(days, projection);
+    }
+
+    /*
+        The most recently resolved locations whose setting or city name starts with the prefix
+        of the URI.  A prefix becomes a range, from the prefix itself up to the prefix followed
+        by the highest character, which SQLite answers from the indexes instead of a scan.
+     */
+    private Cursor getLocationSuggestions(Uri uri, String[] projection) {
+        String prefix = WeatherContract.LocationHistoryEntry.getPrefixFromUri(uri);
+        int limit = WeatherContract.LocationHistoryEntry.getLimitFromUri(uri);
+
+        String selection = null;
+        String[] selectionArgs = null;
+        if (null != prefix && prefix.length() > 0) {
+            String end = prefix + '\uffff';
+            selection = sLocationHistoryPrefixSelection;
+            selectionArgs = new String[]{prefix, end, prefix, end};
+        }
+        return mOpenHelper.getReadableDatabase().query(
+                WeatherContract.LocationHistoryEntry.TABLE_NAME,
+                projection,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                // A replaced row gets a new id, which breaks ties within the same millisecond
+                WeatherContract.LocationHistoryEntry.COLUMN_RESOLVED + " DESC, " +
+                        WeatherContract.LocationHistoryEntry._ID + " DESC",
+                limit > 0 ? Integer.toString(limit) : null
+        );
+    }
+
+    private Cursor getCurrentConditions(Uri uri, String[] projection, String sortOrder) {
+        String locationSetting = WeatherContract.CurrentConditionsEntry.getLocationSettingFromUri(uri);
+
+        // query() has already rebuilt the rows if the day rolled over
+        return mOpenHelper.getReadableDatabase().query(
+                WeatherContract.CurrentConditionsEntry.TABLE_NAME,
+                projection,
+                sCurrentConditionsSelection,
+                new String[]{locationSetting},
+                null,
+                null,
+                sortOrder
+        );
+    }
+
+    // The time the provider takes to be now, for everything that depends on what day it is
+    private long currentTimeMillis() {
+        return System.currentTimeMillis() + mClockOffsetMillis;
+    }
+
+    // For tests only: moves the provider's clock by offsetMillis from the system's
+    void setClockOffset(long offsetMillis) {
+        mClockOffsetMillis = offsetMillis;
+    }
+
+    // If the day has changed since the rows were built, today's row may be gone or stale.
+    private void ensureCurrentConditionsForToday() {
+        if (mCurrentConditionsDay != WeatherContract.normalizeDate(currentTimeMillis())) {
+            final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                refreshCurrentConditions(db, null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                mQueryCache.invalidate(WeatherContract.CurrentConditionsEntry.TABLE_NAME);
+            }
+        }
+    }
+
+    private static final String[] sTodayColumns = {
+            WeatherContract.CurrentConditionsEntry.COLUMN_DATE,
+            WeatherContract.CurrentConditionsEntry.COLUMN_WEATHER_ID,
+            WeatherContract.CurrentConditionsEntry.COLUMN_SHORT_DESC,
+            WeatherContract.CurrentConditionsEntry.COLUMN_MAX_TEMP,
+            WeatherContract.CurrentConditionsEntry.COLUMN_MIN_TEMP
+    };
+
+    private static final String[] sRangeColumns = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+
+    // these indices must match both of the projections above
+    private static final int COL_CALL_DATE = 0;
+    private static final int COL_CALL_WEATHER_ID = 1;
+    private static final int COL_CALL_SHORT_DESC = 2;
+    private static final int COL_CALL_MAX_TEMP = 3;
+    private static final int COL_CALL_MIN_TEMP = 4;
+
+    private Bundle getToday(String locationSetting) {
+        ensureCurrentConditionsForToday();
+
+        Cursor cursor = mOpenHelper.getReadableDatabase().query(
+                WeatherContract.CurrentConditionsEntry.TABLE_NAME,
+                sTodayColumns,
+                sCurrentConditionsSelection,
+                new String[]{locationSetting},
+                null,
+                null,
+                null
+        );
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            Bundle today = new Bundle(5);
+            today.putLong(WeatherContract.EXTRA_DATE, cursor.getLong(COL_CALL_DATE));
+            today.putInt(WeatherContract.EXTRA_WEATHER_ID, cursor.getInt(COL_CALL_WEATHER_ID));
+            today.putString(WeatherContract.EXTRA_SHORT_DESC, cursor.getString(COL_CALL_SHORT_DESC));
+            today.putDouble(WeatherContract.EXTRA_MAX_TEMP, cursor.getDouble(COL_CALL_MAX_TEMP));
+            today.putDouble(WeatherContract.EXTRA_MIN_TEMP, cursor.getDouble(COL_CALL_MIN_TEMP));
+            return today;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private Bundle getRange(String locationSetting, Bundle extras) {
+        long startDate = currentTimeMillis();
+        int count = 0;
+        if (extras != null) {
+            startDate = extras.getLong(WeatherContract.EXTRA_START_DATE, startDate);
+            count = extras.getInt(WeatherContract.EXTRA_COUNT, 0);
+        }
+        startDate = WeatherContract.normalizeDate(startDate);
+
+        Cursor cursor = sWeatherByLocationSettingQueryBuilder.query(mOpenHelper.getReadableDatabase(),
+                decodeFixedPoint(sRangeColumns, true),
+                sLocationSettingWithStartDateSelection,
+                new String[]{locationSetting, Long.toString(startDate)},
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC",
+                count > 0 ? Integer.toString(count) : null
+        );
+        try {
+            int rows = cursor.getCount();
+            long[] dates = new long[rows];
+            int[] weatherIds = new int[rows];
+            String[] descriptions = new String[rows];
+            double[] highs = new double[rows];
+            double[] lows = new double[rows];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                dates[i] = cursor.getLong(COL_CALL_DATE);
+                weatherIds[i] = cursor.getInt(COL_CALL_WEATHER_ID);
+                descriptions[i] = cursor.getString(COL_CALL_SHORT_DESC);
+                highs[i] = cursor.getDouble(COL_CALL_MAX_TEMP);
+                lows[i] = cursor.getDouble(COL_CALL_MIN_TEMP);
+            }
+
+            Bundle range = new Bundle(5);
+            range.putLongArray(WeatherContract.EXTRA_DATE, dates);
+            range.putIntArray(WeatherContract.EXTRA_WEATHER_ID, weatherIds);
+            range.putStringArray(WeatherContract.EXTRA_SHORT_DESC, descriptions);
+            range.putDoubleArray(WeatherContract.EXTRA_MAX_TEMP, highs);
+            range.putDoubleArray(WeatherContract.EXTRA_MIN_TEMP, lows);
+            return range;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Rebuilds the current_conditions rows from the weather table.  Call this from inside the
+     * transaction that changed the weather or location data, so readers never see the summary
+     * and the forecast disagree.
+     *
+     * @param db The database holding the open transaction
+     * @param locationId The location whose row should be rebuilt, or null to rebuild all of them
+     */
+    private void refreshCurrentConditions(SQLiteDatabase db, Long locationId) {
+        long today = WeatherContract.normalizeDate(currentTimeMillis());
+        if (locationId == null) {
+            db.delete(WeatherContract.CurrentConditionsEntry.TABLE_NAME, null, null);
+            db.execSQL(sRefreshCurrentConditionsSql, new Object[]{today});
+        } else {
+            db.delete(WeatherContract.CurrentConditionsEntry.TABLE_NAME,
+                    WeatherContract.CurrentConditionsEntry._ID + " = ?",
+                    new String[]{Long.toString(locationId)});
+            db.execSQL(sRefreshCurrentConditionsForLocationSql, new Object[]{today, locationId});
+        }
+        mCurrentConditionsDay = today;
+    }
+
     /*
         Students: Here is where you need to create the UriMatcher. This UriMatcher will
         match each URI to the WEATHER, WEATHER_WITH_LOCATION, WEATHER_WITH_LOCATION_AND_DATE,
@@ -125,14 +602,28 @@ public class WeatherProvider extends ContentProvider {
         final String authority = WeatherContract.CONTENT_AUTHORITY;
 
         // For each type of URI you want to add, create a corresponding code.
-        matcher.addURI(authority, WeatherContract.PATH_WEATHER, WEATHER);
-        matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*", WEATHER_WITH_LOCATION);
-        matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*/#", WEATHER_WITH_LOCATION_AND_DATE);
+        addURI(matcher, authority, WeatherContract.PATH_WEATHER, WEATHER);
+        addURI(matcher, authority, WeatherContract.PATH_WEATHER + "/*", WEATHER_WITH_LOCATION);
+        addURI(matcher, authority, WeatherContract.PATH_WEATHER + "/*/#", WEATHER_WITH_LOCATION_AND_DATE);
+
+        addURI(matcher, authority, WeatherContract.PATH_LOCATION, LOCATION);
 
-        matcher.addURI(authority, WeatherContract.PATH_LOCATION, LOCATION);
+        addURI(matcher, authority, WeatherContract.PATH_CURRENT_CONDITIONS + "/*", CURRENT_CONDITIONS);
+
+        addURI(matcher, authority, WeatherContract.PATH_INTRADAY, INTRADAY);
+        addURI(matcher, authority, WeatherContract.PATH_INTRADAY + "/*", INTRADAY_WITH_LOCATION);
+        addURI(matcher, authority, WeatherContract.PATH_INTRADAY + "/*/#", INTRADAY_WITH_LOCATION_AND_DATE);
+
+        addURI(matcher, authority, WeatherContract.PATH_LOCATION_HISTORY, LOCATION_HISTORY);
         return matcher;
     }
 
+    // Also remembers the pattern of every code, for the metrics
+    private static void addURI(UriMatcher matcher, String authority, String path, int code) {
+        matcher.addURI(authority, path, code);
+        sUriTypes.put(code, path);
+    }
+
     /*
         Students: We've coded this for you.  We just create a new WeatherDbHelper for later use
         here.
@@ -140,9 +631,62 @@ public class WeatherProvider extends ContentProvider {
     @Override
     public boolean onCreate() {
         mOpenHelper = new WeatherDbHelper(getContext());
+        Resources resources = getContext().getResources();
+        mMaintenance = new WeatherMaintenance(
+                resources.getInteger(R.integer.weather_retention_days),
+                resources.getInteger(R.integer.intraday_retention_days),
+                resources.getInteger(R.integer.max_location_history),
+                resources.getInteger(R.integer.max_database_size_kb) * 1024L);
+        setCursorTracking(resources.getBoolean(R.bool.track_cursors));
+
+        // onCreate runs on the main thread as the process starts, so leave the work to a
+        // background thread.  A query that comes in first simply waits for the open to finish.
+        if (resources.getBoolean(R.bool.prewarm_database)) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    prewarm();
+                }
+            }, "WeatherProvider-prewarm").start();
+        }
         return true;
     }
 
+    /*
+        Does the work the first query after a cold start would otherwise pay for: opening the
+        file and checking the schema, rebuilding current_conditions if the day has rolled over,
+        and reading the preferred location's forecast pages into the page cache.
+     */
+    void prewarm() {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            ensureCurrentConditionsForToday();
+
+            Cursor cursor = sWeatherByLocationSettingQueryBuilder.query(db,
+                    null,
+                    sLocationSettingSelection,
+                    new String[]{Utility.getPreferredLocation(getContext())},
+                    null,
+                    null,
+                    null
+            );
+            try {
+                while (cursor.moveToNext()) {
+                    // the window is filled as we go, nothing to read
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            // The first real query will run into the same problem and report it
+            Log.w(LOG_TAG, "Unable to prewarm the database", e);
+            return;
+        }
+        Log.d(LOG_TAG, "Database prewarmed in " + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
     /*
         Students: Here's where you'll code the getType function that uses the UriMatcher.  You can
         test this by uncommenting testGetType in TestProvider.
@@ -164,6 +708,14 @@ public class WeatherProvider extends ContentProvider {
                 return WeatherContract.WeatherEntry.CONTENT_TYPE;
             case LOCATION:
                 return WeatherContract.LocationEntry.CONTENT_TYPE;
+            case CURRENT_CONDITIONS:
+                return WeatherContract.CurrentConditionsEntry.CONTENT_ITEM_TYPE;
+            case INTRADAY:
+            case INTRADAY_WITH_LOCATION:
+            case INTRADAY_WITH_LOCATION_AND_DATE:
+                return WeatherContract.IntradayEntry.CONTENT_TYPE;
+            case LOCATION_HISTORY:
+                return WeatherContract.LocationHistoryEntry.CONTENT_TYPE;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -172,32 +724,56 @@ public class WeatherProvider extends ContentProvider {
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
+        final long start = SystemClock.elapsedRealtimeNanos();
+        final int match = sUriMatcher.match(uri);
+
+        // Rebuild the summary first if the day rolled over, a cached cursor would be yesterday's.
+        if (match == CURRENT_CONDITIONS) {
+            ensureCurrentConditionsForToday();
+        }
+
+        // Serve repeated lookups from the cache when we can.
+        final String cacheKey = WeatherQueryCache.buildKey(
+                uri, projection, selection, selectionArgs, sortOrder);
+        Cursor retCursor = mQueryCache.get(cacheKey);
+        if (retCursor != null) {
+            retCursor.setNotificationUri(getContext().getContentResolver(), uri);
+            mMetrics.record(ProviderMetrics.QUERY, match, start, retCursor.getCount());
+            return track(match, retCursor);
+        }
+        final long cacheGeneration = mQueryCache.getGeneration();
+
         // Here's the switch statement that, given a URI, will determine what kind of request it is,
         // and query the database accordingly.
-        Cursor retCursor;
-        switch (sUriMatcher.match(uri)) {
+        String[] tables;
+        switch (match) {
             // "weather/*/*"
             case WEATHER_WITH_LOCATION_AND_DATE:
             {
-                retCursor = getWeatherByLocationSettingAndDate(uri, projection, sortOrder);
+                retCursor = getWeatherByLocationSettingAndDate(uri,
+                        decodeFixedPoint(projection, true), sortOrder);
+                tables = sWeatherWithLocationTables;
                 break;
             }
             // "weather/*"
             case WEATHER_WITH_LOCATION: {
-                retCursor = getWeatherByLocationSetting(uri, projection, sortOrder);
+                retCursor = getWeatherByLocationSetting(uri,
+                        decodeFixedPoint(projection, true), sortOrder);
+                tables = sWeatherWithLocationTables;
                 break;
             }
             // "weather"
             case WEATHER: {
                 retCursor = mOpenHelper.getReadableDatabase().query(
                         WeatherContract.WeatherEntry.TABLE_NAME,
-                        projection,
+                        decodeFixedPoint(projection, false),
                         selection,
                         selectionArgs,
                         null,
                         null,
                         sortOrder
                 );
+                tables = null;
                 break;
             }
             // "location"
@@ -211,14 +787,73 @@ public class WeatherProvider extends ContentProvider {
                         null,
                         sortOrder
                 );
+                tables = null;
+                break;
+            }
+            // "current/*"
+            case CURRENT_CONDITIONS: {
+                retCursor = getCurrentConditions(uri, projection, sortOrder);
+                tables = sCurrentConditionsTables;
+                break;
+            }
+            // "intraday/*/#"
+            case INTRADAY_WITH_LOCATION_AND_DATE: {
+                retCursor = getIntradayByLocationSetting(uri, projection, true);
+                tables = null;
+                break;
+            }
+            // "intraday/*"
+            case INTRADAY_WITH_LOCATION: {
+                retCursor = getIntradayByLocationSetting(uri, projection, false);
+                tables = null;
+                break;
+            }
+            // "location_history"
+            case LOCATION_HISTORY: {
+                retCursor = getLocationSuggestions(uri, projection);
+                tables = sLocationHistoryTables;
                 break;
             }
 
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
+        // Intraday cursors are not cached: they already hold the blobs in memory, and copying
+        // them would decode every slot up front.  Neither are the raw "weather" and "location"
+        // tables: they take arbitrary selections, aren't the repeated lookups the cache is
+        // for, and are what tests and tools read after writing to the database directly.
+        if (tables != null) {
+            retCursor = mQueryCache.put(cacheKey, tables, cacheGeneration, retCursor);
+        }
         retCursor.setNotificationUri(getContext().getContentResolver(), uri);
-        return retCursor;
+        // A cached cursor is already counted.  On the uncached paths getCount() runs the query
+        // and fills the window here rather than on the caller's first read, which every
+        // caller does straight away, and CursorTracker needs the filled window to estimate.
+        mMetrics.record(ProviderMetrics.QUERY, match, start, retCursor.getCount());
+        return track(match, retCursor);
+    }
+
+    private Cursor track(int match, Cursor cursor) {
+        CursorTracker tracker = mCursorTracker;
+        if (null == tracker) {
+            return cursor;
+        }
+        return tracker.track(sUriTypes.get(match), cursor);
+    }
+
+    // For tests
+    WeatherQueryCache getQueryCache() {
+        return mQueryCache;
+    }
+
+    /**
+     * Turns cursor tracking on or off, always off in release builds.  Turning it on starts
+     * from empty books.  Benchmarks turn it off, so they time what a release build does.
+     */
+    void setCursorTracking(boolean track) {
+        mCursorTracker = BuildConfig.DEBUG && track ? new CursorTracker(
+                getContext().getResources().getInteger(R.integer.cursor_budget_kb) * 1024L)
+                : null;
     }
 
     /*
@@ -226,6 +861,7 @@ public class WeatherProvider extends ContentProvider {
      */
     @Override
     public Uri insert(Uri uri, ContentValues values) {
+        final long start = SystemClock.elapsedRealtimeNanos();
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
         Uri returnUri;
@@ -233,7 +869,19 @@ public class WeatherProvider extends ContentProvider {
         switch (match) {
             case WEATHER: {
                 normalizeDate(values);
-                long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
+                values = encodeFixedPoint(values);
+                long _id;
+                db.beginTransaction();
+                try {
+                    _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
+                    refreshCurrentConditions(db,
+                            values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY));
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                    mQueryCache.invalidate(WeatherContract.WeatherEntry.TABLE_NAME);
+                    mQueryCache.invalidate(WeatherContract.CurrentConditionsEntry.TABLE_NAME);
+                }
                 if ( _id > 0 )
                     returnUri = WeatherContract.WeatherEntry.buildWeatherUri(_id);
                 else
@@ -241,46 +889,104 @@ public class WeatherProvider extends ContentProvider {
                 break;
             }
             case LOCATION: {
-                long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
+                // A new location has just resolved, remember it for the suggestions
+                ContentValues historyValues = new ContentValues(3);
+                historyValues.put(WeatherContract.LocationHistoryEntry.COLUMN_LOCATION_SETTING,
+                        values.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING));
+                historyValues.put(WeatherContract.LocationHistoryEntry.COLUMN_CITY_NAME,
+                        values.getAsString(WeatherContract.LocationEntry.COLUMN_CITY_NAME));
+                historyValues.put(WeatherContract.LocationHistoryEntry.COLUMN_RESOLVED,
+                        System.currentTimeMillis());
+                long _id;
+                db.beginTransaction();
+                try {
+                    _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
+                    if (_id > 0) {
+                        db.insert(WeatherContract.LocationHistoryEntry.TABLE_NAME, null,
+                                historyValues);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                    mQueryCache.invalidate(WeatherContract.LocationEntry.TABLE_NAME);
+                    mQueryCache.invalidate(WeatherContract.LocationHistoryEntry.TABLE_NAME);
+                }
                 if ( _id > 0 )
                     returnUri = WeatherContract.LocationEntry.buildLocationUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
                 break;
             }
+            case INTRADAY: {
+                normalizeDate(values);
+                long _id = db.insert(WeatherContract.IntradayEntry.TABLE_NAME, null, values);
+                mQueryCache.invalidate(WeatherContract.IntradayEntry.TABLE_NAME);
+                if ( _id > 0 )
+                    returnUri = ContentUris.withAppendedId(uri, _id);
+                else
+                    throw new android.database.SQLException("Failed to insert row into " + uri);
+                break;
+            }
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
+        mMetrics.record(ProviderMetrics.INSERT, match, start, 1);
         return returnUri;
     }
 
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
+        final long start = SystemClock.elapsedRealtimeNanos();
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
+        final String table;
         int rowsDeleted;
         // this makes delete all rows return the number of rows deleted
         if ( null == selection ) selection = "1";
         switch (match) {
             case WEATHER:
-                rowsDeleted = db.delete(
-                        WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
+                table = WeatherContract.WeatherEntry.TABLE_NAME;
                 break;
             case LOCATION:
-                rowsDeleted = db.delete(
-                        WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
+                table = WeatherContract.LocationEntry.TABLE_NAME;
+                break;
+            case INTRADAY:
+                table = WeatherContract.IntradayEntry.TABLE_NAME;
+                break;
+            case LOCATION_HISTORY:
+                table = WeatherContract.LocationHistoryEntry.TABLE_NAME;
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
+        db.beginTransaction();
+        try {
+            rowsDeleted = db.delete(table, selection, selectionArgs);
+            if (rowsDeleted != 0 && isCurrentConditionsSource(match)) {
+                refreshCurrentConditions(db, null);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mQueryCache.invalidate(table);
+            if (isCurrentConditionsSource(match)) {
+                mQueryCache.invalidate(WeatherContract.CurrentConditionsEntry.TABLE_NAME);
+            }
+        }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
+        mMetrics.record(ProviderMetrics.DELETE, match, start, rowsDeleted);
         return rowsDeleted;
     }
 
+    // Whether current_conditions is built from the table the URI writes to
+    private static boolean isCurrentConditionsSource(int match) {
+        return match == WEATHER || match == LOCATION;
+    }
+
     private void normalizeDate(ContentValues values) {
         // normalize the date value
         if (values.containsKey(WeatherContract.WeatherEntry.COLUMN_DATE)) {
@@ -292,63 +998,271 @@ public class WeatherProvider extends ContentProvider {
     @Override
     public int update(
             Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        final long start = SystemClock.elapsedRealtimeNanos();
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
+        final String table;
         int rowsUpdated;
 
         switch (match) {
             case WEATHER:
                 normalizeDate(values);
-                rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values, selection,
-                        selectionArgs);
+                values = encodeFixedPoint(values);
+                table = WeatherContract.WeatherEntry.TABLE_NAME;
                 break;
             case LOCATION:
-                rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
-                        selectionArgs);
+                table = WeatherContract.LocationEntry.TABLE_NAME;
+                break;
+            case INTRADAY:
+                table = WeatherContract.IntradayEntry.TABLE_NAME;
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
+        db.beginTransaction();
+        try {
+            rowsUpdated = db.update(table, values, selection, selectionArgs);
+            if (rowsUpdated != 0 && isCurrentConditionsSource(match)) {
+                refreshCurrentConditions(db, null);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mQueryCache.invalidate(table);
+            if (isCurrentConditionsSource(match)) {
+                mQueryCache.invalidate(WeatherContract.CurrentConditionsEntry.TABLE_NAME);
+            }
+        }
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
+        mMetrics.record(ProviderMetrics.UPDATE, match, start, rowsUpdated);
         return rowsUpdated;
     }
 
+    private void notifyChange(Uri uri) {
+        HashSet<Uri> batchChanges = mBatchChanges.get();
+        if (null != batchChanges) {
+            batchChanges.add(uri);
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    /*
+        Applies the whole batch in one transaction, the transactions of the single operations
+        nest inside it.  Before each operation built withYieldAllowed(true) the transaction
+        yields if readers are waiting for the database: what came before commits, they get to
+        run, and the batch carries on in a new transaction.  A batch that fails rolls back to the
+        last yield point, so callers should only allow yields between independent groups, e.g.
+        at the first operation of each location.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        final HashSet<Uri> changes = new HashSet<Uri>();
+        final ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+        mBatchChanges.set(changes);
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < results.length; i++) {
+                ContentProviderOperation operation = operations.get(i);
+                if (i > 0 && operation.isYieldAllowed()
+                        && db.yieldIfContendedSafely(BATCH_YIELD_SLEEP_MILLIS)) {
+                    // What the batch wrote so far has committed, readers may have cached the
+                    // state before it after the operations had already invalidated their tables
+                    mQueryCache.clear();
+                }
+                results[i] = operation.apply(this, results, i);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatchChanges.remove();
+            mQueryCache.clear();
+            // Even a failed batch may have committed up to its last yield
+            for (Uri uri : changes) {
+                getContext().getContentResolver().notifyChange(uri, null);
+            }
+        }
+        return results;
+    }
+
     @Override
     public int bulkInsert(Uri uri, ContentValues[] values) {
+        final long start = SystemClock.elapsedRealtimeNanos();
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case WEATHER:
                 db.beginTransaction();
                 int returnCount = 0;
+                HashSet<Long> locationIds = new HashSet<Long>();
                 try {
                     for (ContentValues value : values) {
                         normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null,
+                                encodeFixedPoint(value));
                         if (_id != -1) {
                             returnCount++;
+                            locationIds.add(value.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY));
                         }
                     }
+                    for (Long locationId : locationIds) {
+                        refreshCurrentConditions(db, locationId);
+                    }
                     db.setTransactionSuccessful();
                 } finally {
                     db.endTransaction();
+                    mQueryCache.invalidate(WeatherContract.WeatherEntry.TABLE_NAME);
+                    mQueryCache.invalidate(WeatherContract.CurrentConditionsEntry.TABLE_NAME);
                 }
-                getContext().getContentResolver().notifyChange(uri, null);
+                notifyChange(uri);
+                mMetrics.record(ProviderMetrics.BULK_INSERT, match, start, returnCount);
                 return returnCount;
+            case INTRADAY:
+                // Nothing is derived from intraday, a plain transaction is enough
+                db.beginTransaction();
+                int intradayCount = 0;
+                try {
+                    for (ContentValues value : values) {
+                        normalizeDate(value);
+                        if (db.insert(WeatherContract.IntradayEntry.TABLE_NAME, null, value) != -1) {
+                            intradayCount++;
+                        }
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                    mQueryCache.invalidate(WeatherContract.IntradayEntry.TABLE_NAME);
+                }
+                notifyChange(uri);
+                mMetrics.record(ProviderMetrics.BULK_INSERT, match, start, intradayCount);
+                return intradayCount;
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    /*
+        Prunes expired weather and orphaned locations, compacts the file and, if it is still over
+        the size budget, drops data until it fits.  Every delete runs in a transaction that also
+        rebuilds current_conditions, the vacuum runs between them.
+     */
+    private Bundle maintain(String preferredLocation) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        long start = SystemClock.elapsedRealtime();
+        long sizeBefore = WeatherMaintenance.getDatabaseSize(db);
+        int rowsDeleted = 0;
+
+        db.beginTransaction();
+        try {
+            long today = WeatherContract.normalizeDate(currentTimeMillis());
+            rowsDeleted += mMaintenance.deleteExpiredWeather(db, today);
+            rowsDeleted += mMaintenance.deleteExpiredIntraday(db, today);
+            rowsDeleted += mMaintenance.deleteOrphanedLocations(db, preferredLocation);
+            rowsDeleted += mMaintenance.trimLocationHistory(db);
+            refreshCurrentConditions(db, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mQueryCache.clear();
+        }
+        mMaintenance.compact(db);
+
+        while (mMaintenance.isOverBudget(db)) {
+            int trimmed;
+            db.beginTransaction();
+            try {
+                trimmed = mMaintenance.trimTowardsBudget(db, preferredLocation);
+                trimmed += mMaintenance.deleteOrphanedLocations(db, preferredLocation);
+                refreshCurrentConditions(db, null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                mQueryCache.clear();
+            }
+            if (trimmed == 0) {
+                Log.w(LOG_TAG, "Database is over its size budget with nothing left to trim");
+                break;
+            }
+            rowsDeleted += trimmed;
+            mMaintenance.compact(db);
+        }
+
+        if (rowsDeleted != 0) {
+            getContext().getContentResolver().notifyChange(WeatherContract.BASE_CONTENT_URI, null);
+        }
+
+        Bundle metrics = new Bundle(4);
+        metrics.putLong(WeatherContract.EXTRA_MAINTENANCE_SIZE_BEFORE, sizeBefore);
+        metrics.putLong(WeatherContract.EXTRA_MAINTENANCE_SIZE_AFTER,
+                WeatherMaintenance.getDatabaseSize(db));
+        metrics.putInt(WeatherContract.EXTRA_MAINTENANCE_ROWS_DELETED, rowsDeleted);
+        metrics.putLong(WeatherContract.EXTRA_MAINTENANCE_DURATION,
+                SystemClock.elapsedRealtime() - start);
+        mLastMaintenance = metrics;
+        return metrics;
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (WeatherContract.METHOD_GET_TODAY.equals(method)) {
+            return getToday(requireLocationSetting(method, arg));
+        } else if (WeatherContract.METHOD_GET_RANGE.equals(method)) {
+            return getRange(requireLocationSetting(method, arg), extras);
+        } else if (WeatherContract.METHOD_MAINTAIN.equals(method)) {
+            return maintain(arg);
+        } else if (WeatherContract.METHOD_METRICS.equals(method)) {
+            Bundle metrics = mMetrics.toBundle();
+            if (WeatherContract.METRICS_RESET.equals(arg)) {
+                mMetrics.reset();
+            }
+            return metrics;
+        } else if (WeatherContract.METHOD_CURSORS.equals(method)) {
+            CursorTracker tracker = mCursorTracker;
+            return null == tracker ? null : tracker.toBundle();
+        }
+        return super.call(method, arg, extras);
+    }
+
+    // Otherwise a null location setting only fails when SQLite binds it, naming just its index
+    private static String requireLocationSetting(String method, String arg) {
+        if (null == arg) {
+            throw new IllegalArgumentException(method + " needs the location setting as its arg");
+        }
+        return arg;
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
     @Override
     @TargetApi(11)
     public void shutdown() {
+        mQueryCache.clear();
         mOpenHelper.close();
         super.shutdown();
     }
+
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        mQueryCache.dump(writer);
+        mMetrics.dump(writer);
+        CursorTracker tracker = mCursorTracker;
+        if (null != tracker) {
+            tracker.dump(writer);
+        }
+        Bundle maintenance = mLastMaintenance;
+        if (null != maintenance) {
+            writer.println("Last maintenance: size="
+                    + maintenance.getLong(WeatherContract.EXTRA_MAINTENANCE_SIZE_BEFORE)
+                    + "->" + maintenance.getLong(WeatherContract.EXTRA_MAINTENANCE_SIZE_AFTER)
+                    + " rowsDeleted="
+                    + maintenance.getInt(WeatherContract.EXTRA_MAINTENANCE_ROWS_DELETED)
+                    + " duration="
+                    + maintenance.getLong(WeatherContract.EXTRA_MAINTENANCE_DURATION) + "ms");
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small, bounded, in-process cache of {@link WeatherProvider} query results.
+ *
+ * Results are copied out of the SQLite cursor once and every hit hands back a fresh
+ * {@link MatrixCursor} over the copied rows, so callers can close and move their cursor
+ * independently.  Each entry remembers which tables it was read from; the provider calls
+ * {@link #invalidate(String)} for every table it writes, which drops only the entries that
+ * could have changed.
+ */
+class WeatherQueryCache {
+
+    // Keep the cache small: it is meant for the handful of repeated "today for the preferred
+    // location" style lookups, not as a copy of the database.
+    static final int DEFAULT_MAX_ENTRIES = 32;
+    static final int MAX_CACHEABLE_ROWS = 64;
+
+    private final int mMaxEntries;
+
+    // Access-ordered, so iteration starts with the least recently used entry.
+    private final LinkedHashMap<String, Entry> mEntries;
+
+    // Bumped on every invalidation.  A result that was read from the database while a write
+    // happened is not stored, since it may already be stale.
+    private long mGeneration;
+
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+    private long mInvalidations;
+
+    private static class Entry {
+        final String[] tables;
+        final String[] columns;
+        final Object[][] rows;
+
+        Entry(String[] tables, String[] columns, Object[][] rows) {
+            this.tables = tables;
+            this.columns = columns;
+            this.rows = rows;
+        }
+    }
+
+    WeatherQueryCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    WeatherQueryCache(int maxEntries) {
+        mMaxEntries = maxEntries;
+        mEntries = new LinkedHashMap<String, Entry>(maxEntries, 0.75f, true);
+    }
+
+    static String buildKey(Uri uri, String[] projection, String selection,
+                           String[] selectionArgs, String sortOrder) {
+        StringBuilder key = new StringBuilder(128);
+        key.append(uri.toString()).append('\u0000');
+        appendArray(key, projection);
+        key.append('\u0000').append(selection).append('\u0000');
+        appendArray(key, selectionArgs);
+        key.append('\u0000').append(sortOrder);
+        return key.toString();
+    }
+
+    private static void appendArray(StringBuilder key, String[] values) {
+        if (values == null) {
+            key.append("null");
+            return;
+        }
+        for (String value : values) {
+            key.append(value).append('\u0001');
+        }
+    }
+
+    /**
+     * @return a new cursor over the cached rows, or null if nothing is cached for this key.
+     */
+    synchronized Cursor get(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            mMisses++;
+            return null;
+        }
+        mHits++;
+        return toCursor(entry);
+    }
+
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Copies the given cursor into the cache and returns a cursor over the copy.  If the result
+     * is too large to cache, or a write happened since {@code generation} was read, the original
+     * cursor is returned untouched.
+     */
+    Cursor put(String key, String[] tables, long generation, Cursor cursor) {
+        if (cursor == null || cursor.getCount() > MAX_CACHEABLE_ROWS) {
+            return cursor;
+        }
+
+        // Copy outside of the lock, filling the window is the expensive part.
+        Entry entry = copy(tables, cursor);
+        cursor.close();
+
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mEntries.put(key, entry);
+                trimToSize();
+            }
+        }
+        return toCursor(entry);
+    }
+
+    /**
+     * Drops every entry that was read from the given table.
+     */
+    synchronized void invalidate(String table) {
+        mGeneration++;
+        Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while (it.hasNext()) {
+            for (String entryTable : it.next().getValue().tables) {
+                if (entryTable.equals(table)) {
+                    it.remove();
+                    mInvalidations++;
+                    break;
+                }
+            }
+        }
+    }
+
+    synchronized void clear() {
+        mGeneration++;
+        mEntries.clear();
+    }
+
+    synchronized long getHitCount() {
+        return mHits;
+    }
+
+    synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    synchronized long getEvictionCount() {
+        return mEvictions;
+    }
+
+    synchronized long getInvalidationCount() {
+        return mInvalidations;
+    }
+
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    synchronized void dump(PrintWriter writer) {
+        writer.println("Query cache: size=" + mEntries.size() + "/" + mMaxEntries
+                + " hits=" + mHits
+                + " misses=" + mMisses
+                + " evictions=" + mEvictions
+                + " invalidations=" + mInvalidations);
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while (mEntries.size() > mMaxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            mEvictions++;
+        }
+    }
+
+    private static Entry copy(String[] tables, Cursor cursor) {
+        String[] columns = cursor.getColumnNames();
+        Object[][] rows = new Object[cursor.getCount()][];
+        int columnCount = columns.length;
+        cursor.moveToPosition(-1);
+        for (int i = 0; cursor.moveToNext(); i++) {
+            Object[] row = new Object[columnCount];
+            for (int col = 0; col < columnCount; col++) {
+                switch (cursor.getType(col)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        row[col] = cursor.getLong(col);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        row[col] = cursor.getDouble(col);
+                        break;
+                    case Cursor.FIELD_TYPE_STRING:
+                        row[col] = cursor.getString(col);
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        row[col] = cursor.getBlob(col);
+                        break;
+                    default:
+                        row[col] = null;
+                }
+            }
+            rows[i] = row;
+        }
+        return new Entry(tables, columns, rows);
+    }
+
+    private static Cursor toCursor(Entry entry) {
+        MatrixCursor cursor = new MatrixCursor(entry.columns, entry.rows.length);
+        for (Object[] row : entry.rows) {
+            Object[] copy = row.clone();
+            for (int col = 0; col < copy.length; col++) {
+                // Blobs are the only mutable values, hand every caller its own array.
+                if (copy[col] instanceof byte[]) {
+                    copy[col] = ((byte[]) copy[col]).clone();
+                }
+            }
+            cursor.addRow(copy);
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the weather database maintenance (retention, orphaned locations, vacuum and the size
+ * budget) while the device is idle and charging, and records how big the database was and how
+ * long the run took.
+ */
+public class MaintenanceJobService extends JobService {
+    public static final String LOG_TAG = MaintenanceJobService.class.getSimpleName();
+
+    private static final int MAINTENANCE_JOB_ID = 3005;
+
+    private AsyncTask<JobParameters, Void, Bundle> mTask;
+
+    /**
+     * Schedules the periodic maintenance job, unless it is already scheduled.
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == MAINTENANCE_JOB_ID) {
+                return;
+            }
+        }
+
+        long interval = TimeUnit.HOURS.toMillis(
+                context.getResources().getInteger(R.integer.maintenance_interval_hours));
+        JobInfo job = new JobInfo.Builder(MAINTENANCE_JOB_ID,
+                new ComponentName(context, MaintenanceJobService.class))
+                .setPeriodic(interval)
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        final Context context = getApplicationContext();
+        mTask = new AsyncTask<JobParameters, Void, Bundle>() {
+            @Override
+            protected Bundle doInBackground(JobParameters... jobParameters) {
+                return context.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                        WeatherContract.METHOD_MAINTAIN, Utility.getPreferredLocation(context),
+                        null);
+            }
+
+            @Override
+            protected void onPostExecute(Bundle metrics) {
+                if (null != metrics) {
+                    recordMetrics(context, metrics);
+                }
+                jobFinished(params, false);
+            }
+        };
+        mTask.execute(params);
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Each step of the maintenance commits on its own, the next run picks up from there.
+        if (null != mTask) {
+            mTask.cancel(false);
+        }
+        return false;
+    }
+
+    private static void recordMetrics(Context context, Bundle metrics) {
+        long sizeBefore = metrics.getLong(WeatherContract.EXTRA_MAINTENANCE_SIZE_BEFORE);
+        long sizeAfter = metrics.getLong(WeatherContract.EXTRA_MAINTENANCE_SIZE_AFTER);
+        long duration = metrics.getLong(WeatherContract.EXTRA_MAINTENANCE_DURATION);
+        Log.d(LOG_TAG, "Maintenance done in " + duration + "ms, database " + sizeBefore
+                + " -> " + sizeAfter + " bytes, "
+                + metrics.getInt(WeatherContract.EXTRA_MAINTENANCE_ROWS_DELETED)
+                + " rows deleted");
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        prefs.edit()
+                .putLong(context.getString(R.string.pref_last_maintenance), System.currentTimeMillis())
+                .putLong(context.getString(R.string.pref_last_maintenance_size), sizeAfter)
+                .putLong(context.getString(R.string.pref_last_maintenance_duration), duration)
+                .apply();
+    }
+}
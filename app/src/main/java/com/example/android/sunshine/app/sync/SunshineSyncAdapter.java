@@ -27,7 +27,6 @@ import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
-import android.text.format.Time;
 import android.util.Log;
 
 import com.bumptech.glide.Glide;
@@ -35,8 +34,15 @@ import com.example.android.sunshine.app.BuildConfig;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
+import com.example.android.sunshine.app.data.IntradayCodec;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
+import com.example.android.sunshine.shared.JulianDay;
+import com.example.android.sunshine.shared.WearProtocol;
+import com.example.android.sunshine.shared.WeatherPayload;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GoogleApiAvailability;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.wearable.DataApi;
@@ -72,19 +78,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     private static final int WEATHER_NOTIFICATION_ID = 3004;
 
 
-    private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
-    };
-
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
-    private static final int INDEX_SHORT_DESC = 3;
-
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({LOCATION_STATUS_OK, LOCATION_STATUS_SERVER_DOWN, LOCATION_STATUS_SERVER_INVALID,  LOCATION_STATUS_UNKNOWN, LOCATION_STATUS_INVALID})
     public @interface LocationStatus {}
@@ -95,12 +88,12 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int LOCATION_STATUS_UNKNOWN = 3;
     public static final int LOCATION_STATUS_INVALID = 4;
 
-    // Wearable API keys
+    // Wearable API
     private static GoogleApiClient mApiClient;
-    private static final String WEATHER_DATA_PATH = "/weather_data";
-    private static final String HIGH_TEMP_KEY = "highTemp";
-    private static final String LOW_TEMP_KEY = "lowTemp";
-    private static final String WEATHER_ID_KEY = "weatherID";
+
+    // OpenWeatherMap's API.  The JVM tests point this at a local server instead.
+    static final String DEFAULT_API_BASE_URL = "http://api.openweathermap.org/data/2.5/";
+    private static volatile String sApiBaseUrl = DEFAULT_API_BASE_URL;
 
     public SunshineSyncAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
@@ -121,6 +114,14 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         String locationLatitude = String.valueOf(Utility.getLocationLatitude(context));
         String locationLongitude = String.valueOf(Utility.getLocationLongitude(context));
 
+        // A name the server has turned down before is not worth another round trip
+        if (!Utility.isLocationLatLonAvailable(context)
+                && Utility.isLocationKnownInvalid(context, locationQuery)) {
+            Log.d(LOG_TAG, "Not syncing known invalid location " + locationQuery);
+            setLocationStatus(context, LOCATION_STATUS_INVALID);
+            return;
+        }
+
         // These two need to be declared outside the try/catch
         // so that they can be closed in the finally block.
         HttpURLConnection urlConnection = null;
@@ -137,8 +138,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
             // Construct the URL for the OpenWeatherMap query
             // Possible parameters are avaiable at OWM's forecast API page, at
             // http://openweathermap.org/API#forecast
-            final String FORECAST_BASE_URL =
-                    "http://api.openweathermap.org/data/2.5/forecast/daily?";
+            final String FORECAST_BASE_URL = sApiBaseUrl + "forecast/daily?";
             final String QUERY_PARAM = "q";
             final String LAT_PARAM = "lat";
             final String LON_PARAM = "lon";
@@ -280,6 +280,9 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                     case HttpURLConnection.HTTP_OK:
                         break;
                     case HttpURLConnection.HTTP_NOT_FOUND:
+                        if (!Utility.isLocationLatLonAvailable(context)) {
+                            Utility.addInvalidLocation(context, locationSetting);
+                        }
                         setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
                         return;
                     default:
@@ -310,14 +313,11 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
             // current day, we're going to take advantage of that to get a nice
             // normalized UTC date for all of our weather.
 
-            Time dayTime = new Time();
-            dayTime.setToNow();
-
             // we start at the day returned by local time. Otherwise this is a mess.
-            int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+            int julianStartDay = JulianDay.fromMillis(System.currentTimeMillis());
 
-            // now we work exclusively in UTC
-            dayTime = new Time();
+            // The days sent on to the watch face
+            WeatherPayload.Builder payload = new WeatherPayload.Builder(Utility.isMetric(context));
 
             for(int i = 0; i < weatherArray.length(); i++) {
                 // These are the values that will be collected.
@@ -336,8 +336,8 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 // Get the JSON object representing the day
                 JSONObject dayForecast = weatherArray.getJSONObject(i);
 
-                // Cheating to convert this to UTC time, which is what we want anyhow
-                dateTime = dayTime.setJulianDay(julianStartDay+i);
+                // The start of the local day, which is how the provider stores dates
+                dateTime = JulianDay.toMillis(julianStartDay+i);
 
                 pressure = dayForecast.getDouble(OWM_PRESSURE);
                 humidity = dayForecast.getInt(OWM_HUMIDITY);
@@ -372,9 +372,11 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
                 cVVector.add(weatherValues);
 
-                if ( i == 0 ) {
-                    updateWatchFace(high, low, weatherId);
-                }
+                payload.addDay(julianStartDay + i, high, low, weatherId);
+            }
+
+            if (payload.getDayCount() > 0) {
+                updateWatchFace(payload.toByteArray());
             }
 
             int inserted = 0;
@@ -383,11 +385,17 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 ContentValues[] cvArray = new ContentValues[cVVector.size()];
                 cVVector.toArray(cvArray);
                 getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
+                // and to the snapshot the widgets and the wearable read first
+                ForecastSnapshot.write(getContext(), locationSetting, cvArray);
 
                 // delete old data so we don't build up an endless history
+                int retentionDays = getContext().getResources()
+                        .getInteger(R.integer.weather_retention_days);
                 getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
                         WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))});
+                        new String[] {Long.toString(JulianDay.toMillis(julianStartDay-1-retentionDays))});
+
+                syncIntraday(locationId);
 
                 updateWidgets();
                 updateMuzei();
@@ -403,16 +411,143 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
-    private void updateWatchFace(double high, double low, int weatherID) {
-        Log.d( LOG_TAG, "Updating WatchFace: High=" + high
-                + " Low=" + low
-                + " WeatherID=" + weatherID );
+    /**
+     * Fetches the 3-hourly forecast for the location we just synced and stores it as one packed
+     * row per day.  The daily forecast is already in place, so a failure here is only logged.
+     */
+    private void syncIntraday(long locationId) {
+        final String INTRADAY_BASE_URL = sApiBaseUrl + "forecast?";
+        final String QUERY_PARAM = "q";
+        final String LAT_PARAM = "lat";
+        final String LON_PARAM = "lon";
+        final String FORMAT_PARAM = "mode";
+        final String UNITS_PARAM = "units";
+        final String APPID_PARAM = "APPID";
+
+        // Each 3-hour slot is an element of the "list" array
+        final String OWM_LIST = "list";
+        final String OWM_TIME = "dt";
+        final String OWM_MAIN = "main";
+        final String OWM_TEMPERATURE = "temp";
+        final String OWM_PRESSURE = "pressure";
+        final String OWM_HUMIDITY = "humidity";
+        final String OWM_WEATHER = "weather";
+        final String OWM_WEATHER_ID = "id";
+        final String OWM_WIND = "wind";
+        final String OWM_WINDSPEED = "speed";
+        final String OWM_WIND_DIRECTION = "deg";
+
+        Context context = getContext();
+        Uri.Builder uriBuilder = Uri.parse(INTRADAY_BASE_URL).buildUpon();
+        if (Utility.isLocationLatLonAvailable(context)) {
+            uriBuilder.appendQueryParameter(LAT_PARAM,
+                    String.valueOf(Utility.getLocationLatitude(context)))
+                    .appendQueryParameter(LON_PARAM,
+                            String.valueOf(Utility.getLocationLongitude(context)));
+        } else {
+            uriBuilder.appendQueryParameter(QUERY_PARAM, Utility.getPreferredLocation(context));
+        }
+        Uri builtUri = uriBuilder.appendQueryParameter(FORMAT_PARAM, "json")
+                .appendQueryParameter(UNITS_PARAM, "metric")
+                .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
+                .build();
+
+        HttpURLConnection urlConnection = null;
+        try {
+            urlConnection = (HttpURLConnection) new URL(builtUri.toString()).openConnection();
+            urlConnection.setRequestMethod("GET");
+            urlConnection.connect();
+
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(urlConnection.getInputStream()));
+            StringBuilder buffer = new StringBuilder();
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    buffer.append(line).append('\n');
+                }
+            } finally {
+                reader.close();
+            }
+
+            JSONArray slotArray = new JSONObject(buffer.toString()).getJSONArray(OWM_LIST);
+
+            // The slots come in time order, so each day's slots are contiguous
+            Vector<ContentValues> cVVector = new Vector<ContentValues>();
+            IntradayCodec.Writer writer = null;
+            for (int i = 0; i < slotArray.length(); i++) {
+                JSONObject slot = slotArray.getJSONObject(i);
+                long time = TimeUnit.SECONDS.toMillis(slot.getLong(OWM_TIME));
+                long day = WeatherContract.normalizeDate(time);
+                if (writer == null || writer.getDayStart() != day) {
+                    addIntradayDay(cVVector, locationId, writer);
+                    writer = new IntradayCodec.Writer(day);
+                }
+
+                JSONObject main = slot.getJSONObject(OWM_MAIN);
+                JSONObject wind = slot.getJSONObject(OWM_WIND);
+                writer.addSlot(time,
+                        main.getDouble(OWM_TEMPERATURE),
+                        slot.getJSONArray(OWM_WEATHER).getJSONObject(0).getInt(OWM_WEATHER_ID),
+                        main.getDouble(OWM_HUMIDITY),
+                        main.getDouble(OWM_PRESSURE),
+                        wind.getDouble(OWM_WINDSPEED),
+                        wind.optDouble(OWM_WIND_DIRECTION, 0));
+            }
+            addIntradayDay(cVVector, locationId, writer);
+
+            if (cVVector.size() > 0) {
+                ContentValues[] cvArray = new ContentValues[cVVector.size()];
+                cVVector.toArray(cvArray);
+                context.getContentResolver().bulkInsert(
+                        WeatherContract.IntradayEntry.CONTENT_URI, cvArray);
+
+                // Past days beyond the retention are of no use
+                int retentionDays = context.getResources()
+                        .getInteger(R.integer.intraday_retention_days);
+                context.getContentResolver().delete(WeatherContract.IntradayEntry.CONTENT_URI,
+                        WeatherContract.IntradayEntry.COLUMN_DATE + " < ?",
+                        new String[]{Long.toString(JulianDay.toMillis(
+                                JulianDay.fromMillis(System.currentTimeMillis())
+                                        - retentionDays))});
+            }
+            Log.d(LOG_TAG, "Intraday sync complete. " + cVVector.size() + " days inserted");
+        } catch (IOException | JSONException e) {
+            Log.e(LOG_TAG, "Intraday sync failed", e);
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    private static void addIntradayDay(Vector<ContentValues> cVVector, long locationId,
+                                       IntradayCodec.Writer writer) {
+        if (writer == null || writer.getSlotCount() == 0) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.IntradayEntry.COLUMN_LOC_KEY, locationId);
+        values.put(WeatherContract.IntradayEntry.COLUMN_DATE, writer.getDayStart());
+        values.put(WeatherContract.IntradayEntry.COLUMN_SLOTS, writer.toByteArray());
+        cVVector.add(values);
+    }
+
+    private void updateWatchFace(byte[] payload) {
+        Log.d( LOG_TAG, "Updating WatchFace: " + payload.length + " bytes" );
 
         // Return if GoogleApiClient isn't initialized.
         if (mApiClient == null){
             return;
         }
 
+        // Without Play services there is no watch to send to, and blockingConnect would only
+        // wait out its timeout
+        if (GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(getContext())
+                != ConnectionResult.SUCCESS) {
+            return;
+        }
+
         // Connect to GoogleAPIClient, so long as it isn't already connected or trying
         // to connect.
         if (!mApiClient.isConnected() || !mApiClient.isConnecting()) {
@@ -420,10 +555,9 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         }
 
         // Create DataMap
-        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WEATHER_DATA_PATH);
-        putDataMapRequest.getDataMap().putString( HIGH_TEMP_KEY, Utility.formatTemperature( getContext(),high ));
-        putDataMapRequest.getDataMap().putString( LOW_TEMP_KEY, Utility.formatTemperature( getContext(), low ) );
-        putDataMapRequest.getDataMap().putInt( WEATHER_ID_KEY, weatherID );
+        PutDataMapRequest putDataMapRequest =
+                PutDataMapRequest.create(WearProtocol.WEATHER_DATA_PATH);
+        putDataMapRequest.getDataMap().putByteArray(WearProtocol.PAYLOAD_KEY, payload);
 
         PutDataRequest request = putDataMapRequest.asPutDataRequest().setUrgent();
 
@@ -475,16 +609,14 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 // Last sync was more than 1 day ago, let's send a notification with the weather.
                 String locationQuery = Utility.getPreferredLocation(context);
 
-                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationQuery, System.currentTimeMillis());
+                // The snapshot we just wrote, or our contentProvider
+                Bundle today = ForecastSnapshot.getToday(context, locationQuery);
 
-                // we'll query our contentProvider, as always
-                Cursor cursor = context.getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
-
-                if (cursor.moveToFirst()) {
-                    int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-                    double high = cursor.getDouble(INDEX_MAX_TEMP);
-                    double low = cursor.getDouble(INDEX_MIN_TEMP);
-                    String desc = cursor.getString(INDEX_SHORT_DESC);
+                if (today != null) {
+                    int weatherId = today.getInt(WeatherContract.EXTRA_WEATHER_ID);
+                    double high = today.getDouble(WeatherContract.EXTRA_MAX_TEMP);
+                    double low = today.getDouble(WeatherContract.EXTRA_MIN_TEMP);
+                    String desc = today.getString(WeatherContract.EXTRA_SHORT_DESC);
 
                     int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
                     Resources resources = context.getResources();
@@ -560,7 +692,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                     editor.putLong(lastNotificationKey, System.currentTimeMillis());
                     editor.commit();
                 }
-                cursor.close();
             }
         }
     }
@@ -585,7 +716,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 new String[]{locationSetting},
                 null);
 
-        if (locationCursor.moveToFirst()) {
+        if (null != locationCursor && locationCursor.moveToFirst()) {
             int locationIdIndex = locationCursor.getColumnIndex(WeatherContract.LocationEntry._ID);
             locationId = locationCursor.getLong(locationIdIndex);
         } else {
@@ -610,11 +741,22 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
             locationId = ContentUris.parseId(insertedUri);
         }
 
-        locationCursor.close();
+        if (null != locationCursor) {
+            locationCursor.close();
+        }
         // Wait, that worked?  Yes!
         return locationId;
     }
 
+    /**
+     * Points the forecast requests somewhere other than OpenWeatherMap, for tests.
+     *
+     * @param baseUrl The base of the API, ending in a slash, e.g. {@link #DEFAULT_API_BASE_URL}
+     */
+    static void setApiBaseUrl(String baseUrl) {
+        sApiBaseUrl = baseUrl;
+    }
+
     /**
      * Helper method to schedule the sync adapter periodic execution
      */
@@ -704,6 +846,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
     public static void initializeSyncAdapter(Context context) {
         getSyncAccount(context);
+        MaintenanceJobService.schedule(context);
     }
 
     /**
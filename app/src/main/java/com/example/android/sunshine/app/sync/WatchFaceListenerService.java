@@ -1,15 +1,17 @@
 package com.example.android.sunshine.app.sync;
 
 import android.content.Context;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
+import com.example.android.sunshine.shared.JulianDay;
 import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.shared.WearProtocol;
+import com.example.android.sunshine.shared.WeatherPayload;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
@@ -34,25 +36,7 @@ public class WatchFaceListenerService extends WearableListenerService implements
 
     public final String LOG_TAG = WatchFaceListenerService.class.getSimpleName();
 
-    private static final String NO_WEATHER = "/no_data";
-    private static final String DATA_REQUEST = "dataRequest";
-
-    private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-    };
-
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
-
     private GoogleApiClient mGoogleApiClient;
-    private static final String WEATHER_DATA_PATH = "/weather_data";
-    private static final String HIGH_TEMP_KEY = "highTemp";
-    private static final String LOW_TEMP_KEY = "lowTemp";
-    private static final String WEATHER_ID_KEY = "weatherID";
 
     @Override
     public void onCreate () {
@@ -87,10 +71,10 @@ public class WatchFaceListenerService extends WearableListenerService implements
             if (event.getType() == DataEvent.TYPE_CHANGED) {
                 DataMap map = DataMapItem.fromDataItem( event.getDataItem() )
                                          .getDataMap();
-                if (event.getDataItem().getUri().getPath().equals( NO_WEATHER )) {
+                if (event.getDataItem().getUri().getPath().equals( WearProtocol.NO_WEATHER_PATH )) {
 
-                    if(map.containsKey( DATA_REQUEST )) {
-                        requestData = map.getBoolean( DATA_REQUEST );
+                    if(map.containsKey( WearProtocol.DATA_REQUEST_KEY )) {
+                        requestData = map.getBoolean( WearProtocol.DATA_REQUEST_KEY );
                     }
                 }
             }
@@ -99,24 +83,41 @@ public class WatchFaceListenerService extends WearableListenerService implements
         if(requestData) {
             Context context = getApplicationContext();
             String locationQuery = Utility.getPreferredLocation( context );
-            Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
-                    locationQuery,
-                    System.currentTimeMillis() );
-            Cursor cursor = context.getContentResolver().query( weatherUri,
-                                                                NOTIFY_WEATHER_PROJECTION,
-                                                                null,
-                                                                null,
-                                                                null );
-
-            if (cursor.moveToFirst()) {
-                int    weatherId = cursor.getInt( INDEX_WEATHER_ID );
-                double high      = cursor.getDouble( INDEX_MAX_TEMP );
-                double low       = cursor.getDouble( INDEX_MIN_TEMP );
-
-                updateWatchFace( high, low, weatherId );
+            WeatherPayload.Builder payload = buildPayload( context, locationQuery );
+
+            if (payload.getDayCount() > 0) {
+                updateWatchFace( payload.toByteArray() );
+            }
+        }
+    }
+
+    /**
+     * The days from today on, from the snapshot when it has them, otherwise just today from
+     * the provider.
+     * */
+    private static WeatherPayload.Builder buildPayload(Context context, String locationQuery) {
+        WeatherPayload.Builder payload = new WeatherPayload.Builder( Utility.isMetric( context ) );
+
+        ForecastSnapshot snapshot = ForecastSnapshot.read( context, locationQuery );
+        int first = snapshot == null ? -1 : snapshot.findDay( System.currentTimeMillis() );
+        if (first >= 0) {
+            for (int day = first; day < snapshot.getDayCount(); day++) {
+                payload.addDay( JulianDay.fromMillis( snapshot.getDate( day ) ),
+                                snapshot.getMaxTemp( day ),
+                                snapshot.getMinTemp( day ),
+                                snapshot.getWeatherId( day ) );
             }
-            cursor.close();
+            return payload;
+        }
+
+        Bundle today = ForecastSnapshot.getToday( context, locationQuery );
+        if (today != null) {
+            payload.addDay( JulianDay.fromMillis( today.getLong( WeatherContract.EXTRA_DATE ) ),
+                            today.getDouble( WeatherContract.EXTRA_MAX_TEMP ),
+                            today.getDouble( WeatherContract.EXTRA_MIN_TEMP ),
+                            today.getInt( WeatherContract.EXTRA_WEATHER_ID ) );
         }
+        return payload;
     }
 
     @Override
@@ -136,10 +137,8 @@ public class WatchFaceListenerService extends WearableListenerService implements
     /**
      * Sends retrieved data to watchface
      * */
-    private void updateWatchFace(double high, double low, int weatherID) {
-        Log.d( LOG_TAG, "Updating WatchFace: High=" + high
-                + " Low=" + low
-                + " WeatherID=" + weatherID );
+    private void updateWatchFace(byte[] payload) {
+        Log.d( LOG_TAG, "Updating WatchFace: " + payload.length + " bytes" );
 
         // Return if GoogleApiClient isn't initialized.
         if (mGoogleApiClient == null){
@@ -153,12 +152,9 @@ public class WatchFaceListenerService extends WearableListenerService implements
         }
 
         // Create DataMap
-        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create( WEATHER_DATA_PATH);
-        putDataMapRequest.getDataMap().putString( HIGH_TEMP_KEY, Utility
-                .formatTemperature( getApplicationContext(),high ));
-        putDataMapRequest.getDataMap().putString( LOW_TEMP_KEY, Utility
-                .formatTemperature( getApplicationContext(), low ) );
-        putDataMapRequest.getDataMap().putInt( WEATHER_ID_KEY, weatherID );
+        PutDataMapRequest putDataMapRequest =
+                PutDataMapRequest.create( WearProtocol.WEATHER_DATA_PATH );
+        putDataMapRequest.getDataMap().putByteArray( WearProtocol.PAYLOAD_KEY, payload );
 
         PutDataRequest request = putDataMapRequest.asPutDataRequest().setUrgent();
 
@@ -15,8 +15,10 @@ import android.widget.RemoteViewsService;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.target.Target;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.SettingsSnapshot;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.shared.WeatherFormatter;
 
 import java.util.concurrent.ExecutionException;
 
@@ -46,6 +48,11 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
     public RemoteViewsFactory onGetViewFactory(Intent intent) {
         return new RemoteViewsFactory() {
             private Cursor data = null;
+            // The rows' temperatures, formatted all at once with the formatter they were
+            // formatted with
+            private String[] highs = new String[0];
+            private String[] lows = new String[0];
+            private WeatherFormatter formattedWith = null;
 
             @Override
             public void onCreate() {
@@ -71,6 +78,25 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                         null,
                         WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
                 Binder.restoreCallingIdentity(identityToken);
+                formatTemperatures();
+            }
+
+            private void formatTemperatures() {
+                int count = data == null ? 0 : data.getCount();
+                double[] maxTemps = new double[count];
+                double[] minTemps = new double[count];
+                for (int i = 0; i < count && data.moveToPosition(i); i++) {
+                    maxTemps[i] = data.getDouble(INDEX_WEATHER_MAX_TEMP);
+                    minTemps[i] = data.getDouble(INDEX_WEATHER_MIN_TEMP);
+                }
+                formattedWith = getFormatter();
+                highs = formattedWith.formatTemperatures(maxTemps, count, new String[count]);
+                lows = formattedWith.formatTemperatures(minTemps, count, new String[count]);
+            }
+
+            private WeatherFormatter getFormatter() {
+                return Utility.getFormatter(DetailWidgetRemoteViewsService.this,
+                        SettingsSnapshot.get(DetailWidgetRemoteViewsService.this));
             }
 
             @Override
@@ -89,7 +115,14 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
             @Override
             public RemoteViews getViewAt(int position) {
                 if (position == AdapterView.INVALID_POSITION ||
-                        data == null || !data.moveToPosition(position)) {
+                        data == null || position >= highs.length) {
+                    return null;
+                }
+                // The units or locale changed since, the formatter is kept until either does
+                if (getFormatter() != formattedWith) {
+                    formatTemperatures();
+                }
+                if (!data.moveToPosition(position)) {
                     return null;
                 }
                 RemoteViews views = new RemoteViews(getPackageName(),
@@ -114,12 +147,8 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                 long dateInMillis = data.getLong(INDEX_WEATHER_DATE);
                 String formattedDate = Utility.getFriendlyDayString(
                         DetailWidgetRemoteViewsService.this, dateInMillis, false);
-                double maxTemp = data.getDouble(INDEX_WEATHER_MAX_TEMP);
-                double minTemp = data.getDouble(INDEX_WEATHER_MIN_TEMP);
-                String formattedMaxTemperature =
-                        Utility.formatTemperature(DetailWidgetRemoteViewsService.this, maxTemp);
-                String formattedMinTemperature =
-                        Utility.formatTemperature(DetailWidgetRemoteViewsService.this, minTemp);
+                String formattedMaxTemperature = highs[position];
+                String formattedMinTemperature = lows[position];
                 if (weatherArtImage != null) {
                     views.setImageViewBitmap(R.id.widget_icon, weatherArtImage);
                 } else {
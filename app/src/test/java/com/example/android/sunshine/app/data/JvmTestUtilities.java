@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.net.Uri;
+
+import com.example.android.sunshine.shared.JulianDay;
+import com.example.android.sunshine.testing.SyntheticWeather;
+
+import org.robolectric.shadows.ShadowContentResolver;
+
+/*
+    Helpers for the JVM tests, which can't share TestUtilities with the instrumentation tests.
+    Timings are taken with System.nanoTime(), as Robolectric's SystemClock doesn't move on its
+    own.
+ */
+public class JvmTestUtilities {
+
+    public static final String TEST_LOCATION = "99705";
+
+    /**
+     * @return how many times the production data size the scale tests should run at, set with
+     * ./gradlew :app:testDebugUnitTest -Pscale=100
+     */
+    public static int getScale() {
+        return Integer.parseInt(System.getProperty("sunshine.scale", "1"));
+    }
+
+    /**
+     * Creates a WeatherProvider and makes it the one the test's ContentResolver talks to.
+     */
+    public static WeatherProvider registerProvider(Context context) {
+        ProviderInfo info = new ProviderInfo();
+        info.authority = WeatherContract.CONTENT_AUTHORITY;
+        WeatherProvider provider = new WeatherProvider();
+        // Calls onCreate
+        provider.attachInfo(context, info);
+        ShadowContentResolver.registerProvider(WeatherContract.CONTENT_AUTHORITY, provider);
+        return provider;
+    }
+
+    public static long insertLocation(Context context, String locationSetting) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+        values.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, "North Pole");
+        values.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, 64.7488);
+        values.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, -147.353);
+        Uri uri = context.getContentResolver().insert(
+                WeatherContract.LocationEntry.CONTENT_URI, values);
+        return ContentUris.parseId(uri);
+    }
+
+    /**
+     * @return a row per day from the given Julian day on, dated as the sync adapter dates them
+     */
+    public static ContentValues[] createForecast(long locationRowId, int firstJulianDay,
+                                                 int days) {
+        ContentValues[] forecast = new ContentValues[days];
+        for (int i = 0; i < days; i++) {
+            ContentValues values = new ContentValues();
+            values.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationRowId);
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    JulianDay.toMillis(firstJulianDay + i));
+            values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 1.1 * i);
+            values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 40 + i);
+            values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1010.5 + i);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 20.5 + i);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, 10.5 - i);
+            values.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, "Clear");
+            values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 5.5);
+            values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 800);
+            forecast[i] = values;
+        }
+        return forecast;
+    }
+
+    public static ContentValues createLocationValues(SyntheticWeather.Location location) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, location.getSetting());
+        values.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, location.getCityName());
+        values.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, location.getLatitude());
+        values.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, location.getLongitude());
+        return values;
+    }
+
+    /**
+     * @return the generated days as the sync adapter would insert them
+     */
+    public static ContentValues[] createWeatherValues(long locationRowId,
+                                                      SyntheticWeather.Day[] days) {
+        ContentValues[] forecast = new ContentValues[days.length];
+        for (int i = 0; i < days.length; i++) {
+            SyntheticWeather.Day day = days[i];
+            ContentValues values = new ContentValues();
+            values.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationRowId);
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    JulianDay.toMillis(day.getJulianDay()));
+            values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, day.getDegrees());
+            values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, day.getHumidity());
+            values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, day.getPressure());
+            values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, day.getHigh());
+            values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, day.getLow());
+            values.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, day.getDescription());
+            values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, day.getWindSpeed());
+            values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, day.getWeatherId());
+            forecast[i] = values;
+        }
+        return forecast;
+    }
+
+    /**
+     * @return the generated slots packed into one intraday row, every 3 hours from the start of
+     * the local day
+     */
+    public static ContentValues createIntradayValues(long locationRowId, int julianDay,
+                                                     SyntheticWeather.Slot[] slots) {
+        long dayStart = JulianDay.toMillis(julianDay);
+        IntradayCodec.Writer writer = new IntradayCodec.Writer(dayStart);
+        for (int i = 0; i < slots.length; i++) {
+            SyntheticWeather.Slot slot = slots[i];
+            writer.addSlot(dayStart + i * SyntheticWeather.SECONDS_PER_SLOT * 1000L,
+                    slot.getTemperature(), slot.getWeatherId(), slot.getHumidity(),
+                    slot.getPressure(), slot.getWindSpeed(), slot.getDegrees());
+        }
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.IntradayEntry.COLUMN_LOC_KEY, locationRowId);
+        values.put(WeatherContract.IntradayEntry.COLUMN_DATE, dayStart);
+        values.put(WeatherContract.IntradayEntry.COLUMN_SLOTS, writer.toByteArray());
+        return values;
+    }
+
+    public static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+}
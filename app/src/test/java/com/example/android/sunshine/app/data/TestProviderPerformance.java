@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.SettingsSnapshot;
+import com.example.android.sunshine.shared.JulianDay;
+import com.example.android.sunshine.testing.PerfBudgets;
+import com.example.android.sunshine.testing.SyntheticWeather;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+    WeatherDbHelper and WeatherProvider on the JVM, against Robolectric's SQLite.  Besides
+    checking the results, each test fails if its work takes longer than its budget in
+    perf-budgets.properties, see PerfBudgets.  The budgets leave room for a slow CI machine,
+    they are there to catch a path getting many times slower, not a few percent.  The data
+    comes from SyntheticWeather, and can be made many times our production size with -Pscale.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class TestProviderPerformance {
+
+    // A forecast for each of this many locations times the scale, a bulkInsert per location.
+    // The insert budgets grow with the scale.
+    static final int LOCATIONS = 30;
+    static final int DAYS = 14;
+    static final int INTRADAY_DAYS = 5;
+    // The forecast list's query, this many times whatever the scale
+    static final int QUERIES = 200;
+
+    private Context mContext;
+    private ContentResolver mResolver;
+    private int mToday;
+    private int mScale;
+    private final SyntheticWeather mWeather = new SyntheticWeather();
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        SettingsSnapshot.reset();
+        mResolver = mContext.getContentResolver();
+        JvmTestUtilities.registerProvider(mContext);
+        mToday = JulianDay.fromMillis(System.currentTimeMillis());
+        mScale = JvmTestUtilities.getScale();
+    }
+
+    @After
+    public void tearDown() {
+        mResolver.delete(WeatherContract.IntradayEntry.CONTENT_URI, null, null);
+        mResolver.delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        mResolver.delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    @Test
+    public void testCreateDb() {
+        // In memory, as the provider may be opening its own file in the background
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+
+        long start = System.nanoTime();
+        helper.onConfigure(db);
+        helper.onCreate(db);
+        long elapsed = JvmTestUtilities.elapsedMillis(start);
+
+        HashSet<String> tables = new HashSet<String>();
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type='table'", null);
+        try {
+            while (cursor.moveToNext()) {
+                tables.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        db.close();
+
+        assertTrue("Error: the schema is missing tables, got " + tables, tables.containsAll(
+                Arrays.asList(WeatherContract.LocationEntry.TABLE_NAME,
+                        WeatherContract.WeatherEntry.TABLE_NAME,
+                        WeatherContract.LocationHistoryEntry.TABLE_NAME,
+                        WeatherContract.IntradayEntry.TABLE_NAME,
+                        WeatherContract.CurrentConditionsEntry.TABLE_NAME)));
+        PerfBudgets.get().check("provider.create.ms", elapsed);
+    }
+
+    // Inserts the generated locations, returning their row ids
+    private long[] insertLocations(int count) {
+        long[] locationIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            Uri uri = mResolver.insert(WeatherContract.LocationEntry.CONTENT_URI,
+                    JvmTestUtilities.createLocationValues(mWeather.getLocation(i)));
+            locationIds[i] = ContentUris.parseId(uri);
+        }
+        return locationIds;
+    }
+
+    private int count(Uri uri) {
+        Cursor cursor = mResolver.query(uri, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testBulkInsert() {
+        int locations = LOCATIONS * mScale;
+        long[] locationIds = insertLocations(locations);
+        ContentValues[][] forecasts = new ContentValues[locations][];
+        for (int i = 0; i < locations; i++) {
+            forecasts[i] = JvmTestUtilities.createWeatherValues(locationIds[i],
+                    mWeather.getDays(i, mToday, DAYS));
+        }
+
+        long start = System.nanoTime();
+        int inserted = 0;
+        for (ContentValues[] forecast : forecasts) {
+            inserted += mResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, forecast);
+        }
+        long elapsed = JvmTestUtilities.elapsedMillis(start);
+
+        assertEquals(locations * DAYS, inserted);
+        assertEquals(locations * DAYS, count(WeatherContract.WeatherEntry.CONTENT_URI));
+        PerfBudgets.get().check("provider.bulk_insert.ms", elapsed, mScale);
+    }
+
+    @Test
+    public void testBulkInsertIntraday() {
+        int locations = LOCATIONS * mScale;
+        long[] locationIds = insertLocations(locations);
+        ContentValues[][] intraday = new ContentValues[locations][INTRADAY_DAYS];
+        for (int i = 0; i < locations; i++) {
+            for (int day = 0; day < INTRADAY_DAYS; day++) {
+                intraday[i][day] = JvmTestUtilities.createIntradayValues(locationIds[i],
+                        mToday + day, mWeather.getSlots(i, mToday + day));
+            }
+        }
+
+        long start = System.nanoTime();
+        int inserted = 0;
+        for (ContentValues[] days : intraday) {
+            inserted += mResolver.bulkInsert(WeatherContract.IntradayEntry.CONTENT_URI, days);
+        }
+        long elapsed = JvmTestUtilities.elapsedMillis(start);
+
+        assertEquals(locations * INTRADAY_DAYS, inserted);
+        assertEquals(INTRADAY_DAYS, count(WeatherContract.IntradayEntry.buildIntradayLocation(
+                mWeather.getLocation(0).getSetting())));
+        PerfBudgets.get().check("provider.bulk_insert_intraday.ms", elapsed, mScale);
+    }
+
+    @Test
+    public void testQuery() {
+        // Other locations' forecasts, which the query shouldn't get slower with
+        long[] others = insertLocations(LOCATIONS * mScale);
+        for (int i = 0; i < others.length; i++) {
+            mResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                    JvmTestUtilities.createWeatherValues(others[i],
+                            mWeather.getDays(i, mToday, DAYS)));
+        }
+
+        long locationId = JvmTestUtilities.insertLocation(mContext,
+                JvmTestUtilities.TEST_LOCATION);
+        ContentValues[] forecast = JvmTestUtilities.createForecast(locationId, mToday, DAYS);
+        mResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, forecast);
+
+        String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            Cursor cursor = mResolver.query(
+                    WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                            JvmTestUtilities.TEST_LOCATION, JulianDay.toMillis(mToday)),
+                    null, null, null, sortOrder);
+            try {
+                assertEquals(DAYS, cursor.getCount());
+                int dateColumn = cursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
+                int highColumn = cursor.getColumnIndex(
+                        WeatherContract.WeatherEntry.COLUMN_MAX_TEMP);
+                for (int day = 0; cursor.moveToNext(); day++) {
+                    assertEquals(JulianDay.toMillis(mToday + day),
+                            cursor.getLong(dateColumn));
+                    assertEquals(20.5 + day, cursor.getDouble(highColumn), 0.001);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        long elapsed = JvmTestUtilities.elapsedMillis(start);
+
+        PerfBudgets.get().check("provider.query.ms", elapsed);
+    }
+}
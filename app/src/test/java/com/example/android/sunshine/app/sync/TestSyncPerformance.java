@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.accounts.Account;
+import android.content.Context;
+import android.content.SyncResult;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.preference.PreferenceManager;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.SettingsSnapshot;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.JvmTestUtilities;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.shared.JulianDay;
+import com.example.android.sunshine.testing.PerfBudgets;
+import com.example.android.sunshine.testing.SyntheticWeather;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+    A whole sync on the JVM: SunshineSyncAdapter fetches from a local server standing in for
+    OpenWeatherMap, which answers with a recorded 14 day forecast or one from SyntheticWeather,
+    and stores it through the provider.  Every sync has to finish within its budget in
+    perf-budgets.properties, which leaves room for a slow CI machine.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class TestSyncPerformance {
+
+    static final String DAILY_PATH = "/data/2.5/forecast/daily";
+    static final String INTRADAY_PATH = "/data/2.5/forecast";
+    static final String FORECAST_RESOURCE = "/forecast_14_days.json";
+
+    static final int DAYS = 14;
+    static final int INTRADAY_DAYS = 5;
+
+    // Locations synced one after the other, times the scale.  Each sync has the same budget,
+    // however many locations have been synced before.
+    static final int SYNCED_LOCATIONS = 10;
+
+    private Context mContext;
+    private MockWebServer mServer;
+    private String mLocation;
+
+    private final SyntheticWeather mWeather = new SyntheticWeather();
+
+    // What the server answers the daily forecast with, the location's SyntheticWeather if
+    // null.  Read on the server's thread.
+    private volatile MockResponse mDailyResponse;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext = RuntimeEnvironment.application;
+        SettingsSnapshot.reset();
+        JvmTestUtilities.registerProvider(mContext);
+        mLocation = Utility.getPreferredLocation(mContext);
+
+        // The notification would load its art over the network
+        PreferenceManager.getDefaultSharedPreferences(mContext).edit()
+                .putBoolean(mContext.getString(R.string.pref_enable_notifications_key), false)
+                .commit();
+
+        mDailyResponse = new MockResponse().setBody(readResource(FORECAST_RESOURCE));
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                int today = JulianDay.fromMillis(System.currentTimeMillis());
+                if (path.startsWith(DAILY_PATH + "?")) {
+                    MockResponse response = mDailyResponse;
+                    return null != response ? response : new MockResponse().setBody(
+                            mWeather.toDailyJson(getLocationIndex(request), today, DAYS));
+                } else if (path.startsWith(INTRADAY_PATH + "?")) {
+                    return new MockResponse().setBody(mWeather.toIntradayJson(
+                            getLocationIndex(request), today, INTRADAY_DAYS));
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        mServer.start();
+        SunshineSyncAdapter.setApiBaseUrl(mServer.url("/data/2.5/").toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        SunshineSyncAdapter.setApiBaseUrl(SunshineSyncAdapter.DEFAULT_API_BASE_URL);
+        mServer.shutdown();
+    }
+
+    static String readResource(String name) throws IOException {
+        InputStream in = TestSyncPerformance.class.getResourceAsStream(name);
+        if (null == in) {
+            throw new IOException(name + " is missing");
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    // The synthetic location a request is for, the settings being numbers like postal codes
+    private int getLocationIndex(RecordedRequest request) {
+        return Integer.parseInt(mServer.url(request.getPath()).queryParameter("q"));
+    }
+
+    private void sync() {
+        new SunshineSyncAdapter(mContext, true).onPerformSync(
+                new Account(mContext.getString(R.string.app_name),
+                        mContext.getString(R.string.sync_account_type)),
+                new Bundle(), WeatherContract.CONTENT_AUTHORITY, null, new SyncResult());
+    }
+
+    private int count(Uri uri) {
+        Cursor cursor = mContext.getContentResolver().query(uri, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testFullSync() throws InterruptedException {
+        long start = System.nanoTime();
+        sync();
+        long elapsed = JvmTestUtilities.elapsedMillis(start);
+
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_OK, Utility.getLocationStatus(mContext));
+
+        RecordedRequest daily = mServer.takeRequest();
+        assertTrue("Error: unexpected request " + daily.getPath(),
+                daily.getPath().startsWith(DAILY_PATH + "?"));
+        assertTrue(daily.getPath().contains("q=" + mLocation));
+        assertTrue(daily.getPath().contains("cnt=14"));
+        assertTrue(mServer.takeRequest().getPath().startsWith(INTRADAY_PATH + "?"));
+
+        Cursor location = mContext.getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry.COLUMN_CITY_NAME},
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{mLocation}, null);
+        try {
+            assertTrue("Error: the location wasn't stored", location.moveToFirst());
+            assertEquals("Mountain View", location.getString(0));
+        } finally {
+            location.close();
+        }
+        assertEquals(DAYS, count(WeatherContract.WeatherEntry.buildWeatherLocation(mLocation)));
+        assertTrue("Error: no intraday forecast was stored",
+                count(WeatherContract.IntradayEntry.buildIntradayLocation(mLocation)) > 0);
+
+        PerfBudgets.get().check("sync.full.ms", elapsed);
+    }
+
+    @Test
+    public void testResync() {
+        sync();
+        // A second sync replaces the days rather than adding to them
+        long start = System.nanoTime();
+        sync();
+        long elapsed = JvmTestUtilities.elapsedMillis(start);
+
+        assertEquals(DAYS, count(WeatherContract.WeatherEntry.buildWeatherLocation(mLocation)));
+        PerfBudgets.get().check("sync.resync.ms", elapsed);
+    }
+
+    @Test
+    public void testSyntheticForecast() {
+        mDailyResponse = null;
+        sync();
+
+        int index = Integer.parseInt(mLocation);
+        SyntheticWeather.Day[] days = mWeather.getDays(index,
+                JulianDay.fromMillis(System.currentTimeMillis()), DAYS);
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocation(mLocation),
+                new String[]{WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                        WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+                        WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+                        WeatherContract.WeatherEntry.COLUMN_SHORT_DESC},
+                null, null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        try {
+            assertEquals(DAYS, cursor.getCount());
+            for (int i = 0; cursor.moveToNext(); i++) {
+                assertEquals(days[i].getHigh(), cursor.getDouble(0), 0.001);
+                assertEquals(days[i].getLow(), cursor.getDouble(1), 0.001);
+                assertEquals(days[i].getWeatherId(), cursor.getInt(2));
+                assertEquals(days[i].getDescription(), cursor.getString(3));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testManyLocations() {
+        mDailyResponse = null;
+        int locations = SYNCED_LOCATIONS * JvmTestUtilities.getScale();
+        String locationKey = mContext.getString(R.string.pref_location_key);
+        long slowest = 0;
+        for (int i = 0; i < locations; i++) {
+            PreferenceManager.getDefaultSharedPreferences(mContext).edit()
+                    .putString(locationKey, mWeather.getLocation(i).getSetting())
+                    .commit();
+            long start = System.nanoTime();
+            sync();
+            slowest = Math.max(slowest, JvmTestUtilities.elapsedMillis(start));
+        }
+
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_OK, Utility.getLocationStatus(mContext));
+        assertEquals(locations * DAYS, count(WeatherContract.WeatherEntry.CONTENT_URI));
+        PerfBudgets.get().check("sync.many_locations.slowest.ms", slowest);
+    }
+
+    @Test
+    public void testUnknownLocation() {
+        mDailyResponse = new MockResponse()
+                .setBody("{\"cod\":\"404\",\"message\":\"Error: Not found city\"}");
+        sync();
+
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_INVALID,
+                Utility.getLocationStatus(mContext));
+        assertTrue(Utility.isLocationKnownInvalid(mContext, mLocation));
+        assertEquals(0, count(WeatherContract.WeatherEntry.CONTENT_URI));
+
+        // Not asked for again
+        int requests = mServer.getRequestCount();
+        sync();
+        assertEquals(requests, mServer.getRequestCount());
+    }
+
+    @Test
+    public void testMalformedResponse() {
+        mDailyResponse = new MockResponse().setBody("{\"cod\":\"200\",\"list\":[");
+        sync();
+
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_SERVER_INVALID,
+                Utility.getLocationStatus(mContext));
+        assertEquals(0, count(WeatherContract.WeatherEntry.CONTENT_URI));
+    }
+
+    @Test
+    public void testServerDown() {
+        mDailyResponse = new MockResponse().setResponseCode(503);
+        sync();
+
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN,
+                Utility.getLocationStatus(mContext));
+        assertEquals(0, count(WeatherContract.WeatherEntry.CONTENT_URI));
+    }
+}
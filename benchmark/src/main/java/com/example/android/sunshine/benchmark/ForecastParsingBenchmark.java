@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmark;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a 14 day forecast the way the sync adapter does: building the org.json tree and
+ * reading the fields it stores out of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForecastParsingBenchmark {
+
+    private String mJson;
+
+    @Setup
+    public void setUp() throws IOException, JSONException {
+        mJson = Fixtures.readForecast();
+        // Fail now rather than time a parse that throws
+        if (new JSONObject(mJson).getJSONArray("list").length() != 14) {
+            throw new IllegalStateException("Expected 14 days in " + Fixtures.FORECAST_RESOURCE);
+        }
+    }
+
+    @Benchmark
+    public void orgJson(Blackhole blackhole) throws JSONException {
+        JSONObject forecastJson = new JSONObject(mJson);
+        blackhole.consume(forecastJson.getInt("cod"));
+        JSONObject cityJson = forecastJson.getJSONObject("city");
+        JSONObject cityCoord = cityJson.getJSONObject("coord");
+        blackhole.consume(cityJson.getString("name"));
+        blackhole.consume(cityCoord.getDouble("lat"));
+        blackhole.consume(cityCoord.getDouble("lon"));
+
+        JSONArray weatherArray = forecastJson.getJSONArray("list");
+        for (int i = 0; i < weatherArray.length(); i++) {
+            JSONObject dayForecast = weatherArray.getJSONObject(i);
+            blackhole.consume(dayForecast.getDouble("pressure"));
+            blackhole.consume(dayForecast.getInt("humidity"));
+            blackhole.consume(dayForecast.getDouble("speed"));
+            blackhole.consume(dayForecast.getDouble("deg"));
+
+            JSONObject weatherObject = dayForecast.getJSONArray("weather").getJSONObject(0);
+            blackhole.consume(weatherObject.getString("main"));
+            blackhole.consume(weatherObject.getInt("id"));
+
+            JSONObject temperatureObject = dayForecast.getJSONObject("temp");
+            blackhole.consume(temperatureObject.getDouble("max"));
+            blackhole.consume(temperatureObject.getDouble("min"));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmark;
+
+import com.example.android.sunshine.shared.WeatherFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting one forecast row's temperatures and wind, with the app's formats, against
+ * String.format per value as Utility did before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattingBenchmark {
+
+    static final String TEMPERATURE_FORMAT = "%1.0f\u00B0";
+    static final String WIND_KMH_FORMAT = "%1$1.0f km/h %2$s";
+    static final String WIND_MPH_FORMAT = "%1$1.0f mph %2$s";
+
+    @Param({ "en-US", "ar-EG" })
+    public String locale;
+
+    @Param({ "true", "false" })
+    public boolean metric;
+
+    private Locale mLocale;
+    private String mWindFormat;
+    private WeatherFormatter mFormatter;
+    private final StringBuilder mBuilder = new StringBuilder(32);
+
+    // A row's values, varied so no one string is hit every time
+    private double mHigh;
+    private double mLow;
+    private double mSpeed;
+    private double mDegrees;
+    private int mRow;
+
+    @Setup
+    public void setUp() {
+        mLocale = Locale.forLanguageTag(locale);
+        mWindFormat = metric ? WIND_KMH_FORMAT : WIND_MPH_FORMAT;
+        mFormatter = new WeatherFormatter(mLocale, metric, TEMPERATURE_FORMAT, mWindFormat);
+        if (!mFormatter.formatTemperature(21.5).equals(format(21.5))) {
+            throw new IllegalStateException("The formatter disagrees with String.format");
+        }
+    }
+
+    private String format(double celsius) {
+        return String.format(mLocale, TEMPERATURE_FORMAT, metric ? celsius : celsius * 1.8 + 32);
+    }
+
+    private void nextRow() {
+        mRow = (mRow + 1) % 14;
+        mHigh = 12.4 + mRow;
+        mLow = -4.6 + mRow;
+        mSpeed = 3.2 * mRow;
+        mDegrees = 27.0 * mRow;
+    }
+
+    @Benchmark
+    public void weatherFormatter(Blackhole blackhole) {
+        nextRow();
+        blackhole.consume(mFormatter.formatTemperature(mHigh));
+        blackhole.consume(mFormatter.formatTemperature(mLow));
+        mBuilder.setLength(0);
+        blackhole.consume(mFormatter.formatWind(mBuilder, mSpeed, mDegrees));
+    }
+
+    @Benchmark
+    public void stringFormat(Blackhole blackhole) {
+        nextRow();
+        blackhole.consume(format(mHigh));
+        blackhole.consume(format(mLow));
+        double speed = metric ? mSpeed : .621371192237334f * mSpeed;
+        blackhole.consume(String.format(mLocale, mWindFormat, speed,
+                WeatherFormatter.getCompassLabel(mDegrees)));
+    }
+}
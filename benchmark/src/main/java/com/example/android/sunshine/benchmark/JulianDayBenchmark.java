@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmark;
+
+import com.example.android.sunshine.shared.JulianDay;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalizing a forecast's worth of dates to the start of their day, across the end of DST,
+ * against the Calendar arithmetic it would take otherwise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JulianDayBenchmark {
+
+    static final int DAYS = 14;
+    static final long START = 1477872000000L; // 2016-10-31T00:00:00Z
+
+    private final TimeZone mZone = TimeZone.getTimeZone("America/Los_Angeles");
+    private final long[] mDates = new long[DAYS];
+
+    @Setup
+    public void setUp() {
+        JulianDay.setTimeZone(mZone);
+        for (int i = 0; i < DAYS; i++) {
+            // Not at the same time of day, as the sync adapter's aren't
+            mDates[i] = START + i * JulianDay.DAY_IN_MILLIS + i * 3600 * 1000L;
+        }
+        for (long date : mDates) {
+            if (JulianDay.normalize(date) != calendarNormalize(mZone, date)) {
+                throw new IllegalStateException("The two ways disagree on " + date);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        JulianDay.setTimeZone(TimeZone.getDefault());
+    }
+
+    static long calendarNormalize(TimeZone zone, long millis) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(millis);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DAYS)
+    public long julianDay() {
+        long sum = 0;
+        for (long date : mDates) {
+            sum += JulianDay.normalize(date);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DAYS)
+    public long calendar() {
+        long sum = 0;
+        for (long date : mDates) {
+            sum += calendarNormalize(mZone, date);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmark;
+
+import com.example.android.sunshine.shared.WeatherPayload;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a forecast for the watch face, as the sync adapter does after every sync, and
+ * decoding it, as the watch face does when it arrives.  Compared against the DataMap of
+ * formatted strings the phone used to send, both in time and in size; the sizes of the two are
+ * printed at the start of each run.
+ *
+ * DataMap is an Android class, so it is stood in for by a map written as key, type and value
+ * per entry, which is what its serialized form holds too, less the protobuf framing.  The
+ * strings come out a little smaller here than they really were.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WearPayloadBenchmark {
+
+    static final int FIRST_DAY = 2457530;
+
+    static final byte TYPE_INT = 1;
+    static final byte TYPE_STRING = 2;
+
+    // Today only, as the strings were sent, and the full forecast
+    @Param({ "1", "14" })
+    public int days;
+
+    private byte[] mPayload;
+    private byte[] mStrings;
+
+    @Setup
+    public void setUp() throws IOException {
+        mPayload = encode();
+        if (WeatherPayload.decode(mPayload).getDayCount() != days) {
+            throw new IllegalStateException("The payload doesn't round trip");
+        }
+        mStrings = encodeStrings();
+        if (decodeStrings().size() != days * 3) {
+            throw new IllegalStateException("The strings don't round trip");
+        }
+        System.out.println(days + " days: WeatherPayload " + mPayload.length
+                + " bytes, strings " + mStrings.length + " bytes");
+        if (mPayload.length >= mStrings.length) {
+            throw new IllegalStateException("The payload is no smaller than the strings");
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        WeatherPayload.Builder builder = new WeatherPayload.Builder(true);
+        for (int i = 0; i < days; i++) {
+            builder.addDay(FIRST_DAY + i, 20.25 + i, -3.5 - i, 800 + i);
+        }
+        return builder.toByteArray();
+    }
+
+    @Benchmark
+    public WeatherPayload decode() {
+        return WeatherPayload.decode(mPayload);
+    }
+
+    @Benchmark
+    public WeatherPayload roundTrip() {
+        return WeatherPayload.decode(encode());
+    }
+
+    // The old payload, with the day's index appended to each key after today
+    @Benchmark
+    public byte[] encodeStrings() throws IOException {
+        Map<String, Object> map = new HashMap<String, Object>();
+        for (int i = 0; i < days; i++) {
+            String suffix = i == 0 ? "" : Integer.toString(i);
+            map.put("highTemp" + suffix, String.format(Locale.US, "%1.0f\u00B0", 20.25 + i));
+            map.put("lowTemp" + suffix, String.format(Locale.US, "%1.0f\u00B0", -3.5 - i));
+            map.put("weatherID" + suffix, 800 + i);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(map.size());
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            if (entry.getValue() instanceof Integer) {
+                out.writeByte(TYPE_INT);
+                out.writeInt((Integer) entry.getValue());
+            } else {
+                out.writeByte(TYPE_STRING);
+                out.writeUTF((String) entry.getValue());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Map<String, Object> decodeStrings() throws IOException {
+        return readStrings(mStrings);
+    }
+
+    @Benchmark
+    public Map<String, Object> roundTripStrings() throws IOException {
+        return readStrings(encodeStrings());
+    }
+
+    private static Map<String, Object> readStrings(byte[] encoded) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        int size = in.readInt();
+        Map<String, Object> map = new HashMap<String, Object>();
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            map.put(key, in.readByte() == TYPE_INT ? (Object) in.readInt() : in.readUTF());
+        }
+        return map;
+    }
+}
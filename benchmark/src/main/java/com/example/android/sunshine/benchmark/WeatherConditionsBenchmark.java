@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmark;
+
+import com.example.android.sunshine.shared.WeatherCondition;
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up the resources and art of a condition code, as every forecast row and watch face
+ * update does.  Resource ids are stand-ins, only the lookups are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherConditionsBenchmark {
+
+    // Codes of every group, plus ones outside the table
+    static final int[] CODES = {
+            200, 211, 232, 300, 311, 321, 500, 501, 502, 511, 520, 531, 600, 611, 622,
+            701, 741, 761, 781, 800, 801, 802, 803, 804, 900, 906, 951, 962, 0, 1000
+    };
+
+    private final WeatherConditions mConditions = new WeatherConditions.Builder()
+            .setIcons(1, 2, 3, 4, 5, 6, 7, 8)
+            .setArt(11, 12, 13, 14, 15, 16, 17, 18)
+            .setBackgrounds(21, 22, 23, 24, 25, 26, 27, 28)
+            .setStrings(WeatherConditions.MIN_CODE, WeatherConditions.MAX_CODE, 100)
+            .setUnknownString(99)
+            .build();
+
+    @Benchmark
+    @OperationsPerInvocation(30)
+    public int resources() {
+        int sum = 0;
+        for (int code : CODES) {
+            WeatherCondition condition = mConditions.get(code);
+            sum += condition.getIconResource() + condition.getStringResource();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(30)
+    public int artUrl() {
+        int sum = 0;
+        for (int code : CODES) {
+            String url = mConditions.get(code).getImageUrl();
+            sum += null == url ? 0 : url.length();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * The eight compass points a wind direction is shown as.  Each point covers the 45 degrees
+ * centered on it, so that N is from 337.5 up to 22.5 degrees.
+ *
+ * The sector of every half degree is worked out ahead of time, as the sectors start and end on
+ * half degrees, which makes finding a direction's point one array lookup.  Directions outside
+ * 0 to 360 degrees are shown as N, as they always have been.
+ */
+public final class Compass {
+
+    public static final String[] LABELS = { "N", "NE", "E", "SE", "S", "SW", "W", "NW" };
+    public static final String UNKNOWN = "Unknown";
+
+    // What getSector returns for NaN
+    public static final int UNKNOWN_SECTOR = -1;
+
+    static final int STEPS_PER_DEGREE = 2;
+    // Whole steps from one sector's start to the next one's, 45 degrees
+    private static final int STEPS_PER_SECTOR = 45 * STEPS_PER_DEGREE;
+
+    private static final byte[] SECTORS = new byte[360 * STEPS_PER_DEGREE];
+
+    static {
+        for (int step = 0; step < SECTORS.length; step++) {
+            // Shifted by half a sector, as N starts at -22.5 degrees
+            SECTORS[step] = (byte) ((step + STEPS_PER_SECTOR / 2) / STEPS_PER_SECTOR
+                    % LABELS.length);
+        }
+    }
+
+    private Compass() {
+    }
+
+    /**
+     * @param degrees The direction the wind comes from, in degrees
+     * @return the index in {@link #LABELS} of the direction's compass point, or
+     * {@link #UNKNOWN_SECTOR} for NaN
+     */
+    public static int getSector(double degrees) {
+        if (Double.isNaN(degrees)) {
+            return UNKNOWN_SECTOR;
+        }
+        if (degrees < 0 || degrees >= 360) {
+            return 0;
+        }
+        return SECTORS[(int) (degrees * STEPS_PER_DEGREE)];
+    }
+
+    /**
+     * @return the compass label for the given wind direction in degrees, e.g. "NW"
+     */
+    public static String getLabel(double degrees) {
+        int sector = getSector(degrees);
+        return sector == UNKNOWN_SECTOR ? UNKNOWN : LABELS[sector];
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.util.TimeZone;
+
+/**
+ * Julian day numbers and the start of local days, without the Time object
+ * android.text.format.Time needs for every call.
+ *
+ * The zone offset is cached together with the span of time it holds for, so converting a date
+ * inside that span is a few comparisons and a division, and allocates nothing.  The spans on
+ * both sides of the last transition are kept, so a forecast crossing a DST change doesn't look
+ * them up again for every date.  They are reset with {@link #setTimeZone} when the device's
+ * zone changes.
+ *
+ * Unlike Time.getJulianDay(millis, gmtoff), which callers fed with the offset of the current
+ * moment, every date here gets the offset in effect at that date.
+ */
+public final class JulianDay {
+
+    // The Julian day of 1970-01-01, as in android.text.format.Time
+    public static final int EPOCH_JULIAN_DAY = 2440588;
+
+    public static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+
+    // How far around a date the offset is cached, at most.
+    private static final long SPAN_IN_MILLIS = 30 * DAY_IN_MILLIS;
+
+    // How often the offset is checked within that span.  Zones have changed their offset and
+    // changed it back within a few weeks, Cairo suspending DST for Ramadan or Fiji ending it
+    // early, so agreeing ends don't mean the whole span agrees.  None have done so within a day.
+    private static final long PROBE_IN_MILLIS = DAY_IN_MILLIS;
+
+    /*
+        An offset and the span [start, end) it holds for.  Immutable, so it can be swapped in
+        without locking; a new one is only built when a date falls outside the current one.
+     */
+    private static final class Span {
+        final TimeZone zone;
+        final int offset;
+        final long start;
+        final long end;
+
+        Span(TimeZone zone, int offset, long start, long end) {
+            this.zone = zone;
+            this.offset = offset;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static volatile TimeZone sZone = TimeZone.getDefault();
+    private static volatile Span sSpan;
+    private static volatile Span sPreviousSpan;
+
+    private JulianDay() {
+    }
+
+    /**
+     * Sets the zone days are computed in, {@link TimeZone#getDefault()} until then.
+     */
+    public static void setTimeZone(TimeZone zone) {
+        sZone = zone;
+        sSpan = null;
+        sPreviousSpan = null;
+    }
+
+    public static TimeZone getTimeZone() {
+        return sZone;
+    }
+
+    /**
+     * @return the offset from UTC in effect at the given time, in milliseconds
+     */
+    public static int getOffset(long millis) {
+        Span span = sSpan;
+        if (contains(span, millis)) {
+            return span.offset;
+        }
+        Span previous = sPreviousSpan;
+        if (contains(previous, millis)) {
+            return previous.offset;
+        }
+        Span found = findSpan(sZone, millis);
+        sPreviousSpan = span;
+        sSpan = found;
+        return found.offset;
+    }
+
+    private static boolean contains(Span span, long millis) {
+        return null != span && millis >= span.start && millis < span.end && span.zone == sZone;
+    }
+
+    private static Span findSpan(TimeZone zone, long millis) {
+        int offset = zone.getOffset(millis);
+        // Walk out from the date a probe at a time, and stop at the nearest transition on
+        // either side, if there is one
+        long start = millis;
+        long limit = millis - SPAN_IN_MILLIS;
+        while (start > limit) {
+            long probe = Math.max(start - PROBE_IN_MILLIS, limit);
+            if (zone.getOffset(probe) != offset) {
+                start = findTransition(zone, probe, start);
+                break;
+            }
+            start = probe;
+        }
+        long end = millis;
+        limit = millis + SPAN_IN_MILLIS;
+        while (end < limit) {
+            long probe = Math.min(end + PROBE_IN_MILLIS, limit);
+            if (zone.getOffset(probe) != offset) {
+                end = findTransition(zone, end, probe);
+                break;
+            }
+            end = probe;
+        }
+        return new Span(zone, offset, start, end);
+    }
+
+    // The first millisecond after from with the offset of to, from and to having different ones
+    private static long findTransition(TimeZone zone, long from, long to) {
+        int toOffset = zone.getOffset(to);
+        while (to - from > 1) {
+            long middle = from + (to - from) / 2;
+            if (zone.getOffset(middle) == toOffset) {
+                to = middle;
+            } else {
+                from = middle;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * @return the Julian day the given time falls on, in the local zone
+     */
+    public static int fromMillis(long millis) {
+        return (int) floorDiv(millis + getOffset(millis), DAY_IN_MILLIS) + EPOCH_JULIAN_DAY;
+    }
+
+    /**
+     * @return the first moment of the given Julian day, in the local zone.  This is midnight,
+     * except in zones whose DST starts at midnight, where the day starts at 1am.
+     */
+    public static long toMillis(int julianDay) {
+        long local = (julianDay - EPOCH_JULIAN_DAY) * DAY_IN_MILLIS;
+        int before = getOffset(local - DAY_IN_MILLIS);
+        int after = getOffset(local + DAY_IN_MILLIS);
+        if (before == after) {
+            return local - before;
+        }
+        // A transition near this midnight.  Take the earlier one if midnight happens twice.
+        long millis = local - before;
+        if (getOffset(millis) == before) {
+            return millis;
+        }
+        millis = local - after;
+        if (getOffset(millis) == after) {
+            return millis;
+        }
+        // Midnight was skipped, the day starts with the transition
+        return local - before;
+    }
+
+    /**
+     * @return the start of the local day the given time falls on, as stored in the database
+     */
+    public static long normalize(long millis) {
+        return toMillis(fromMillis(millis));
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            q--;
+        }
+        return q;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Converts the stored units, degrees Celsius and km/h, into the imperial ones, one value at a
+ * time or a whole forecast's at once.  The batch methods may convert an array in place.
+ */
+public final class UnitConversions {
+
+    public static final double MILES_PER_KILOMETER = .621371192237334;
+
+    // In float, as the app has always converted wind speeds
+    private static final float MILES_PER_KILOMETER_FLOAT = (float) MILES_PER_KILOMETER;
+
+    private UnitConversions() {
+    }
+
+    public static double celsiusToFahrenheit(double celsius) {
+        return celsius * 1.8 + 32;
+    }
+
+    /**
+     * Converts the first count values of celsius into out, which may be the same array.
+     *
+     * @return out
+     */
+    public static double[] celsiusToFahrenheit(double[] celsius, int count, double[] out) {
+        for (int i = 0; i < count; i++) {
+            out[i] = celsius[i] * 1.8 + 32;
+        }
+        return out;
+    }
+
+    /**
+     * @param kilometersPerHour A wind speed, converted in float precision
+     */
+    public static double toMilesPerHour(double kilometersPerHour) {
+        return MILES_PER_KILOMETER_FLOAT * (float) kilometersPerHour;
+    }
+
+    /**
+     * Converts the first count values of kilometersPerHour into out, which may be the same array.
+     *
+     * @return out
+     */
+    public static double[] toMilesPerHour(double[] kilometersPerHour, int count, double[] out) {
+        for (int i = 0; i < count; i++) {
+            out[i] = MILES_PER_KILOMETER_FLOAT * (float) kilometersPerHour[i];
+        }
+        return out;
+    }
+}
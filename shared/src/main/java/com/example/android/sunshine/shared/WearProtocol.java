@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * The data item paths and keys the phone and the watch face talk over.
+ */
+public final class WearProtocol {
+
+    // The forecast, put by the phone as a {@link WeatherPayload} under PAYLOAD_KEY
+    public static final String WEATHER_DATA_PATH = "/weather_data";
+    public static final String PAYLOAD_KEY = "payload";
+
+    // Put by the watch face when it has nothing to show, DATA_REQUEST_KEY asks for the forecast
+    public static final String NO_WEATHER_PATH = "/no_data";
+    public static final String DATA_REQUEST_KEY = "dataRequest";
+
+    private WearProtocol() {
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Everything shown for one OpenWeatherMap condition code, looked up in {@link WeatherConditions}.
+ *
+ * The group, art slug and image URL are the same everywhere.  The resource ids belong to the
+ * module that built the table, and are {@link #NO_RESOURCE} where it has none.
+ */
+public final class WeatherCondition {
+
+    public static final int NO_RESOURCE = -1;
+
+    // The kinds of weather there is art for, codes of the same group share their art
+    public static final int GROUP_UNKNOWN = -1;
+    public static final int GROUP_STORM = 0;
+    public static final int GROUP_LIGHT_RAIN = 1;
+    public static final int GROUP_RAIN = 2;
+    public static final int GROUP_SNOW = 3;
+    public static final int GROUP_FOG = 4;
+    public static final int GROUP_CLEAR = 5;
+    public static final int GROUP_LIGHT_CLOUDS = 6;
+    public static final int GROUP_CLOUDS = 7;
+    public static final int GROUP_COUNT = 8;
+
+    // The code of the descriptor returned for codes nothing is known about
+    public static final int UNKNOWN_CODE = -1;
+
+    private final int mCode;
+    private final int mGroup;
+    private final String mArtSlug;
+    private final String mImageUrl;
+    private final int mIconResource;
+    private final int mArtResource;
+    private final int mBackgroundResource;
+    private final int mStringResource;
+
+    WeatherCondition(int code, int group, String artSlug, String imageUrl, int iconResource,
+                     int artResource, int backgroundResource, int stringResource) {
+        mCode = code;
+        mGroup = group;
+        mArtSlug = artSlug;
+        mImageUrl = imageUrl;
+        mIconResource = iconResource;
+        mArtResource = artResource;
+        mBackgroundResource = backgroundResource;
+        mStringResource = stringResource;
+    }
+
+    public int getCode() {
+        return mCode;
+    }
+
+    /**
+     * @return one of the GROUP_ constants
+     */
+    public int getGroup() {
+        return mGroup;
+    }
+
+    /**
+     * @return the name of the art in an art pack, e.g. "light_rain", or null if there is none
+     */
+    public String getArtSlug() {
+        return mArtSlug;
+    }
+
+    /**
+     * @return a photo of this kind of weather, or null if there is none
+     */
+    public String getImageUrl() {
+        return mImageUrl;
+    }
+
+    public int getIconResource() {
+        return mIconResource;
+    }
+
+    public int getArtResource() {
+        return mArtResource;
+    }
+
+    public int getBackgroundResource() {
+        return mBackgroundResource;
+    }
+
+    public int getStringResource() {
+        return mStringResource;
+    }
+}
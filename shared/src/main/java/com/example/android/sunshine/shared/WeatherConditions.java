@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.util.Arrays;
+
+/**
+ * A table of {@link WeatherCondition}s indexed by OpenWeatherMap condition code, so a lookup is
+ * a bounds check and an array access.
+ *
+ * Which codes belong to which group is fixed here.  Each module builds its own table with
+ * {@link Builder}, filling in the resources it has for the groups and codes, once, and keeps it
+ * in a static field.
+ */
+public final class WeatherConditions {
+
+    // Based on weather code data found at:
+    // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+    public static final int MIN_CODE = 200;
+    public static final int MAX_CODE = 962;
+
+    private static final String[] ART_SLUGS = {
+            "storm", "light_rain", "rain", "snow", "fog", "clear", "light_clouds", "clouds"
+    };
+
+    // The codes of each group, as ranges.  Where ranges overlap the first one wins, which is
+    // why 761 is fog.
+    private static final class Range {
+        final int from;
+        final int to;
+        final int group;
+        final String imageUrl;
+
+        Range(int from, int to, int group, String imageUrl) {
+            this.from = from;
+            this.to = to;
+            this.group = group;
+            this.imageUrl = imageUrl;
+        }
+    }
+
+    private static final Range[] RANGES = {
+            new Range(200, 232, WeatherCondition.GROUP_STORM,
+                    "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg"),
+            new Range(300, 321, WeatherCondition.GROUP_LIGHT_RAIN,
+                    "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg"),
+            new Range(500, 504, WeatherCondition.GROUP_RAIN,
+                    "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg"),
+            new Range(511, 511, WeatherCondition.GROUP_SNOW,
+                    "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG"),
+            new Range(520, 531, WeatherCondition.GROUP_RAIN,
+                    "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg"),
+            new Range(600, 622, WeatherCondition.GROUP_SNOW,
+                    "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG"),
+            new Range(701, 761, WeatherCondition.GROUP_FOG,
+                    "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg"),
+            new Range(781, 781, WeatherCondition.GROUP_STORM,
+                    "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg"),
+            new Range(800, 800, WeatherCondition.GROUP_CLEAR,
+                    "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg"),
+            new Range(801, 801, WeatherCondition.GROUP_LIGHT_CLOUDS,
+                    "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg"),
+            new Range(802, 804, WeatherCondition.GROUP_CLOUDS,
+                    "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg"),
+    };
+
+    private final WeatherCondition[] mTable;
+    private final WeatherCondition mUnknown;
+
+    private WeatherConditions(WeatherCondition[] table, WeatherCondition unknown) {
+        mTable = table;
+        mUnknown = unknown;
+    }
+
+    /**
+     * @return the condition of the code, or one with {@link WeatherCondition#UNKNOWN_CODE} and
+     * only the unknown string if nothing is known about it.  Never null.
+     */
+    public WeatherCondition get(int code) {
+        if (code < MIN_CODE || code > MAX_CODE) {
+            return mUnknown;
+        }
+        return mTable[code - MIN_CODE];
+    }
+
+    /**
+     * Fills in the resources of one module.  The resources of a group are passed as arrays
+     * indexed by the GROUP_ constants of {@link WeatherCondition}.
+     */
+    public static final class Builder {
+        private int[] mIcons;
+        private int[] mArt;
+        private int[] mBackgrounds;
+        private final int[] mStrings = new int[MAX_CODE - MIN_CODE + 1];
+        private int mUnknownString = WeatherCondition.NO_RESOURCE;
+
+        public Builder() {
+            Arrays.fill(mStrings, WeatherCondition.NO_RESOURCE);
+        }
+
+        public Builder setIcons(int... iconsByGroup) {
+            mIcons = checkGroups(iconsByGroup);
+            return this;
+        }
+
+        public Builder setArt(int... artByGroup) {
+            mArt = checkGroups(artByGroup);
+            return this;
+        }
+
+        public Builder setBackgrounds(int... backgroundsByGroup) {
+            mBackgrounds = checkGroups(backgroundsByGroup);
+            return this;
+        }
+
+        public Builder setString(int code, int stringResource) {
+            return setStrings(code, code, stringResource);
+        }
+
+        // The same string for every code from one to the other, both included
+        public Builder setStrings(int from, int to, int stringResource) {
+            Arrays.fill(mStrings, from - MIN_CODE, to - MIN_CODE + 1, stringResource);
+            return this;
+        }
+
+        public Builder setUnknownString(int stringResource) {
+            mUnknownString = stringResource;
+            return this;
+        }
+
+        private static int[] checkGroups(int[] byGroup) {
+            if (byGroup.length != WeatherCondition.GROUP_COUNT) {
+                throw new IllegalArgumentException("Expected " + WeatherCondition.GROUP_COUNT
+                        + " resources, one per group, got " + byGroup.length);
+            }
+            return byGroup.clone();
+        }
+
+        private static int get(int[] byGroup, int group) {
+            return null == byGroup || group == WeatherCondition.GROUP_UNKNOWN
+                    ? WeatherCondition.NO_RESOURCE : byGroup[group];
+        }
+
+        public WeatherConditions build() {
+            WeatherCondition unknown = new WeatherCondition(WeatherCondition.UNKNOWN_CODE,
+                    WeatherCondition.GROUP_UNKNOWN, null, null, WeatherCondition.NO_RESOURCE,
+                    WeatherCondition.NO_RESOURCE, WeatherCondition.NO_RESOURCE, mUnknownString);
+            WeatherCondition[] table = new WeatherCondition[MAX_CODE - MIN_CODE + 1];
+            for (int code = MIN_CODE; code <= MAX_CODE; code++) {
+                Range range = findRange(code);
+                int string = mStrings[code - MIN_CODE];
+                if (null == range && string == WeatherCondition.NO_RESOURCE) {
+                    table[code - MIN_CODE] = unknown;
+                    continue;
+                }
+                int group = null == range ? WeatherCondition.GROUP_UNKNOWN : range.group;
+                table[code - MIN_CODE] = new WeatherCondition(code, group,
+                        null == range ? null : ART_SLUGS[group],
+                        null == range ? null : range.imageUrl,
+                        get(mIcons, group), get(mArt, group), get(mBackgrounds, group),
+                        string == WeatherCondition.NO_RESOURCE ? mUnknownString : string);
+            }
+            return new WeatherConditions(table, unknown);
+        }
+
+        private static Range findRange(int code) {
+            for (Range range : RANGES) {
+                if (code >= range.from && code <= range.to) {
+                    return range;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formats temperatures and wind for display, in one locale and one system of units, without
+ * going through String.format for every value.
+ *
+ * Temperatures are formatted ahead of time for every whole degree that occurs on Earth, so
+ * formatting one is a lookup that returns the same String each time, and a whole forecast's
+ * can be formatted at once.  Wind is appended to a StringBuilder the caller can reuse, from the
+ * literal parts of the format and the labels of {@link Compass}.  Both give exactly what
+ * String.format would with the same format and locale, which they fall back to for values
+ * outside the tables and formats they don't understand.  The units are converted by
+ * {@link UnitConversions}.
+ */
+public final class WeatherFormatter {
+
+    // The records are -89.2 and 56.7 degrees Celsius
+    public static final int MIN_CELSIUS = -90;
+    public static final int MAX_CELSIUS = 60;
+    public static final int MIN_FAHRENHEIT = -130;
+    public static final int MAX_FAHRENHEIT = 140;
+
+    public static final String[] COMPASS_LABELS = Compass.LABELS;
+    public static final String UNKNOWN_DIRECTION = Compass.UNKNOWN;
+
+    private final Locale mLocale;
+    private final boolean mMetric;
+
+    private final String mTemperatureFormat;
+    private final int mMinTemperature;
+    private final String[] mTemperatures;
+    // String.format writes -0.4 as "-0"
+    private final String mNegativeZero;
+
+    private final String mWindFormat;
+    // The wind format split up as literal, speed, literal, direction, literal, or null if it
+    // isn't of that shape
+    private final String[] mWindParts;
+    private final boolean mSpeedFirst;
+    private final char mZeroDigit;
+
+    /**
+     * @param locale The locale the formats are applied in, for its digits
+     * @param metric Whether to show Celsius and km/h rather than Fahrenheit and mph
+     * @param temperatureFormat A format for one degree value, e.g. "%1.0f\u00B0"
+     * @param windFormat A format for the speed and then the compass label,
+     *                   e.g. "%1$1.0f km/h %2$s"
+     */
+    public WeatherFormatter(Locale locale, boolean metric, String temperatureFormat,
+                            String windFormat) {
+        mLocale = locale;
+        mMetric = metric;
+
+        mTemperatureFormat = temperatureFormat;
+        mMinTemperature = metric ? MIN_CELSIUS : MIN_FAHRENHEIT;
+        int maxTemperature = metric ? MAX_CELSIUS : MAX_FAHRENHEIT;
+        mTemperatures = new String[maxTemperature - mMinTemperature + 1];
+        for (int i = 0; i < mTemperatures.length; i++) {
+            mTemperatures[i] = String.format(locale, temperatureFormat,
+                    (double) (mMinTemperature + i));
+        }
+        mNegativeZero = String.format(locale, temperatureFormat, -0.1);
+
+        mWindFormat = windFormat;
+        mZeroDigit = DecimalFormatSymbols.getInstance(locale).getZeroDigit();
+        String[] parts = new String[5];
+        boolean[] speedFirst = new boolean[1];
+        if (splitWindFormat(windFormat, parts, speedFirst)) {
+            mWindParts = parts;
+            mSpeedFirst = speedFirst[0];
+        } else {
+            mWindParts = null;
+            mSpeedFirst = true;
+        }
+    }
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    /**
+     * @param celsius The temperature as stored, in degrees Celsius
+     * @return the temperature in the formatter's units, rounded to a whole degree
+     */
+    public String formatTemperature(double celsius) {
+        return formatConverted(mMetric ? celsius : UnitConversions.celsiusToFahrenheit(celsius));
+    }
+
+    /**
+     * Formats the first count temperatures of a forecast, converting them all to the
+     * formatter's units first.
+     *
+     * @param celsius The temperatures as stored, in degrees Celsius
+     * @return out
+     */
+    public String[] formatTemperatures(double[] celsius, int count, String[] out) {
+        double[] temperatures = mMetric ? celsius
+                : UnitConversions.celsiusToFahrenheit(celsius, count, new double[count]);
+        for (int i = 0; i < count; i++) {
+            out[i] = formatConverted(temperatures[i]);
+        }
+        return out;
+    }
+
+    // A temperature already in the formatter's units
+    private String formatConverted(double temperature) {
+        // Formatter rounds halves away from zero
+        long rounded = temperature >= 0 ? Math.round(temperature) : -Math.round(-temperature);
+        int index = (int) (rounded - mMinTemperature);
+        if (Double.isNaN(temperature) || index < 0 || index >= mTemperatures.length) {
+            return String.format(mLocale, mTemperatureFormat, temperature);
+        }
+        if (rounded == 0 && temperature < 0) {
+            return mNegativeZero;
+        }
+        return mTemperatures[index];
+    }
+
+    /**
+     * @return the compass label for the given wind direction in degrees, e.g. "NW"
+     */
+    public static String getCompassLabel(double degrees) {
+        return Compass.getLabel(degrees);
+    }
+
+    /**
+     * Appends the wind speed and direction to the given builder.
+     *
+     * @param speed The wind speed as stored, in km/h
+     * @param degrees The direction the wind comes from, in degrees
+     * @return out
+     */
+    public StringBuilder formatWind(StringBuilder out, double speed, double degrees) {
+        if (!mMetric) {
+            speed = UnitConversions.toMilesPerHour(speed);
+        }
+        String direction = getCompassLabel(degrees);
+        if (null == mWindParts || Double.isNaN(speed) || speed < 0 || speed >= Integer.MAX_VALUE) {
+            return out.append(String.format(mLocale, mWindFormat, speed, direction));
+        }
+        out.append(mWindParts[0]);
+        if (mSpeedFirst) {
+            appendWhole(out, speed);
+            out.append(mWindParts[2]).append(direction);
+        } else {
+            out.append(direction).append(mWindParts[2]);
+            appendWhole(out, speed);
+        }
+        return out.append(mWindParts[4]);
+    }
+
+    public String formatWind(double speed, double degrees) {
+        return formatWind(new StringBuilder(32), speed, degrees).toString();
+    }
+
+    // A positive value rounded half up, in the locale's digits, as %1.0f writes it
+    private void appendWhole(StringBuilder out, double value) {
+        int whole = (int) Math.round(value);
+        int divisor = 1;
+        while (whole / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char) (mZeroDigit + (whole / divisor) % 10));
+        }
+    }
+
+    /*
+        Splits a format holding one whole number conversion (%1.0f, %.0f or %1$1.0f) and one
+        plain string conversion (%s or %2$s), in either order, into the five parts of
+        mWindParts.  Returns false for anything else, which is then left to String.format.
+     */
+    static boolean splitWindFormat(String format, String[] parts, boolean[] speedFirst) {
+        StringBuilder literal = new StringBuilder();
+        int part = 0;
+        int nextArgument = 1;
+        boolean sawSpeed = false;
+        boolean sawDirection = false;
+        for (int i = 0; i < format.length(); i++) {
+            char c = format.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            int end = i + 1;
+            while (end < format.length() && "0123456789$.".indexOf(format.charAt(end)) >= 0) {
+                end++;
+            }
+            if (end == format.length()) {
+                return false;
+            }
+            String spec = format.substring(i + 1, end);
+            char conversion = format.charAt(end);
+            i = end;
+            if (conversion == '%' && spec.isEmpty()) {
+                literal.append('%');
+                continue;
+            }
+
+            int argument;
+            int dollar = spec.indexOf('$');
+            if (dollar >= 0) {
+                try {
+                    argument = Integer.parseInt(spec.substring(0, dollar));
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                spec = spec.substring(dollar + 1);
+            } else {
+                argument = nextArgument++;
+            }
+
+            if (part == 4) {
+                return false;
+            } else if (argument == 1 && conversion == 'f'
+                    && (spec.equals(".0") || spec.equals("1.0")) && !sawSpeed) {
+                sawSpeed = true;
+                speedFirst[0] = part == 0;
+            } else if (argument != 2 || conversion != 's' || !spec.isEmpty() || sawDirection) {
+                return false;
+            } else {
+                sawDirection = true;
+            }
+            parts[part] = literal.toString();
+            literal.setLength(0);
+            part += 2;
+        }
+        parts[4] = literal.toString();
+        return sawSpeed && sawDirection;
+    }
+}
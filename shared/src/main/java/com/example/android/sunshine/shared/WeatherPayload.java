@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The forecast the phone sends to the watch face, as raw numbers rather than formatted strings,
+ * so the watch formats them itself and a change of units needs no new strings.
+ *
+ * The layout is a seven byte header (version, flags, day count, then the Julian day of the first
+ * day as a big-endian int) followed by seven bytes per day: the day's distance from the first
+ * day, then the high and low temperature in tenths of a degree Celsius and the weather id, as
+ * big-endian shorts.  Decoding a payload of an unknown version gives null, so a watch face
+ * older than the phone shows nothing rather than garbage.
+ */
+public final class WeatherPayload {
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 7;
+    static final int DAY_SIZE = 7;
+
+    // Set when the user wants temperatures in Celsius
+    static final int FLAG_METRIC = 1;
+
+    // What the forecast request asks for
+    public static final int MAX_DAYS = 14;
+
+    static final int TEMPERATURE_SCALE = 10;
+
+    private final boolean mMetric;
+    private final int[] mJulianDays;
+    private final short[] mHighTemps;
+    private final short[] mLowTemps;
+    private final short[] mWeatherIds;
+
+    private WeatherPayload(boolean metric, int count) {
+        mMetric = metric;
+        mJulianDays = new int[count];
+        mHighTemps = new short[count];
+        mLowTemps = new short[count];
+        mWeatherIds = new short[count];
+    }
+
+    /**
+     * Collects the days of a forecast, in date order, and packs them with {@link #toByteArray()}.
+     */
+    public static final class Builder {
+        private final boolean mMetric;
+        private final ByteBuffer mBuffer = ByteBuffer.allocate(HEADER_SIZE + MAX_DAYS * DAY_SIZE);
+        private int mFirstJulianDay;
+        private int mLastJulianDay;
+        private int mCount;
+
+        /**
+         * @param metric Whether the user wants temperatures in Celsius
+         */
+        public Builder(boolean metric) {
+            mMetric = metric;
+            mBuffer.position(HEADER_SIZE);
+        }
+
+        public int getDayCount() {
+            return mCount;
+        }
+
+        /**
+         * Adds a day.  Days beyond {@link #MAX_DAYS} are dropped.
+         *
+         * @param julianDay The day, later than the ones added before and less than 256 days
+         *                  after the first
+         * @param high The high temperature in degrees Celsius
+         * @param low The low temperature in degrees Celsius
+         */
+        public Builder addDay(int julianDay, double high, double low, int weatherId) {
+            if (mCount == MAX_DAYS) {
+                return this;
+            }
+            if (mCount == 0) {
+                mFirstJulianDay = julianDay;
+            } else if (julianDay <= mLastJulianDay || julianDay - mFirstJulianDay > 0xff) {
+                throw new IllegalArgumentException("Day " + julianDay + " doesn't follow "
+                        + mLastJulianDay);
+            }
+            mLastJulianDay = julianDay;
+            mBuffer.put((byte) (julianDay - mFirstJulianDay));
+            mBuffer.putShort(encodeTemperature(high));
+            mBuffer.putShort(encodeTemperature(low));
+            mBuffer.putShort((short) weatherId);
+            mCount++;
+            return this;
+        }
+
+        public byte[] toByteArray() {
+            mBuffer.put(0, (byte) VERSION);
+            mBuffer.put(1, (byte) (mMetric ? FLAG_METRIC : 0));
+            mBuffer.put(2, (byte) mCount);
+            mBuffer.putInt(3, mFirstJulianDay);
+            byte[] payload = new byte[HEADER_SIZE + mCount * DAY_SIZE];
+            System.arraycopy(mBuffer.array(), 0, payload, 0, payload.length);
+            return payload;
+        }
+    }
+
+    /**
+     * @return the forecast in the payload, or null if it was written by an unknown version or
+     * is cut short
+     */
+    public static WeatherPayload decode(byte[] payload) {
+        if (payload == null || payload.length < HEADER_SIZE || payload[0] != VERSION) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        buffer.position(1);
+        boolean metric = (buffer.get() & FLAG_METRIC) != 0;
+        int count = buffer.get() & 0xff;
+        if (count > MAX_DAYS) {
+            return null;
+        }
+        int firstJulianDay = buffer.getInt();
+        WeatherPayload forecast = new WeatherPayload(metric, count);
+        try {
+            for (int i = 0; i < count; i++) {
+                forecast.mJulianDays[i] = firstJulianDay + (buffer.get() & 0xff);
+                forecast.mHighTemps[i] = buffer.getShort();
+                forecast.mLowTemps[i] = buffer.getShort();
+                forecast.mWeatherIds[i] = buffer.getShort();
+            }
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+        return forecast;
+    }
+
+    private static short encodeTemperature(double celsius) {
+        return (short) Math.round(celsius * TEMPERATURE_SCALE);
+    }
+
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    public int getDayCount() {
+        return mJulianDays.length;
+    }
+
+    /**
+     * @return the first day on or after the given Julian day, -1 if the forecast ends before
+     */
+    public int findDay(int julianDay) {
+        for (int i = 0; i < mJulianDays.length; i++) {
+            if (mJulianDays[i] >= julianDay) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getJulianDay(int day) {
+        return mJulianDays[day];
+    }
+
+    /**
+     * @return the high temperature in degrees Celsius, to a tenth of a degree
+     */
+    public double getHighTemp(int day) {
+        return (double) mHighTemps[day] / TEMPERATURE_SCALE;
+    }
+
+    /**
+     * @return the low temperature in degrees Celsius, to a tenth of a degree
+     */
+    public double getLowTemp(int day) {
+        return (double) mLowTemps[day] / TEMPERATURE_SCALE;
+    }
+
+    public int getWeatherId(int day) {
+        return mWeatherIds[day];
+    }
+}
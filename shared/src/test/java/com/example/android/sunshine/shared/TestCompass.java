@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import junit.framework.TestCase;
+
+public class TestCompass extends TestCase {
+
+    // The chain of comparisons Utility used, see TestWeatherFormatter
+    public void testMatchesChain() {
+        for (float degrees = -90; degrees <= 450; degrees += 0.125f) {
+            assertEquals("Error: " + degrees, TestWeatherFormatter.getCompassLabel(degrees),
+                    Compass.getLabel(degrees));
+        }
+    }
+
+    public void testSectorBoundaries() {
+        for (int sector = 0; sector < Compass.LABELS.length; sector++) {
+            double start = sector * 45 - 22.5;
+            assertEquals(sector, Compass.getSector(start < 0 ? start + 360 : start));
+            assertEquals(sector, Compass.getSector(sector * 45));
+            assertEquals((sector + 7) % 8, Compass.getSector(
+                    Math.nextAfter(start < 0 ? start + 360 : start, Double.NEGATIVE_INFINITY)));
+        }
+        assertEquals("N", Compass.getLabel(Math.nextAfter(360.0, 0)));
+        assertEquals("N", Compass.getLabel(-10));
+        assertEquals("N", Compass.getLabel(Double.POSITIVE_INFINITY));
+    }
+
+    public void testUnknown() {
+        assertEquals(Compass.UNKNOWN_SECTOR, Compass.getSector(Double.NaN));
+        assertEquals(Compass.UNKNOWN, Compass.getLabel(Double.NaN));
+        assertEquals(Compass.UNKNOWN, WeatherFormatter.getCompassLabel(Float.NaN));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/*
+    Runs on the JVM, checked against java.util.Calendar in zones with and without DST.
+ */
+public class TestJulianDay extends TestCase {
+
+    static final long HOUR_IN_MILLIS = 60 * 60 * 1000;
+
+    static final String[] ZONES = {
+            "UTC", "America/Los_Angeles", "Europe/London", "Australia/Sydney", "Asia/Kolkata"
+    };
+
+    private TimeZone mDefaultZone;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDefaultZone = JulianDay.getTimeZone();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        JulianDay.setTimeZone(mDefaultZone);
+        super.tearDown();
+    }
+
+    static long utc(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    // The Julian day of the calendar date the given time has in the zone
+    static int calendarJulianDay(TimeZone zone, long millis) {
+        Calendar local = Calendar.getInstance(zone);
+        local.setTimeInMillis(millis);
+        long date = utc(local.get(Calendar.YEAR), local.get(Calendar.MONTH),
+                local.get(Calendar.DAY_OF_MONTH), 0, 0);
+        return (int) (date / JulianDay.DAY_IN_MILLIS) + JulianDay.EPOCH_JULIAN_DAY;
+    }
+
+    static long calendarStartOfDay(TimeZone zone, long millis) {
+        Calendar local = Calendar.getInstance(zone);
+        local.setTimeInMillis(millis);
+        local.set(Calendar.HOUR_OF_DAY, 0);
+        local.set(Calendar.MINUTE, 0);
+        local.set(Calendar.SECOND, 0);
+        local.set(Calendar.MILLISECOND, 0);
+        return local.getTimeInMillis();
+    }
+
+    public void testMatchesCalendar() {
+        long start = utc(2015, Calendar.DECEMBER, 31, 0, 0);
+        long end = utc(2017, Calendar.JANUARY, 2, 0, 0);
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            JulianDay.setTimeZone(zone);
+            // Every half hour for a year covers both DST transitions, and Kolkata's half hour
+            for (long millis = start; millis < end; millis += HOUR_IN_MILLIS / 2) {
+                assertEquals("Error: wrong day in " + id + " at " + millis,
+                        calendarJulianDay(zone, millis), JulianDay.fromMillis(millis));
+                assertEquals("Error: wrong start of day in " + id + " at " + millis,
+                        calendarStartOfDay(zone, millis), JulianDay.normalize(millis));
+            }
+        }
+    }
+
+    // Asks for the offset at cached first, then checks every hour from start to end against
+    // Calendar, each with only that offset cached
+    private static void checkAfterCaching(String id, long cached, long start, long end) {
+        TimeZone zone = TimeZone.getTimeZone(id);
+        for (long millis = start; millis < end; millis += HOUR_IN_MILLIS) {
+            JulianDay.setTimeZone(zone);
+            JulianDay.fromMillis(cached);
+            assertEquals("Error: wrong offset in " + id + " at " + millis,
+                    zone.getOffset(millis), JulianDay.getOffset(millis));
+            assertEquals("Error: wrong day in " + id + " at " + millis,
+                    calendarJulianDay(zone, millis), JulianDay.fromMillis(millis));
+            assertEquals("Error: wrong start of day in " + id + " at " + millis,
+                    calendarStartOfDay(zone, millis), JulianDay.normalize(millis));
+        }
+    }
+
+    // Zones that changed their offset and changed it back within a few weeks, so the offset is
+    // the same at both ends of the span around a date but not all the way through it
+    public void testShortLivedOffsets() {
+        // Cairo suspended DST for Ramadan, from 2010-08-11 to 2010-09-10
+        checkAfterCaching("Africa/Cairo", utc(2010, Calendar.SEPTEMBER, 5, 12, 0),
+                utc(2010, Calendar.AUGUST, 1, 0, 0), utc(2010, Calendar.OCTOBER, 10, 0, 0));
+        JulianDay.setTimeZone(TimeZone.getTimeZone("Africa/Cairo"));
+        JulianDay.fromMillis(utc(2010, Calendar.SEPTEMBER, 5, 12, 0));
+        assertEquals(3 * HOUR_IN_MILLIS,
+                JulianDay.getOffset(utc(2010, Calendar.SEPTEMBER, 10, 0, 0) + 34 * 1000));
+
+        // Fiji's DST lasted four weeks, from 2020-12-20 to 2021-01-17
+        checkAfterCaching("Pacific/Fiji", utc(2020, Calendar.DECEMBER, 18, 12, 0),
+                utc(2020, Calendar.NOVEMBER, 20, 0, 0), utc(2021, Calendar.JANUARY, 25, 0, 0));
+    }
+
+    public void testDayLengthAcrossDst() {
+        JulianDay.setTimeZone(TimeZone.getTimeZone("America/Los_Angeles"));
+
+        int springForward = JulianDay.fromMillis(utc(2016, Calendar.MARCH, 13, 20, 0));
+        assertEquals(23 * HOUR_IN_MILLIS,
+                JulianDay.toMillis(springForward + 1) - JulianDay.toMillis(springForward));
+
+        int fallBack = JulianDay.fromMillis(utc(2016, Calendar.NOVEMBER, 6, 20, 0));
+        assertEquals(25 * HOUR_IN_MILLIS,
+                JulianDay.toMillis(fallBack + 1) - JulianDay.toMillis(fallBack));
+
+        // The last moments before each transition are still on the day before
+        assertEquals(springForward, JulianDay.fromMillis(utc(2016, Calendar.MARCH, 13, 9, 59)));
+        assertEquals(springForward, JulianDay.fromMillis(utc(2016, Calendar.MARCH, 13, 10, 0)));
+        assertEquals(fallBack, JulianDay.fromMillis(utc(2016, Calendar.NOVEMBER, 6, 8, 59)));
+        assertEquals(fallBack, JulianDay.fromMillis(utc(2016, Calendar.NOVEMBER, 6, 9, 0)));
+    }
+
+    public void testDstStartingAtMidnight() {
+        // Sao Paulo went from 00:00 -03:00 straight to 01:00 -02:00 on 2016-10-16
+        JulianDay.setTimeZone(TimeZone.getTimeZone("America/Sao_Paulo"));
+        long transition = utc(2016, Calendar.OCTOBER, 16, 3, 0);
+        int day = JulianDay.fromMillis(transition);
+
+        assertEquals(transition, JulianDay.toMillis(day));
+        assertEquals(transition, JulianDay.normalize(transition + 12 * HOUR_IN_MILLIS));
+        assertEquals(day - 1, JulianDay.fromMillis(transition - 1));
+        assertEquals(23 * HOUR_IN_MILLIS, JulianDay.toMillis(day + 1) - JulianDay.toMillis(day));
+    }
+
+    public void testRoundTrip() {
+        for (String id : ZONES) {
+            JulianDay.setTimeZone(TimeZone.getTimeZone(id));
+            int first = JulianDay.fromMillis(utc(1969, Calendar.DECEMBER, 1, 12, 0));
+            for (int day = first; day < first + 2 * 366; day++) {
+                long millis = JulianDay.toMillis(day);
+                assertEquals(day, JulianDay.fromMillis(millis));
+                assertEquals(day - 1, JulianDay.fromMillis(millis - 1));
+                assertEquals(millis, JulianDay.normalize(millis));
+            }
+        }
+    }
+
+    public void testSetTimeZone() {
+        long millis = utc(2016, Calendar.JUNE, 1, 2, 0);
+        JulianDay.setTimeZone(TimeZone.getTimeZone("UTC"));
+        int utcDay = JulianDay.fromMillis(millis);
+        JulianDay.setTimeZone(TimeZone.getTimeZone("America/Los_Angeles"));
+        assertEquals(utcDay - 1, JulianDay.fromMillis(millis));
+        assertEquals(utc(2016, Calendar.MAY, 31, 7, 0), JulianDay.normalize(millis));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import junit.framework.TestCase;
+
+public class TestUnitConversions extends TestCase {
+
+    public void testFahrenheit() {
+        assertEquals(32, UnitConversions.celsiusToFahrenheit(0), 0);
+        assertEquals(212, UnitConversions.celsiusToFahrenheit(100), 1e-9);
+        assertEquals(-40, UnitConversions.celsiusToFahrenheit(-40), 1e-9);
+    }
+
+    public void testMilesPerHour() {
+        // The float arithmetic Utility always used
+        for (float speed = 0; speed < 150; speed += 0.25f) {
+            double expected = .621371192237334f * speed;
+            assertEquals(expected, UnitConversions.toMilesPerHour(speed), 0);
+        }
+        assertEquals(62.137, UnitConversions.toMilesPerHour(100), 0.001);
+    }
+
+    public void testBatch() {
+        double[] values = { -12.5, 0, 21.3, 40, 99.9 };
+        double[] fahrenheit = UnitConversions.celsiusToFahrenheit(values, 4, new double[5]);
+        double[] speeds = UnitConversions.toMilesPerHour(values, 4, new double[5]);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(UnitConversions.celsiusToFahrenheit(values[i]), fahrenheit[i], 0);
+            assertEquals(UnitConversions.toMilesPerHour(values[i]), speeds[i], 0);
+        }
+        // Only count values are converted
+        assertEquals(0, fahrenheit[4], 0);
+
+        double[] inPlace = values.clone();
+        assertSame(inPlace, UnitConversions.celsiusToFahrenheit(inPlace, inPlace.length, inPlace));
+        assertEquals(UnitConversions.celsiusToFahrenheit(99.9), inPlace[4], 0);
+    }
+}
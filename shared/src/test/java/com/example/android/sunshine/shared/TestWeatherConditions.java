@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import junit.framework.TestCase;
+
+public class TestWeatherConditions extends TestCase {
+
+    // Stand-ins for resource ids, the group times ten plus the kind of resource
+    static final int ICON = 1;
+    static final int ART = 2;
+    static final int BACKGROUND = 3;
+
+    static final int STRING_2XX = 1002;
+    static final int STRING_500 = 1500;
+    static final int STRING_762 = 1762;
+    static final int STRING_UNKNOWN = 1000;
+
+    static int[] byGroup(int kind) {
+        int[] resources = new int[WeatherCondition.GROUP_COUNT];
+        for (int group = 0; group < resources.length; group++) {
+            resources[group] = group * 10 + kind;
+        }
+        return resources;
+    }
+
+    static WeatherConditions buildTable() {
+        return new WeatherConditions.Builder()
+                .setIcons(byGroup(ICON))
+                .setArt(byGroup(ART))
+                .setBackgrounds(byGroup(BACKGROUND))
+                .setStrings(200, 232, STRING_2XX)
+                .setString(500, STRING_500)
+                .setString(762, STRING_762)
+                .setUnknownString(STRING_UNKNOWN)
+                .build();
+    }
+
+    public void testMatchesChains() {
+        WeatherConditions conditions = buildTable();
+        for (int code = -1; code < 1100; code++) {
+            WeatherCondition condition = conditions.get(code);
+            String slug = ConditionChains.getArtSlug(code);
+            assertEquals("Error: wrong art for " + code, slug, condition.getArtSlug());
+            assertEquals("Error: wrong image for " + code,
+                    ConditionChains.getImageUrl(code), condition.getImageUrl());
+            if (null == slug) {
+                assertEquals(WeatherCondition.GROUP_UNKNOWN, condition.getGroup());
+                assertEquals(WeatherCondition.NO_RESOURCE, condition.getIconResource());
+                assertEquals(WeatherCondition.NO_RESOURCE, condition.getBackgroundResource());
+            } else {
+                assertEquals(code, condition.getCode());
+                assertEquals(condition.getGroup() * 10 + ICON, condition.getIconResource());
+                assertEquals(condition.getGroup() * 10 + ART, condition.getArtResource());
+                assertEquals(condition.getGroup() * 10 + BACKGROUND,
+                        condition.getBackgroundResource());
+            }
+        }
+        assertEquals(WeatherCondition.GROUP_FOG, conditions.get(761).getGroup());
+        assertEquals(WeatherCondition.GROUP_STORM, conditions.get(781).getGroup());
+    }
+
+    public void testStrings() {
+        WeatherConditions conditions = buildTable();
+        assertEquals(STRING_2XX, conditions.get(200).getStringResource());
+        assertEquals(STRING_2XX, conditions.get(232).getStringResource());
+        assertEquals(STRING_500, conditions.get(500).getStringResource());
+        // Art but no string of its own
+        assertEquals(STRING_UNKNOWN, conditions.get(501).getStringResource());
+        // A string but no art
+        WeatherCondition tornado = conditions.get(762);
+        assertEquals(762, tornado.getCode());
+        assertEquals(STRING_762, tornado.getStringResource());
+        assertEquals(WeatherCondition.NO_RESOURCE, tornado.getIconResource());
+
+        WeatherCondition unknown = conditions.get(999);
+        assertEquals(WeatherCondition.UNKNOWN_CODE, unknown.getCode());
+        assertEquals(STRING_UNKNOWN, unknown.getStringResource());
+        assertSame(unknown, conditions.get(100));
+    }
+
+    public void testResourcesNotSet() {
+        WeatherCondition rain = new WeatherConditions.Builder().build().get(500);
+        assertEquals(WeatherCondition.GROUP_RAIN, rain.getGroup());
+        assertEquals(WeatherCondition.NO_RESOURCE, rain.getIconResource());
+        assertEquals(WeatherCondition.NO_RESOURCE, rain.getStringResource());
+    }
+
+    public void testWrongNumberOfGroups() {
+        try {
+            new WeatherConditions.Builder().setIcons(1, 2, 3);
+            fail("Error: icons for three groups were accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import junit.framework.TestCase;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+public class TestWeatherFormatter extends TestCase {
+
+    // The app's formats
+    static final String TEMPERATURE_FORMAT = "%1.0f\u00B0";
+    static final String WIND_KMH_FORMAT = "%1$1.0f km/h %2$s";
+    static final String WIND_MPH_FORMAT = "%1$1.0f mph %2$s";
+
+    static final Locale[] LOCALES = { Locale.US, Locale.FRANCE, Locale.forLanguageTag("ar-EG") };
+
+    static final int ALLOCATION_ITERATIONS = 10000;
+
+    // Formatting as Utility did it before
+    static String formatTemperature(Locale locale, boolean metric, double temperature) {
+        if (!metric) {
+            temperature = (temperature * 1.8) + 32;
+        }
+        return String.format(locale, TEMPERATURE_FORMAT, temperature);
+    }
+
+    static String getCompassLabel(float degrees) {
+        String direction = "Unknown";
+        if (degrees >= 337.5 || degrees < 22.5) {
+            direction = "N";
+        } else if (degrees >= 22.5 && degrees < 67.5) {
+            direction = "NE";
+        } else if (degrees >= 67.5 && degrees < 112.5) {
+            direction = "E";
+        } else if (degrees >= 112.5 && degrees < 157.5) {
+            direction = "SE";
+        } else if (degrees >= 157.5 && degrees < 202.5) {
+            direction = "S";
+        } else if (degrees >= 202.5 && degrees < 247.5) {
+            direction = "SW";
+        } else if (degrees >= 247.5 && degrees < 292.5) {
+            direction = "W";
+        } else if (degrees >= 292.5 && degrees < 337.5) {
+            direction = "NW";
+        }
+        return direction;
+    }
+
+    static String formatWind(Locale locale, boolean metric, float windSpeed, float degrees) {
+        String windFormat = WIND_KMH_FORMAT;
+        if (!metric) {
+            windFormat = WIND_MPH_FORMAT;
+            windSpeed = .621371192237334f * windSpeed;
+        }
+        return String.format(locale, windFormat, windSpeed, getCompassLabel(degrees));
+    }
+
+    static WeatherFormatter createFormatter(Locale locale, boolean metric) {
+        return new WeatherFormatter(locale, metric, TEMPERATURE_FORMAT,
+                metric ? WIND_KMH_FORMAT : WIND_MPH_FORMAT);
+    }
+
+    public void testTemperaturesMatchFormat() {
+        for (Locale locale : LOCALES) {
+            for (boolean metric : new boolean[] { true, false }) {
+                WeatherFormatter formatter = createFormatter(locale, metric);
+                // Past both ends of the tables, in steps that hit the halves
+                for (int tenths = -1500; tenths <= 1500; tenths++) {
+                    double celsius = tenths / 10.0;
+                    assertEquals("Error: " + celsius + " in " + locale + ", metric " + metric,
+                            formatTemperature(locale, metric, celsius),
+                            formatter.formatTemperature(celsius));
+                }
+                assertEquals(formatTemperature(locale, metric, Double.NaN),
+                        formatter.formatTemperature(Double.NaN));
+            }
+        }
+        assertEquals("-0\u00B0", createFormatter(Locale.US, true).formatTemperature(-0.4));
+    }
+
+    public void testTemperaturesBatch() {
+        double[] celsius = { -95.5, -0.4, 0, 12.5, 21.7, 64 };
+        for (boolean metric : new boolean[] { true, false }) {
+            WeatherFormatter formatter = createFormatter(Locale.US, metric);
+            String[] formatted = formatter.formatTemperatures(celsius, celsius.length,
+                    new String[celsius.length + 1]);
+            for (int i = 0; i < celsius.length; i++) {
+                assertEquals(formatter.formatTemperature(celsius[i]), formatted[i]);
+            }
+            assertNull(formatted[celsius.length]);
+        }
+        // Left as they were
+        assertEquals(-95.5, celsius[0], 0);
+    }
+
+    public void testTemperaturesShared() {
+        WeatherFormatter formatter = createFormatter(Locale.US, true);
+        assertSame(formatter.formatTemperature(21.2), formatter.formatTemperature(20.9));
+    }
+
+    public void testWindMatchesFormat() {
+        for (Locale locale : LOCALES) {
+            for (boolean metric : new boolean[] { true, false }) {
+                WeatherFormatter formatter = createFormatter(locale, metric);
+                for (float degrees = -45; degrees <= 405; degrees += 0.5f) {
+                    for (float speed = 0; speed < 150; speed += 0.25f) {
+                        assertEquals("Error: " + speed + " from " + degrees + " in " + locale,
+                                formatWind(locale, metric, speed, degrees),
+                                formatter.formatWind(speed, degrees));
+                    }
+                }
+                assertEquals(formatWind(locale, metric, 10, Float.NaN),
+                        formatter.formatWind(10, Float.NaN));
+            }
+        }
+    }
+
+    public void testWindFormats() {
+        String[] parts = new String[5];
+        boolean[] speedFirst = new boolean[1];
+
+        assertTrue(WeatherFormatter.splitWindFormat("%2$s a %1.0f%%", parts, speedFirst));
+        assertFalse(speedFirst[0]);
+        assertEquals("", parts[0]);
+        assertEquals(" a ", parts[2]);
+        assertEquals("%", parts[4]);
+        WeatherFormatter formatter = new WeatherFormatter(Locale.US, true, TEMPERATURE_FORMAT,
+                "Wind: %2$s at %1$.0f");
+        assertEquals("Wind: SW at 13", formatter.formatWind(12.5, 225));
+
+        assertFalse(WeatherFormatter.splitWindFormat("%1$1.1f %2$s", parts, speedFirst));
+        assertFalse(WeatherFormatter.splitWindFormat("%1$1.0f %1$1.0f", parts, speedFirst));
+        assertFalse(WeatherFormatter.splitWindFormat("%1$1.0f", parts, speedFirst));
+        assertFalse(WeatherFormatter.splitWindFormat("%1$1.0f %2$s %", parts, speedFirst));
+
+        // Left to String.format
+        formatter = new WeatherFormatter(Locale.US, true, TEMPERATURE_FORMAT, "%1$1.1f %2$s");
+        assertEquals("12.5 N", formatter.formatWind(12.5, 0));
+    }
+
+    // The bytes the current thread allocated so far, or -1 if the JVM can't tell
+    static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported()
+                || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public void testAllocations() {
+        WeatherFormatter formatter = createFormatter(Locale.US, false);
+        StringBuilder out = new StringBuilder(64);
+        // Warm up, so that the measured loop doesn't load classes or compile
+        int length = 0;
+        for (int i = 0; i < ALLOCATION_ITERATIONS; i++) {
+            length += formatter.formatTemperature(i % 40).length();
+            out.setLength(0);
+            length += formatter.formatWind(out, i % 60, i % 360).length();
+        }
+
+        long before = getAllocatedBytes();
+        if (before < 0) {
+            // This JVM can't count a thread's allocations, nothing to check
+            return;
+        }
+        for (int i = 0; i < ALLOCATION_ITERATIONS; i++) {
+            length += formatter.formatTemperature(i % 40).length();
+            out.setLength(0);
+            length += formatter.formatWind(out, i % 60, i % 360).length();
+        }
+        long allocated = getAllocatedBytes() - before;
+        assertTrue(length > 0);
+        // Anything per call would add up to at least ALLOCATION_ITERATIONS * 16 bytes
+        assertTrue("Error: " + allocated + " bytes allocated for " + ALLOCATION_ITERATIONS
+                + " temperatures and winds", allocated < ALLOCATION_ITERATIONS);
+    }
+}
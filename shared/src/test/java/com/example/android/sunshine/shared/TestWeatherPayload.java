@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import junit.framework.TestCase;
+
+public class TestWeatherPayload extends TestCase {
+
+    static final int FIRST_DAY = 2457530;
+
+    static WeatherPayload.Builder buildForecast(int days) {
+        WeatherPayload.Builder builder = new WeatherPayload.Builder(false);
+        for (int i = 0; i < days; i++) {
+            builder.addDay(FIRST_DAY + i, 20.25 + i, -3.5 - i, 800 + i);
+        }
+        return builder;
+    }
+
+    public void testRoundTrip() {
+        byte[] bytes = buildForecast(WeatherPayload.MAX_DAYS).toByteArray();
+        assertEquals(WeatherPayload.HEADER_SIZE + WeatherPayload.MAX_DAYS * WeatherPayload.DAY_SIZE,
+                bytes.length);
+
+        WeatherPayload forecast = WeatherPayload.decode(bytes);
+        assertNotNull(forecast);
+        assertFalse(forecast.isMetric());
+        assertEquals(WeatherPayload.MAX_DAYS, forecast.getDayCount());
+        for (int i = 0; i < WeatherPayload.MAX_DAYS; i++) {
+            assertEquals(FIRST_DAY + i, forecast.getJulianDay(i));
+            // Kept to a tenth of a degree
+            assertEquals(20.3 + i, forecast.getHighTemp(i), 0.001);
+            assertEquals(-3.5 - i, forecast.getLowTemp(i), 0.001);
+            assertEquals(800 + i, forecast.getWeatherId(i));
+        }
+
+        assertTrue(WeatherPayload.decode(new WeatherPayload.Builder(true).toByteArray())
+                .isMetric());
+    }
+
+    public void testGaps() {
+        byte[] bytes = new WeatherPayload.Builder(true)
+                .addDay(FIRST_DAY, 1, 0, 500)
+                .addDay(FIRST_DAY + 2, 2, 0, 501)
+                .toByteArray();
+        WeatherPayload forecast = WeatherPayload.decode(bytes);
+        assertEquals(FIRST_DAY + 2, forecast.getJulianDay(1));
+        assertEquals(0, forecast.findDay(FIRST_DAY - 1));
+        assertEquals(1, forecast.findDay(FIRST_DAY + 1));
+        assertEquals(-1, forecast.findDay(FIRST_DAY + 3));
+    }
+
+    public void testTooManyDays() {
+        WeatherPayload.Builder builder = buildForecast(WeatherPayload.MAX_DAYS + 2);
+        assertEquals(WeatherPayload.MAX_DAYS, builder.getDayCount());
+        assertEquals(WeatherPayload.MAX_DAYS,
+                WeatherPayload.decode(builder.toByteArray()).getDayCount());
+    }
+
+    public void testOutOfOrder() {
+        WeatherPayload.Builder builder = buildForecast(2);
+        try {
+            builder.addDay(FIRST_DAY + 1, 0, 0, 800);
+            fail("Error: a day repeated was accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            builder.addDay(FIRST_DAY + 256, 0, 0, 800);
+            fail("Error: a day too far from the first was accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    public void testUnreadable() {
+        assertNull(WeatherPayload.decode(null));
+        assertNull(WeatherPayload.decode(new byte[3]));
+
+        byte[] bytes = buildForecast(3).toByteArray();
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        assertNull("Error: a truncated payload was decoded", WeatherPayload.decode(truncated));
+
+        bytes[0] = WeatherPayload.VERSION + 1;
+        assertNull("Error: a payload of a newer version was decoded",
+                WeatherPayload.decode(bytes));
+    }
+}
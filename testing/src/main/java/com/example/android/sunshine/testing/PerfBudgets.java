@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.testing;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * The performance budgets in perf-budgets.properties, which the tests that time or count
+ * something check their measurements against.  A measurement fails its test once it is over
+ * its budget by more than the tolerance, a percentage the file sets and the
+ * {@value #TOLERANCE_PROPERTY} system property overrides.
+ *
+ * Every check, passed or failed, is also written to a report: one line per budget, sorted by
+ * name and without timestamps, so the reports of two commits can be diffed.  Checks are merged
+ * into the report already there, as each test class of a run checks its own budgets.
+ */
+public final class PerfBudgets {
+
+    public static final String BUDGETS_RESOURCE = "/perf-budgets.properties";
+    // The budget file's key for the tolerance, the other keys are budgets
+    public static final String TOLERANCE_KEY = "tolerance";
+
+    public static final String TOLERANCE_PROPERTY = "perf.tolerance";
+    public static final String REPORT_PROPERTY = "perf.report";
+
+    private static final String CHARSET = "UTF-8";
+
+    private static PerfBudgets sInstance;
+
+    private final Properties mBudgets;
+    private final int mTolerancePercent;
+    private final File mReport;
+
+    PerfBudgets(Properties budgets, int tolerancePercent, File report) {
+        if (tolerancePercent < 0) {
+            throw new IllegalArgumentException("Negative tolerance " + tolerancePercent);
+        }
+        mBudgets = budgets;
+        mTolerancePercent = tolerancePercent;
+        mReport = report;
+    }
+
+    /**
+     * @return the budgets the JVM tests share, reporting to the file named by the
+     * {@value #REPORT_PROPERTY} system property, if any
+     */
+    public static synchronized PerfBudgets get() {
+        if (null == sInstance) {
+            String report = System.getProperty(REPORT_PROPERTY);
+            try {
+                sInstance = load(null == report || report.isEmpty() ? null : new File(report));
+            } catch (IOException e) {
+                throw new IllegalStateException("Couldn't read " + BUDGETS_RESOURCE, e);
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Reads the budget file from the classpath.
+     *
+     * @param report where to write the report, or null not to write one
+     */
+    public static PerfBudgets load(File report) throws IOException {
+        InputStream in = PerfBudgets.class.getResourceAsStream(BUDGETS_RESOURCE);
+        if (null == in) {
+            throw new IOException(BUDGETS_RESOURCE + " is missing");
+        }
+        Properties budgets = new Properties();
+        try {
+            budgets.load(in);
+        } finally {
+            in.close();
+        }
+
+        String tolerance = System.getProperty(TOLERANCE_PROPERTY);
+        if (null == tolerance || tolerance.isEmpty()) {
+            tolerance = budgets.getProperty(TOLERANCE_KEY, "0");
+        }
+        budgets.remove(TOLERANCE_KEY);
+        try {
+            return new PerfBudgets(budgets, Integer.parseInt(tolerance.trim()), report);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid tolerance " + tolerance, e);
+        }
+    }
+
+    public int getTolerancePercent() {
+        return mTolerancePercent;
+    }
+
+    public long getBudget(String name) {
+        String budget = mBudgets.getProperty(name);
+        if (null == budget) {
+            throw new IllegalArgumentException("No budget for " + name + " in "
+                    + BUDGETS_RESOURCE);
+        }
+        return Long.parseLong(budget.trim());
+    }
+
+    /**
+     * @return the most a measurement may be, the budget times the multiplier plus the tolerance
+     */
+    public long getLimit(String name, long multiplier) {
+        return getBudget(name) * multiplier * (100 + mTolerancePercent) / 100;
+    }
+
+    public void check(String name, long measured) {
+        check(name, measured, 1);
+    }
+
+    /**
+     * Fails with an AssertionError if the measurement is over its limit, after reporting it.
+     *
+     * @param multiplier how many times the budget's work was measured, e.g. the test's scale
+     */
+    public void check(String name, long measured, long multiplier) {
+        long budget = getBudget(name) * multiplier;
+        long limit = getLimit(name, multiplier);
+        boolean over = measured > limit;
+        report(name, measured + " of " + budget + " (limit " + limit + ")"
+                + (over ? " OVER" : ""));
+        if (over) {
+            throw new AssertionError("Error: " + name + " was " + measured + ", over its budget of "
+                    + budget + " by more than " + mTolerancePercent + "%");
+        }
+    }
+
+    private void report(String name, String line) {
+        if (null == mReport) {
+            return;
+        }
+        // One lock for every instance, as they may share the file
+        synchronized (PerfBudgets.class) {
+            try {
+                TreeMap<String, String> lines = readReport(mReport);
+                lines.put(name, line);
+                writeReport(mReport, lines);
+            } catch (IOException e) {
+                throw new IllegalStateException("Couldn't write " + mReport, e);
+            }
+        }
+    }
+
+    static TreeMap<String, String> readReport(File report) throws IOException {
+        TreeMap<String, String> lines = new TreeMap<String, String>();
+        if (!report.exists()) {
+            return lines;
+        }
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(report), CHARSET));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(": ");
+                if (separator > 0) {
+                    lines.put(line.substring(0, separator), line.substring(separator + 2));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private static void writeReport(File report, TreeMap<String, String> lines)
+            throws IOException {
+        File parent = report.getAbsoluteFile().getParentFile();
+        if (null != parent && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Couldn't create " + parent);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(report), CHARSET);
+        try {
+            for (Map.Entry<String, String> line : lines.entrySet()) {
+                writer.write(line.getKey() + ": " + line.getValue() + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
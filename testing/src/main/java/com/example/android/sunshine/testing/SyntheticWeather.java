@@ -0,0 +1,477 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.testing;
+
+import com.example.android.sunshine.shared.JulianDay;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates locations and their weather, as much of it as a scale test wants, along with the
+ * OpenWeatherMap responses that would have delivered it.
+ *
+ * Everything is a function of the seed and the location and day asked for, so the same data
+ * comes back however much of it is generated and in whatever order.  Values are plausible
+ * rather than real: temperatures follow the latitude and season, the conditions follow the
+ * temperature, and numbers are kept to two decimals so they survive the trip through JSON
+ * unchanged.
+ */
+public final class SyntheticWeather {
+
+    public static final long DEFAULT_SEED = 20160516L;
+
+    // OpenWeatherMap's 3-hourly forecast
+    public static final int SLOTS_PER_DAY = 8;
+    public static final int SECONDS_PER_SLOT = 3 * 60 * 60;
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    // The Julian day of 2000-07-14, the middle of a northern summer
+    private static final int MID_JULY_2000 = 2451740;
+
+    private static final String[] CITY_PREFIXES = {
+            "Spring", "River", "Oak", "Maple", "Lake", "Fair", "Green", "Mill", "Clear", "Stone",
+            "Pine", "Cedar", "Bright", "North", "West", "Silver"
+    };
+    private static final String[] CITY_SUFFIXES = {
+            "field", "ton", "ville", "wood", "dale", "port", "ford", "view", "haven", "brook"
+    };
+
+    /**
+     * A place, named as the location setting would name it.
+     */
+    public static final class Location {
+        private final int mIndex;
+        private final String mSetting;
+        private final String mCityName;
+        private final double mLatitude;
+        private final double mLongitude;
+
+        Location(int index, String setting, String cityName, double latitude,
+                 double longitude) {
+            mIndex = index;
+            mSetting = setting;
+            mCityName = cityName;
+            mLatitude = latitude;
+            mLongitude = longitude;
+        }
+
+        public int getIndex() {
+            return mIndex;
+        }
+
+        /**
+         * @return a postal code like string, unique to the location's index
+         */
+        public String getSetting() {
+            return mSetting;
+        }
+
+        public String getCityName() {
+            return mCityName;
+        }
+
+        public double getLatitude() {
+            return mLatitude;
+        }
+
+        public double getLongitude() {
+            return mLongitude;
+        }
+    }
+
+    /**
+     * One day of a location's forecast, in the units the app stores.
+     */
+    public static final class Day {
+        private final int mJulianDay;
+        private final double mHigh;
+        private final double mLow;
+        private final double mPressure;
+        private final int mHumidity;
+        private final double mWindSpeed;
+        private final double mDegrees;
+        private final int mWeatherId;
+
+        Day(int julianDay, double high, double low, double pressure, int humidity,
+            double windSpeed, double degrees, int weatherId) {
+            mJulianDay = julianDay;
+            mHigh = high;
+            mLow = low;
+            mPressure = pressure;
+            mHumidity = humidity;
+            mWindSpeed = windSpeed;
+            mDegrees = degrees;
+            mWeatherId = weatherId;
+        }
+
+        public int getJulianDay() {
+            return mJulianDay;
+        }
+
+        public double getHigh() {
+            return mHigh;
+        }
+
+        public double getLow() {
+            return mLow;
+        }
+
+        public double getPressure() {
+            return mPressure;
+        }
+
+        public int getHumidity() {
+            return mHumidity;
+        }
+
+        public double getWindSpeed() {
+            return mWindSpeed;
+        }
+
+        public double getDegrees() {
+            return mDegrees;
+        }
+
+        public int getWeatherId() {
+            return mWeatherId;
+        }
+
+        /**
+         * @return the short description OpenWeatherMap gives the condition, e.g. "Rain"
+         */
+        public String getDescription() {
+            return SyntheticWeather.getDescription(mWeatherId);
+        }
+    }
+
+    /**
+     * One 3-hour slot of a location's intraday forecast.
+     */
+    public static final class Slot {
+        private final long mTime;
+        private final double mTemperature;
+        private final double mPressure;
+        private final int mHumidity;
+        private final double mWindSpeed;
+        private final double mDegrees;
+        private final int mWeatherId;
+
+        Slot(long time, double temperature, double pressure, int humidity, double windSpeed,
+             double degrees, int weatherId) {
+            mTime = time;
+            mTemperature = temperature;
+            mPressure = pressure;
+            mHumidity = humidity;
+            mWindSpeed = windSpeed;
+            mDegrees = degrees;
+            mWeatherId = weatherId;
+        }
+
+        /**
+         * @return the start of the slot, in seconds since the epoch as OpenWeatherMap has it
+         */
+        public long getTime() {
+            return mTime;
+        }
+
+        public double getTemperature() {
+            return mTemperature;
+        }
+
+        public double getPressure() {
+            return mPressure;
+        }
+
+        public int getHumidity() {
+            return mHumidity;
+        }
+
+        public double getWindSpeed() {
+            return mWindSpeed;
+        }
+
+        public double getDegrees() {
+            return mDegrees;
+        }
+
+        public int getWeatherId() {
+            return mWeatherId;
+        }
+    }
+
+    private final long mSeed;
+
+    public SyntheticWeather() {
+        this(DEFAULT_SEED);
+    }
+
+    public SyntheticWeather(long seed) {
+        mSeed = seed;
+    }
+
+    // A generator for one thing, which doesn't depend on what else has been generated
+    private Random random(long kind, long location, long item) {
+        long hash = mSeed;
+        hash = hash * 31 + kind;
+        hash = hash * 1000003 + location;
+        hash = hash * 1000003 + item;
+        return new Random(hash);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    public Location getLocation(int index) {
+        Random random = random(1, index, 0);
+        String city = CITY_PREFIXES[random.nextInt(CITY_PREFIXES.length)]
+                + CITY_SUFFIXES[random.nextInt(CITY_SUFFIXES.length)];
+        // Most people live well away from the poles
+        double latitude = round(-55 + random.nextDouble() * 125);
+        double longitude = round(-180 + random.nextDouble() * 360);
+        return new Location(index, String.format(Locale.US, "%05d", index),
+                city + " " + (index + 1), latitude, longitude);
+    }
+
+    /**
+     * @return the given number of days of the location's forecast, from the given Julian day on
+     */
+    public Day[] getDays(int location, int firstJulianDay, int count) {
+        Location place = getLocation(location);
+        Day[] days = new Day[count];
+        for (int i = 0; i < count; i++) {
+            days[i] = getDay(place, firstJulianDay + i);
+        }
+        return days;
+    }
+
+    private Day getDay(Location location, int julianDay) {
+        Random random = random(2, location.getIndex(), julianDay);
+
+        double latitude = location.getLatitude();
+        // Warmest in mid July in the north, mid January in the south
+        double season = Math.cos(2 * Math.PI * (julianDay - MID_JULY_2000) / 365.2425);
+        if (latitude < 0) {
+            season = -season;
+        }
+        double mean = 28 - 0.45 * Math.abs(latitude)
+                + season * 0.3 * Math.abs(latitude)
+                + random.nextGaussian() * 3;
+        double range = 4 + random.nextDouble() * 10;
+        double high = round(mean + range / 2);
+        double low = round(mean - range / 2);
+
+        int humidity = 25 + random.nextInt(76);
+        double pressure = round(990 + random.nextDouble() * 45);
+        double windSpeed = round(Math.abs(random.nextGaussian()) * 5);
+        double degrees = round(random.nextDouble() * 360);
+        if (degrees >= 360) {
+            degrees = 0;
+        }
+        return new Day(julianDay, high, low, pressure, humidity, windSpeed, degrees,
+                pickCondition(random, humidity, high, low));
+    }
+
+    // Wetter the more humid it is, snow when it is freezing, storms when it is hot
+    private static int pickCondition(Random random, int humidity, double high, double low) {
+        double wet = random.nextDouble() * 100;
+        if (wet < humidity - 40) {
+            if (high < 1) {
+                return pick(random, 600, 601, 602, 611, 621);
+            }
+            if (low < 1 && random.nextBoolean()) {
+                return pick(random, 611, 612, 615, 616);
+            }
+            if (high > 25 && random.nextInt(3) == 0) {
+                return pick(random, 200, 201, 211, 212, 231);
+            }
+            return pick(random, 300, 301, 500, 500, 501, 501, 502, 520, 521);
+        }
+        if (humidity > 90 && random.nextInt(4) == 0) {
+            return pick(random, 701, 721, 741);
+        }
+        return pick(random, 800, 800, 800, 801, 802, 803, 804);
+    }
+
+    private static int pick(Random random, int... codes) {
+        return codes[random.nextInt(codes.length)];
+    }
+
+    /**
+     * @return the 3-hourly forecast of the location's day, from midnight UTC
+     */
+    public Slot[] getSlots(int location, int julianDay) {
+        Day day = getDay(getLocation(location), julianDay);
+        Random random = random(3, location, julianDay);
+        long start = (long) (julianDay - JulianDay.EPOCH_JULIAN_DAY) * SECONDS_PER_DAY;
+
+        Slot[] slots = new Slot[SLOTS_PER_DAY];
+        for (int i = 0; i < SLOTS_PER_DAY; i++) {
+            // Coldest at 3am, warmest at 3pm
+            double warmth = (1 - Math.cos(2 * Math.PI * (i * 3 - 3) / 24.0)) / 2;
+            double temperature = round(day.getLow() + (day.getHigh() - day.getLow()) * warmth);
+            int humidity = Math.max(0, Math.min(100,
+                    day.getHumidity() + random.nextInt(11) - 5));
+            double pressure = round(day.getPressure() + random.nextGaussian());
+            double windSpeed = round(Math.max(0, day.getWindSpeed() + random.nextGaussian()));
+            double degrees = round((day.getDegrees() + random.nextInt(31) + 345) % 360);
+            int weatherId = random.nextInt(4) == 0
+                    ? pickCondition(random, humidity, temperature, temperature)
+                    : day.getWeatherId();
+            slots[i] = new Slot(start + i * SECONDS_PER_SLOT, temperature, pressure, humidity,
+                    windSpeed, degrees, weatherId);
+        }
+        return slots;
+    }
+
+    /**
+     * @return OpenWeatherMap's short description of the condition, e.g. "Clouds"
+     */
+    public static String getDescription(int weatherId) {
+        if (weatherId >= 200 && weatherId < 300) {
+            return "Thunderstorm";
+        } else if (weatherId >= 300 && weatherId < 400) {
+            return "Drizzle";
+        } else if (weatherId >= 500 && weatherId < 600) {
+            return "Rain";
+        } else if (weatherId >= 600 && weatherId < 700) {
+            return "Snow";
+        } else if (weatherId == 701) {
+            return "Mist";
+        } else if (weatherId == 721) {
+            return "Haze";
+        } else if (weatherId == 741) {
+            return "Fog";
+        } else if (weatherId == 800) {
+            return "Clear";
+        } else if (weatherId > 800 && weatherId < 900) {
+            return "Clouds";
+        }
+        return "Extreme";
+    }
+
+    /**
+     * @return the forecast/daily response for the location, as the sync adapter requests it
+     */
+    public String toDailyJson(int location, int firstJulianDay, int count) {
+        Location place = getLocation(location);
+        Day[] days = getDays(location, firstJulianDay, count);
+
+        StringBuilder json = new StringBuilder(256 + count * 300);
+        json.append("{\"city\":{\"id\":").append(1000000 + location)
+                .append(",\"name\":");
+        appendString(json, place.getCityName());
+        json.append(",\"coord\":{\"lon\":").append(place.getLongitude())
+                .append(",\"lat\":").append(place.getLatitude())
+                .append("},\"country\":\"ZZ\",\"population\":0},")
+                .append("\"cod\":\"200\",\"message\":0.01,\"cnt\":").append(count)
+                .append(",\"list\":[");
+        for (int i = 0; i < count; i++) {
+            Day day = days[i];
+            if (i > 0) {
+                json.append(',');
+            }
+            double mean = round((day.getHigh() + day.getLow()) / 2);
+            json.append("{\"dt\":").append(noonSeconds(day.getJulianDay()))
+                    .append(",\"temp\":{\"day\":").append(mean)
+                    .append(",\"min\":").append(day.getLow())
+                    .append(",\"max\":").append(day.getHigh())
+                    .append(",\"night\":").append(day.getLow())
+                    .append(",\"eve\":").append(mean)
+                    .append(",\"morn\":").append(day.getLow())
+                    .append("},\"pressure\":").append(day.getPressure())
+                    .append(",\"humidity\":").append(day.getHumidity())
+                    .append(",\"weather\":[");
+            appendCondition(json, day.getWeatherId());
+            json.append("],\"speed\":").append(day.getWindSpeed())
+                    .append(",\"deg\":").append(day.getDegrees())
+                    .append(",\"clouds\":").append(day.getWeatherId() > 800 ? 75 : 0)
+                    .append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * @return the 3-hourly forecast response for the location, for the given days
+     */
+    public String toIntradayJson(int location, int firstJulianDay, int days) {
+        Location place = getLocation(location);
+
+        StringBuilder json = new StringBuilder(256 + days * SLOTS_PER_DAY * 200);
+        json.append("{\"cod\":\"200\",\"message\":0.01,\"cnt\":").append(days * SLOTS_PER_DAY)
+                .append(",\"list\":[");
+        for (int d = 0; d < days; d++) {
+            Slot[] slots = getSlots(location, firstJulianDay + d);
+            for (int i = 0; i < slots.length; i++) {
+                Slot slot = slots[i];
+                if (d > 0 || i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"dt\":").append(slot.getTime())
+                        .append(",\"main\":{\"temp\":").append(slot.getTemperature())
+                        .append(",\"pressure\":").append(slot.getPressure())
+                        .append(",\"humidity\":").append(slot.getHumidity())
+                        .append("},\"weather\":[");
+                appendCondition(json, slot.getWeatherId());
+                json.append("],\"wind\":{\"speed\":").append(slot.getWindSpeed())
+                        .append(",\"deg\":").append(slot.getDegrees())
+                        .append("}}");
+            }
+        }
+        json.append("],\"city\":{\"id\":").append(1000000 + location).append(",\"name\":");
+        appendString(json, place.getCityName());
+        json.append(",\"coord\":{\"lon\":").append(place.getLongitude())
+                .append(",\"lat\":").append(place.getLatitude())
+                .append("},\"country\":\"ZZ\"}}");
+        return json.toString();
+    }
+
+    /**
+     * @return what OpenWeatherMap answers for a location it doesn't know
+     */
+    public static String toNotFoundJson() {
+        return "{\"cod\":\"404\",\"message\":\"Error: Not found city\"}";
+    }
+
+    private static long noonSeconds(int julianDay) {
+        return (long) (julianDay - JulianDay.EPOCH_JULIAN_DAY) * SECONDS_PER_DAY
+                + SECONDS_PER_DAY / 2;
+    }
+
+    private static void appendCondition(StringBuilder json, int weatherId) {
+        String description = getDescription(weatherId);
+        json.append("{\"id\":").append(weatherId).append(",\"main\":");
+        appendString(json, description);
+        json.append(",\"description\":");
+        appendString(json, description.toLowerCase(Locale.US));
+        json.append(",\"icon\":\"01d\"}");
+    }
+
+    // Names are generated, so only quotes and backslashes could need escaping
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\');
+            }
+            json.append(c);
+        }
+        json.append('"');
+    }
+}
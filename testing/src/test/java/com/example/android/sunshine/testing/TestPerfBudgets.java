@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.testing;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.TreeMap;
+
+public class TestPerfBudgets extends TestCase {
+
+    private File mReport;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mReport = File.createTempFile("perf-report", ".txt");
+        assertTrue(mReport.delete());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mReport.delete();
+        super.tearDown();
+    }
+
+    private PerfBudgets create(int tolerancePercent) {
+        Properties budgets = new Properties();
+        budgets.setProperty("sync.ms", "100");
+        budgets.setProperty("bind.allocations", " 40 ");
+        return new PerfBudgets(budgets, tolerancePercent, mReport);
+    }
+
+    public void testBudgetFile() throws IOException {
+        PerfBudgets budgets = PerfBudgets.load(null);
+        // Every budget the tests check is there
+        String[] names = {"provider.create.ms", "provider.bulk_insert.ms",
+                "provider.bulk_insert_intraday.ms", "provider.query.ms", "sync.full.ms",
+                "sync.resync.ms", "sync.many_locations.slowest.ms", "adapter.bind.allocations",
+                "watchface.draw.us"};
+        for (String name : names) {
+            assertTrue(name, budgets.getBudget(name) > 0);
+        }
+        try {
+            budgets.getBudget(PerfBudgets.TOLERANCE_KEY);
+            fail("Error: the tolerance was read as a budget");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    public void testLimit() {
+        PerfBudgets budgets = create(25);
+        assertEquals(100, budgets.getBudget("sync.ms"));
+        assertEquals(40, budgets.getBudget("bind.allocations"));
+        assertEquals(125, budgets.getLimit("sync.ms", 1));
+        assertEquals(1250, budgets.getLimit("sync.ms", 10));
+        assertEquals(40, create(0).getLimit("bind.allocations", 1));
+    }
+
+    public void testCheck() throws IOException {
+        PerfBudgets budgets = create(25);
+        budgets.check("sync.ms", 125);
+        budgets.check("sync.ms", 1250, 10);
+        // fail() throws an AssertionError too
+        boolean failed = false;
+        try {
+            budgets.check("sync.ms", 126);
+        } catch (AssertionError e) {
+            failed = true;
+        }
+        assertTrue("Error: a measurement over the tolerance passed", failed);
+        try {
+            budgets.check("unknown.ms", 1);
+            fail("Error: a measurement without a budget passed");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        // The last measurement of each budget is reported, the failed one too
+        TreeMap<String, String> report = PerfBudgets.readReport(mReport);
+        assertEquals(1, report.size());
+        assertEquals("126 of 100 (limit 125) OVER", report.get("sync.ms"));
+    }
+
+    public void testReportMerged() throws IOException {
+        create(0).check("sync.ms", 90);
+        create(0).check("bind.allocations", 12);
+        create(0).check("sync.ms", 80);
+
+        TreeMap<String, String> report = PerfBudgets.readReport(mReport);
+        assertEquals(2, report.size());
+        assertEquals("80 of 100 (limit 100)", report.get("sync.ms"));
+        assertEquals("12 of 40 (limit 40)", report.get("bind.allocations"));
+        // Sorted, so two runs' reports diff line by line
+        assertEquals("bind.allocations", report.firstKey());
+    }
+
+    public void testNoReport() {
+        Properties budgets = new Properties();
+        budgets.setProperty("sync.ms", "100");
+        new PerfBudgets(budgets, 0, null).check("sync.ms", 100);
+        assertFalse(mReport.exists());
+    }
+}
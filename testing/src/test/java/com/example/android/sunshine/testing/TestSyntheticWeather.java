@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.testing;
+
+import com.example.android.sunshine.shared.JulianDay;
+
+import junit.framework.TestCase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class TestSyntheticWeather extends TestCase {
+
+    static final int FIRST_DAY = 2457530;
+
+    public void testDeterministic() {
+        SyntheticWeather weather = new SyntheticWeather();
+        String json = weather.toDailyJson(7, FIRST_DAY, 14);
+        assertEquals(json, new SyntheticWeather().toDailyJson(7, FIRST_DAY, 14));
+        assertEquals(weather.toIntradayJson(7, FIRST_DAY, 5),
+                new SyntheticWeather().toIntradayJson(7, FIRST_DAY, 5));
+
+        assertFalse("Error: the seed made no difference",
+                json.equals(new SyntheticWeather(1).toDailyJson(7, FIRST_DAY, 14)));
+        assertFalse("Error: two locations got the same weather",
+                json.equals(weather.toDailyJson(8, FIRST_DAY, 14)));
+    }
+
+    public void testIndependentOfOrder() {
+        SyntheticWeather weather = new SyntheticWeather();
+        SyntheticWeather.Day[] days = weather.getDays(3, FIRST_DAY, 14);
+        weather.getDays(4, FIRST_DAY, 100);
+        SyntheticWeather.Day day = weather.getDays(3, FIRST_DAY + 5, 1)[0];
+
+        assertEquals(FIRST_DAY + 5, day.getJulianDay());
+        assertEquals(days[5].getHigh(), day.getHigh(), 0);
+        assertEquals(days[5].getLow(), day.getLow(), 0);
+        assertEquals(days[5].getWeatherId(), day.getWeatherId());
+    }
+
+    public void testPlausible() {
+        SyntheticWeather weather = new SyntheticWeather();
+        HashSet<String> settings = new HashSet<String>();
+        HashSet<String> descriptions = new HashSet<String>();
+        for (int location = 0; location < 200; location++) {
+            SyntheticWeather.Location place = weather.getLocation(location);
+            assertTrue("Error: duplicate setting " + place.getSetting(),
+                    settings.add(place.getSetting()));
+            assertTrue(Math.abs(place.getLatitude()) <= 90);
+            assertTrue(Math.abs(place.getLongitude()) <= 180);
+
+            for (SyntheticWeather.Day day : weather.getDays(location, FIRST_DAY, 365)) {
+                assertTrue(day.getHigh() >= day.getLow());
+                assertTrue(day.getHigh() < 60 && day.getLow() > -90);
+                assertTrue(day.getHumidity() >= 0 && day.getHumidity() <= 100);
+                assertTrue(day.getDegrees() >= 0 && day.getDegrees() < 360);
+                assertTrue(day.getWindSpeed() >= 0);
+                assertTrue(day.getPressure() > 900 && day.getPressure() < 1100);
+                descriptions.add(day.getDescription());
+            }
+        }
+        // Every kind of weather comes up
+        assertTrue("Error: only " + descriptions, descriptions.containsAll(Arrays
+                .asList("Clear", "Clouds", "Rain", "Snow", "Thunderstorm", "Drizzle")));
+    }
+
+    public void testDailyJson() throws Exception {
+        SyntheticWeather weather = new SyntheticWeather();
+        SyntheticWeather.Location place = weather.getLocation(11);
+        SyntheticWeather.Day[] days = weather.getDays(11, FIRST_DAY, 16);
+
+        // Read the way the sync adapter reads it
+        JSONObject forecast = new JSONObject(weather.toDailyJson(11, FIRST_DAY, 16));
+        assertEquals(200, forecast.getInt("cod"));
+        JSONObject city = forecast.getJSONObject("city");
+        assertEquals(place.getCityName(), city.getString("name"));
+        assertEquals(place.getLatitude(), city.getJSONObject("coord").getDouble("lat"), 0);
+        assertEquals(place.getLongitude(), city.getJSONObject("coord").getDouble("lon"), 0);
+        JSONArray list = forecast.getJSONArray("list");
+        assertEquals(days.length, list.length());
+        for (int i = 0; i < days.length; i++) {
+            JSONObject day = list.getJSONObject(i);
+            assertEquals(days[i].getHigh(), day.getJSONObject("temp").getDouble("max"), 0);
+            assertEquals(days[i].getLow(), day.getJSONObject("temp").getDouble("min"), 0);
+            assertEquals(days[i].getPressure(), day.getDouble("pressure"), 0);
+            assertEquals(days[i].getHumidity(), day.getInt("humidity"));
+            assertEquals(days[i].getWindSpeed(), day.getDouble("speed"), 0);
+            assertEquals(days[i].getDegrees(), day.getDouble("deg"), 0);
+            JSONObject condition = day.getJSONArray("weather").getJSONObject(0);
+            assertEquals(days[i].getWeatherId(), condition.getInt("id"));
+            assertEquals(days[i].getDescription(), condition.getString("main"));
+        }
+
+        assertEquals(404, new JSONObject(SyntheticWeather.toNotFoundJson()).getInt("cod"));
+    }
+
+    public void testIntradayJson() throws Exception {
+        SyntheticWeather weather = new SyntheticWeather();
+        JSONArray list = new JSONObject(weather.toIntradayJson(2, FIRST_DAY, 5))
+                .getJSONArray("list");
+        assertEquals(5 * SyntheticWeather.SLOTS_PER_DAY, list.length());
+
+        for (int d = 0; d < 5; d++) {
+            SyntheticWeather.Slot[] slots = weather.getSlots(2, FIRST_DAY + d);
+            for (int i = 0; i < slots.length; i++) {
+                JSONObject slot = list.getJSONObject(d * SyntheticWeather.SLOTS_PER_DAY + i);
+                assertEquals(slots[i].getTime(), slot.getLong("dt"));
+                assertEquals(FIRST_DAY + d, (int) (slot.getLong("dt") / (24 * 60 * 60))
+                        + JulianDay.EPOCH_JULIAN_DAY);
+                JSONObject main = slot.getJSONObject("main");
+                assertEquals(slots[i].getTemperature(), main.getDouble("temp"), 0);
+                assertEquals(slots[i].getHumidity(), main.getInt("humidity"));
+                assertEquals(slots[i].getWeatherId(),
+                        slot.getJSONArray("weather").getJSONObject(0).getInt("id"));
+                assertEquals(slots[i].getDegrees(),
+                        slot.getJSONObject("wind").getDouble("deg"), 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.testing.PerfBudgets;
+
+import java.io.File;
+import java.util.Calendar;
+
+/*
+    Times the watch face's frames, drawn into a bitmap the size of a round watch's screen, and
+    checks the average against watchface.draw.us in perf-budgets.properties.  The report is
+    written to the external files directory, run
+        adb pull /sdcard/Android/data/com.example.android.sunshine.app/files/perf-report.txt
+    to get it.
+ */
+public class TestWatchFaceRenderer extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestWatchFaceRenderer.class.getSimpleName();
+
+    static final String REPORT_NAME = "perf-report.txt";
+
+    static final int SIZE = 320;
+    static final int WARMUP_FRAMES = 50;
+    static final int FRAMES = 500;
+
+    private WatchFaceRenderer mRenderer;
+    private Bitmap mFrame;
+    private Canvas mCanvas;
+    private Rect mBounds;
+    private Calendar mTime;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Resources resources = mContext.getResources();
+        mRenderer = new WatchFaceRenderer(resources);
+        mRenderer.setRound(resources, true);
+        mRenderer.setYOffset(SIZE / 2);
+        mRenderer.setTemperatures("25\u00B0", "16\u00B0");
+        // Scaled to the screen, as the engine does
+        mRenderer.setBackground(Bitmap.createScaledBitmap(BitmapFactory.decodeResource(resources,
+                Utility.getBackgroundForWeatherID(800)), SIZE, SIZE, true));
+
+        mFrame = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mFrame);
+        mBounds = new Rect(0, 0, SIZE, SIZE);
+        mTime = Calendar.getInstance();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFrame.recycle();
+        super.tearDown();
+    }
+
+    // Frames half a second apart, as in interactive mode
+    private void drawFrames(int frames, boolean ambient) {
+        for (int i = 0; i < frames; i++) {
+            mTime.setTimeInMillis(1463400000000L + i * 500L);
+            mRenderer.draw(mCanvas, mBounds, mTime, i % 4 < 2, ambient, i % 2 == 0);
+        }
+    }
+
+    public void testDraws() {
+        mFrame.eraseColor(Color.TRANSPARENT);
+        drawFrames(1, true);
+        assertEquals("Error: the ambient face isn't black", Color.BLACK,
+                mFrame.getPixel(0, 0));
+
+        mFrame.eraseColor(Color.TRANSPARENT);
+        drawFrames(1, false);
+        assertTrue("Error: nothing was drawn", Color.alpha(mFrame.getPixel(0, 0)) > 0);
+    }
+
+    public void testDrawTime() throws Exception {
+        drawFrames(WARMUP_FRAMES, false);
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        drawFrames(FRAMES, false);
+        long perFrame = (SystemClock.elapsedRealtimeNanos() - start) / FRAMES / 1000;
+
+        Log.i(LOG_TAG, "Interactive frame: " + perFrame + " us");
+        File directory = mContext.getExternalFilesDir(null);
+        PerfBudgets.load(new File(null != directory ? directory : mContext.getFilesDir(),
+                REPORT_NAME)).check("watchface.draw.us", perFrame);
+    }
+}
@@ -24,11 +24,8 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
-import android.graphics.Typeface;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -42,6 +39,9 @@ import android.view.Gravity;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
+import com.example.android.sunshine.shared.JulianDay;
+import com.example.android.sunshine.shared.WearProtocol;
+import com.example.android.sunshine.shared.WeatherPayload;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.wearable.DataApi;
@@ -63,8 +63,6 @@ import java.util.TimeZone;
 public class SunshineWatchFace
         extends CanvasWatchFaceService {
 
-    private static final Typeface NORMAL_TYPEFACE = Typeface.create( Typeface.SANS_SERIF,
-                                                                     Typeface.NORMAL );
     private static final String TAG = "SunshineWatchFace";
 
     /**
@@ -88,15 +86,10 @@ public class SunshineWatchFace
 
         final Handler mUpdateTimeHandler = new EngineHandler( this );
 
-        static final String COLON_STRING = ":";
-
         boolean mRegisteredTimeZoneReceiver = false;
         boolean mAmbient;
-        boolean mShouldDrawColons;
 
-        int   mBackgroundColor;
-        Paint mTextPaint;
-        Paint mTemperaturePaint;
+        WatchFaceRenderer mRenderer;
 
         Calendar mCalendar;
 
@@ -108,28 +101,17 @@ public class SunshineWatchFace
                     mCalendar.getTimeZone();
                 }
                 mCalendar.setTimeZone( TimeZone.getDefault());
+                JulianDay.setTimeZone( TimeZone.getDefault() );
                 invalidate();
             }
         };
 
-        float mXOffset;
-        float mYOffset;
-        float mColonWidth;
-
-        private static final String WEATHER_DATA_PATH = "/weather_data";
-        private static final String HIGH_TEMP_KEY = "highTemp";
-        private static final String LOW_TEMP_KEY = "lowTemp";
-        private static final String WEATHER_ID_KEY = "weatherID";
+        // The forecast last received from the phone, and the day of it being shown
+        private WeatherPayload mForecast;
+        private int mShownJulianDay;
 
-        private static final String NO_WEATHER = "/no_data";
-        private static final String DATA_REQUEST = "dataRequest";
-
-        private String hTemp;
-        private String lTemp;
         private int weatherId = -1;
 
-        private Bitmap mBackgroundBitmap;
-
         /**
          * Whether the display supports fewer bits for each color in ambient mode. When true, we
          * disable anti-aliasing in ambient mode.
@@ -161,13 +143,7 @@ public class SunshineWatchFace
 
             resources = SunshineWatchFace.this.getResources();
 
-            mBackgroundColor = resources.getColor( R.color.background ) ;
-
-            mTextPaint = new Paint();
-            mTextPaint = createTextPaint( R.color.text, -1 );
-
-            mTemperaturePaint = new Paint();
-            mTemperaturePaint = createTextPaint( R.color.text, 40 );
+            mRenderer = new WatchFaceRenderer( resources );
 
             mCalendar = Calendar.getInstance();
 
@@ -177,8 +153,9 @@ public class SunshineWatchFace
             // Default Values
             noData = true;
             weatherId = 800;
-            hTemp = String.format(SunshineWatchFace.this.getString(R.string.format_temperature), 18f);
-            lTemp = String.format(SunshineWatchFace.this.getString(R.string.format_temperature), 16f);
+            mRenderer.setTemperatures(
+                    String.format(SunshineWatchFace.this.getString(R.string.format_temperature), 18f),
+                    String.format(SunshineWatchFace.this.getString(R.string.format_temperature), 16f) );
             getBitmap( weatherId );
         }
 
@@ -191,21 +168,6 @@ public class SunshineWatchFace
             super.onDestroy();
         }
 
-        private Paint createTextPaint (int textColor, float size) {
-            Paint paint = new Paint();
-            paint.setColor( textColor );
-            paint.setTypeface( NORMAL_TYPEFACE );
-            paint.setAntiAlias( true );
-
-            if (size > 0) {
-                paint.setTextSize( size );
-            } else {
-                paint.setTextAlign( Paint.Align.RIGHT );
-            }
-
-            return paint;
-        }
-
         @Override
         public void onVisibilityChanged (boolean visible) {
             super.onVisibilityChanged( visible );
@@ -244,14 +206,7 @@ public class SunshineWatchFace
             super.onApplyWindowInsets( insets );
 
             // Load resources that have alternate values for round watches.
-            Resources resources = SunshineWatchFace.this.getResources();
-            boolean   isRound   = insets.isRound();
-            mXOffset = resources.getDimension( isRound ? R.dimen.digital_x_offset_round : R.dimen.digital_x_offset );
-            float textSize = resources.getDimension( isRound ? R.dimen.digital_text_size_round : R.dimen.digital_text_size );
-
-            mTextPaint.setTextSize( textSize );
-
-            mColonWidth = mTextPaint.measureText( COLON_STRING );
+            mRenderer.setRound( SunshineWatchFace.this.getResources(), insets.isRound() );
         }
 
         @Override
@@ -272,7 +227,7 @@ public class SunshineWatchFace
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
                 if (mLowBitAmbient) {
-                    mTextPaint.setAntiAlias( !inAmbientMode );
+                    mRenderer.setAntiAlias( !inAmbientMode );
                 }
                 invalidate();
             }
@@ -290,6 +245,11 @@ public class SunshineWatchFace
             mCalendar.setTimeInMillis( now );
             boolean is24Hour = DateFormat.is24HourFormat( SunshineWatchFace.this );
 
+            // Move on to the next day of the forecast at midnight
+            if (mForecast != null && JulianDay.fromMillis( now ) != mShownJulianDay) {
+                showForecast();
+            }
+
             // If noData has been retrieved yet, fetch weather data from phone.
             // Fires once every 30 seconds (actually twice as OnDraw triggers twice a
             // second)
@@ -298,86 +258,17 @@ public class SunshineWatchFace
                 fetchWeather();
             }
 
-            mTemperaturePaint.setColor( resources.getColor( R.color.text ));
-            mTextPaint.setColor( resources.getColor( R.color.text ));
-
-            // Draw the background.
-            if (isInAmbientMode()) {
-                canvas.drawColor( Color.BLACK );
-
-            } else {
-                canvas.drawColor( mBackgroundColor );
-
-                // Resizes bitmap when a new bitmap has been loaded in onDataChanged()
-                if (resizeBitmap){
-                    onSurfaceChanged( getSurfaceHolder(),
-                                      PixelFormat.OPAQUE,
-                                      bounds.width(),
-                                      bounds.height() );
-                }
-                if(mBackgroundBitmap != null) {
-                    // Shifts Background 1/2 off screen
-                    canvas.drawBitmap( mBackgroundBitmap, -bounds.exactCenterX(), 0, null );
-                }
+            // Resizes bitmap when a new bitmap has been loaded in onDataChanged()
+            if (!isInAmbientMode() && resizeBitmap){
+                onSurfaceChanged( getSurfaceHolder(),
+                                  PixelFormat.OPAQUE,
+                                  bounds.width(),
+                                  bounds.height() );
             }
 
-            //float x = bounds.exactCenterX()- mXOffset;
-            float x = bounds.width()-mXOffset;
-
-            // Draw Minutes
-            String minuteString = formatTwoDigitNumber( mCalendar.get( Calendar.MINUTE ));
-            canvas.drawText( minuteString, x, mYOffset, mTextPaint );
-
-            x -= mTextPaint.measureText( minuteString );
-
-            // Draw Colons
-            mShouldDrawColons = (System.currentTimeMillis() % 1000) < 500; // Shows colons for first 1/2 second
-
-            if (isInAmbientMode() || mShouldDrawColons ){
-                canvas.drawText( COLON_STRING, x, mYOffset, mTextPaint);
-            }
-
-            // Set y to align the temperatures on either side of the colon
-            float y = x;
-
-            x -= mColonWidth;
-
-            // Draw Hours
-            String hourString;
-
-            if (is24Hour){
-                hourString = formatTwoDigitNumber( mCalendar.get( Calendar.HOUR_OF_DAY
-                ) );
-            } else {
-                int hour = mCalendar.get( Calendar.HOUR_OF_DAY );
-                if(hour == 0) {
-                    hour = 12;
-                }else if (hour >= 13){
-                    hour -= 12;
-                }
-
-                hourString = String.valueOf( hour );
-            }
-            canvas.drawText( hourString, x, mYOffset, mTextPaint);
-
-            // Draw temperatures if not in Ambient Mode
-            if(!isInAmbientMode()) {
-                if (hTemp == null){
-                    hTemp = "na ";
-                }
-                if (lTemp == null) {
-                    lTemp = " na";
-                }
-
-                mTemperaturePaint.setAlpha( 150 ); // Reduce Alpha to make Low Temp slightly faded
-                mTemperaturePaint.setTextAlign( Paint.Align.LEFT ); // Align Low Temp to the Left of the time's colon
-                canvas.drawText( lTemp, y, mYOffset + 50, mTemperaturePaint );
-
-
-                mTemperaturePaint.setAlpha( 255 ); // Reset Alpha to normal for High Temp
-                mTemperaturePaint.setTextAlign( Paint.Align.RIGHT ); // Align High temp to the Right of the time's colon
-                canvas.drawText( hTemp, y - mColonWidth, mYOffset + 50, mTemperaturePaint );
-            }
+            // Shows colons for first 1/2 second
+            boolean drawColons = (System.currentTimeMillis() % 1000) < 500;
+            mRenderer.draw( canvas, bounds, mCalendar, is24Hour, isInAmbientMode(), drawColons );
         }
 
         /**
@@ -417,25 +308,22 @@ public class SunshineWatchFace
 
             resizeBitmap = false;
 
-            if (mBackgroundBitmap == null
-                    || mBackgroundBitmap.getWidth() != width
-                    || mBackgroundBitmap.getHeight() != height) {
-                if (mBackgroundBitmap == null) return;
-                mBackgroundBitmap = Bitmap.createScaledBitmap(mBackgroundBitmap,
-                                                              width,
-                                                              height,
-                                                              true
-                                                              /* filter */);
+            Bitmap background = mRenderer.getBackground();
+            if (background == null
+                    || background.getWidth() != width
+                    || background.getHeight() != height) {
+                if (background == null) return;
+                mRenderer.setBackground( Bitmap.createScaledBitmap(background,
+                                                                   width,
+                                                                   height,
+                                                                   true
+                                                                   /* filter */) );
             }
 
-            mYOffset = height/2;
+            mRenderer.setYOffset( height/2 );
             super.onSurfaceChanged(holder, format, width, height);
         }
 
-        private String formatTwoDigitNumber(int hour) {
-            return String.format("%02d", hour);
-        }
-
         /**
          * Generates bitmap based on weatherId
          */
@@ -444,8 +332,8 @@ public class SunshineWatchFace
             // Return if weatherId invalid
             if (weatherId < 0) {return;}
 
-            mBackgroundBitmap = BitmapFactory.decodeResource( getResources(),
-                                                              Utility.getBackgroundForWeatherID( weatherId ));
+            mRenderer.setBackground( BitmapFactory.decodeResource( getResources(),
+                                                                   Utility.getBackgroundForWeatherID( weatherId )) );
 
         }
 
@@ -462,26 +350,43 @@ public class SunshineWatchFace
                 if (event.getType() == DataEvent.TYPE_CHANGED) {
                     DataMap map = DataMapItem.fromDataItem( event.getDataItem() )
                                              .getDataMap();
-                    if (event.getDataItem().getUri().getPath().equals( WEATHER_DATA_PATH )) {
-
-                        if(map.containsKey( HIGH_TEMP_KEY )){
-                            hTemp = map.getString( HIGH_TEMP_KEY );
-                        } else { Log.d( TAG, "no high temp found" );}
-
-                        if(map.containsKey( LOW_TEMP_KEY )){
-                            lTemp = map.getString( LOW_TEMP_KEY );
-                        } else { Log.d( TAG, "no low temp found" ); }
+                    if (event.getDataItem().getUri().getPath().equals( WearProtocol.WEATHER_DATA_PATH )) {
 
-                        if(map.containsKey( WEATHER_ID_KEY )){
-                            weatherId = map.getInt( WEATHER_ID_KEY );
-                        } else { Log.d( TAG, "no weather id found" ); }
+                        WeatherPayload forecast = WeatherPayload.decode(
+                                map.getByteArray( WearProtocol.PAYLOAD_KEY ) );
+                        if (forecast != null){
+                            mForecast = forecast;
+                        } else { Log.d( TAG, "no forecast found" ); }
                     }
                 }
             }
-            getBitmap( weatherId );
+            showForecast();
             invalidate();
         }
 
+        /**
+         * Shows today's weather from the last forecast received
+         */
+        private void showForecast (){
+            if (mForecast == null) {return;}
+
+            mShownJulianDay = JulianDay.fromMillis( System.currentTimeMillis() );
+            int day = mForecast.findDay( mShownJulianDay );
+            if (day < 0) {return;}
+
+            boolean metric = mForecast.isMetric();
+            mRenderer.setTemperatures(
+                    Utility.formatTemperature( SunshineWatchFace.this,
+                                               mForecast.getHighTemp( day ), metric ),
+                    Utility.formatTemperature( SunshineWatchFace.this,
+                                               mForecast.getLowTemp( day ), metric ) );
+            if (weatherId != mForecast.getWeatherId( day )) {
+                weatherId = mForecast.getWeatherId( day );
+                resizeBitmap = true;
+                getBitmap( weatherId );
+            }
+        }
+
         @Override
         public void onConnected (@Nullable Bundle bundle) {
             Log.d(TAG, "Connected to Google Api Service");
@@ -502,8 +407,8 @@ public class SunshineWatchFace
         private void fetchWeather(){
             if (mGoogleApiClient.isConnected()){
 
-                PutDataMapRequest mapRequest = PutDataMapRequest.create( NO_WEATHER );
-                mapRequest.getDataMap().putBoolean( DATA_REQUEST, noData );
+                PutDataMapRequest mapRequest = PutDataMapRequest.create( WearProtocol.NO_WEATHER_PATH );
+                mapRequest.getDataMap().putBoolean( WearProtocol.DATA_REQUEST_KEY, noData );
 
                 PutDataRequest request = mapRequest.asPutDataRequest().setUrgent();
 
@@ -1,36 +1,33 @@
 package com.example.android.sunshine.app;
 
+import android.content.Context;
+
+import com.example.android.sunshine.shared.UnitConversions;
+import com.example.android.sunshine.shared.WeatherConditions;
+
 /**
  * Created by Ian on 5/16/2016.
  */
 public class Utility {
 
+    // The watch face's backgrounds for each group of weather conditions, see WeatherConditions
+    private static final WeatherConditions sConditions = new WeatherConditions.Builder()
+            .setBackgrounds(R.drawable.storm, R.drawable.light_rain, R.drawable.rain,
+                    R.drawable.snow, R.drawable.fog, R.drawable.clear, R.drawable.light_clouds,
+                    R.drawable.cloud)
+            .build();
+
     //match weatherID to weather image
     public static int getBackgroundForWeatherID(int weatherId) {
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.rain;
-        } else if (weatherId == 511) {
-            return R.drawable.snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.storm;
-        } else if (weatherId == 800) {
-            return R.drawable.clear;
-        } else if (weatherId == 801) {
-            return R.drawable.light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.cloud;
+        return sConditions.get(weatherId).getBackgroundResource();
+    }
+
+    // The phone sends Celsius, along with whether the user wants to see it in Fahrenheit
+    public static String formatTemperature(Context context, double temperature, boolean metric) {
+        if (!metric) {
+            temperature = UnitConversions.celsiusToFahrenheit(temperature);
         }
-        return -1;
+        return String.format(context.getString(R.string.format_temperature), temperature);
     }
 
 }
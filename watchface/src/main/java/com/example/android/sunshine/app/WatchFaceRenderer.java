@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+import java.util.Calendar;
+
+/**
+ * Draws a frame of {@link SunshineWatchFace}: the background for today's weather, the time and
+ * today's high and low on either side of the colon.  Apart from the engine, so that drawing can
+ * be timed without a watch face service.
+ */
+class WatchFaceRenderer {
+
+    static final String COLON_STRING = ":";
+
+    private static final Typeface NORMAL_TYPEFACE = Typeface.create(Typeface.SANS_SERIF,
+            Typeface.NORMAL);
+
+    private final int mBackgroundColor;
+    private final Paint mTextPaint;
+    private final Paint mTemperaturePaint;
+
+    private float mXOffset;
+    private float mYOffset;
+    private float mColonWidth;
+
+    private Bitmap mBackgroundBitmap;
+    private String mHighTemp;
+    private String mLowTemp;
+
+    WatchFaceRenderer(Resources resources) {
+        mBackgroundColor = resources.getColor(R.color.background);
+        mTextPaint = createTextPaint(resources.getColor(R.color.text), -1);
+        mTemperaturePaint = createTextPaint(resources.getColor(R.color.text), 40);
+    }
+
+    private static Paint createTextPaint(int textColor, float size) {
+        Paint paint = new Paint();
+        paint.setColor(textColor);
+        paint.setTypeface(NORMAL_TYPEFACE);
+        paint.setAntiAlias(true);
+
+        if (size > 0) {
+            paint.setTextSize(size);
+        } else {
+            paint.setTextAlign(Paint.Align.RIGHT);
+        }
+
+        return paint;
+    }
+
+    /**
+     * Loads the offsets and the size of the time, which have alternate values for round watches.
+     */
+    void setRound(Resources resources, boolean isRound) {
+        mXOffset = resources.getDimension(isRound
+                ? R.dimen.digital_x_offset_round : R.dimen.digital_x_offset);
+        mTextPaint.setTextSize(resources.getDimension(isRound
+                ? R.dimen.digital_text_size_round : R.dimen.digital_text_size));
+        mColonWidth = mTextPaint.measureText(COLON_STRING);
+    }
+
+    // The baseline of the time
+    void setYOffset(float yOffset) {
+        mYOffset = yOffset;
+    }
+
+    void setAntiAlias(boolean antiAlias) {
+        mTextPaint.setAntiAlias(antiAlias);
+    }
+
+    Bitmap getBackground() {
+        return mBackgroundBitmap;
+    }
+
+    void setBackground(Bitmap background) {
+        mBackgroundBitmap = background;
+    }
+
+    void setTemperatures(String high, String low) {
+        mHighTemp = high;
+        mLowTemp = low;
+    }
+
+    /**
+     * @param time the time to show
+     * @param ambient whether to draw the ambient mode's black face, with only the time
+     * @param drawColon whether to draw the colon, which blinks in interactive mode
+     */
+    void draw(Canvas canvas, Rect bounds, Calendar time, boolean is24Hour, boolean ambient,
+            boolean drawColon) {
+        // Draw the background.
+        if (ambient) {
+            canvas.drawColor(Color.BLACK);
+        } else {
+            canvas.drawColor(mBackgroundColor);
+            if (mBackgroundBitmap != null) {
+                // Shifts Background 1/2 off screen
+                canvas.drawBitmap(mBackgroundBitmap, -bounds.exactCenterX(), 0, null);
+            }
+        }
+
+        float x = bounds.width() - mXOffset;
+
+        // Draw Minutes
+        String minuteString = formatTwoDigitNumber(time.get(Calendar.MINUTE));
+        canvas.drawText(minuteString, x, mYOffset, mTextPaint);
+
+        x -= mTextPaint.measureText(minuteString);
+
+        // Draw Colons
+        if (ambient || drawColon) {
+            canvas.drawText(COLON_STRING, x, mYOffset, mTextPaint);
+        }
+
+        // Set y to align the temperatures on either side of the colon
+        float y = x;
+
+        x -= mColonWidth;
+
+        // Draw Hours
+        String hourString;
+        if (is24Hour) {
+            hourString = formatTwoDigitNumber(time.get(Calendar.HOUR_OF_DAY));
+        } else {
+            int hour = time.get(Calendar.HOUR_OF_DAY);
+            if (hour == 0) {
+                hour = 12;
+            } else if (hour >= 13) {
+                hour -= 12;
+            }
+            hourString = String.valueOf(hour);
+        }
+        canvas.drawText(hourString, x, mYOffset, mTextPaint);
+
+        // Draw temperatures if not in Ambient Mode
+        if (!ambient) {
+            String lowTemp = mLowTemp == null ? " na" : mLowTemp;
+            String highTemp = mHighTemp == null ? "na " : mHighTemp;
+
+            mTemperaturePaint.setAlpha(150); // Reduce Alpha to make Low Temp slightly faded
+            mTemperaturePaint.setTextAlign(Paint.Align.LEFT); // Align Low Temp to the Left of the time's colon
+            canvas.drawText(lowTemp, y, mYOffset + 50, mTemperaturePaint);
+
+            mTemperaturePaint.setAlpha(255); // Reset Alpha to normal for High Temp
+            mTemperaturePaint.setTextAlign(Paint.Align.RIGHT); // Align High temp to the Right of the time's colon
+            canvas.drawText(highTemp, y - mColonWidth, mYOffset + 50, mTemperaturePaint);
+        }
+    }
+
+    private static String formatTwoDigitNumber(int number) {
+        return String.format("%02d", number);
+    }
+}